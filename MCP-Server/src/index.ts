@@ -4,30 +4,65 @@ import {
   McpServer
 } from "@modelcontextprotocol/sdk/server/mcp.js";
 import { StreamableHTTPServerTransport } from "@modelcontextprotocol/sdk/server/streamableHttp.js";
+import { randomUUID } from "node:crypto";
 
 const BACKEND_BASE_URL =
   process.env.BACKEND_BASE_URL || "http://localhost:8080";
 const PORT = parseInt(process.env.PORT || "3333", 10);
+const BACKEND_TIMEOUT_MS = parseInt(process.env.BACKEND_TIMEOUT_MS || "120000", 10);
+const BACKEND_RETRIES = parseInt(process.env.BACKEND_RETRIES || "2", 10);
 
-// Basic helper for POSTing Spring service
+// Basic helper for POSTing Spring service.
+// Every logical call gets one Idempotency-Key, reused on retries: the backend replays the stored
+// response (or waits for the first attempt) instead of generating the post twice.
 async function callBackend(path: string, body: unknown) {
   const url = `${BACKEND_BASE_URL}${path}`;
-  const res = await fetch(url, {
-    method: "POST",
-    headers: {
-      "Content-Type": "application/json"
-    },
-    body: JSON.stringify(body ?? {})
-  });
+  const key = randomUUID();
+  const payload = JSON.stringify(body ?? {});
+
+  for (let attempt = 0; ; attempt++) {
+    let res: globalThis.Response;
+    try {
+      res = await fetch(url, {
+        method: "POST",
+        headers: {
+          "Content-Type": "application/json",
+          "Idempotency-Key": key
+        },
+        body: payload,
+        signal: AbortSignal.timeout(BACKEND_TIMEOUT_MS)
+      });
+    } catch (err) {
+      // timeout or connection error
+      if (attempt >= BACKEND_RETRIES) throw err;
+      await sleep(backoffMs(attempt, null));
+      continue;
+    }
+
+    if (!res.ok) {
+      const text = await res.text();
+      // 409: the first attempt is still running; 503: shed by admission control
+      if ((res.status === 409 || res.status === 503) && attempt < BACKEND_RETRIES) {
+        await sleep(backoffMs(attempt, res.headers.get("Retry-After")));
+        continue;
+      }
+      throw new Error(
+        `Backend error ${res.status} ${res.statusText}: ${text}`
+      );
+    }
 
-  if (!res.ok) {
-    const text = await res.text();
-    throw new Error(
-      `Backend error ${res.status} ${res.statusText}: ${text}`
-    );
+    return res.json();
   }
+}
+
+function backoffMs(attempt: number, retryAfter: string | null) {
+  const seconds = retryAfter ? parseInt(retryAfter, 10) : NaN;
+  const base = Number.isFinite(seconds) ? seconds * 1000 : 500 * 2 ** attempt;
+  return Math.min(base, 10000) + Math.random() * 250;
+}
 
-  return res.json();
+function sleep(ms: number) {
+  return new Promise((resolve) => setTimeout(resolve, ms));
 }
 
 // ---- MCP server ----
@@ -0,0 +1,92 @@
+package dev.arno.linkedin.postagent.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import dev.arno.linkedin.postagent.dto.DiffItem;
+import dev.arno.linkedin.postagent.dto.FullPostOutput;
+import dev.arno.linkedin.postagent.dto.PolishOutput;
+import dev.arno.linkedin.postagent.dto.Topic;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JacksonBenchmark {
+
+    private ObjectWriter fullWriter;
+    private ObjectReader fullReader;
+    private ObjectWriter polishWriter;
+    private ObjectReader polishReader;
+
+    private FullPostOutput full;
+    private PolishOutput polish;
+    private String fullJson;
+    private String polishJson;
+
+    @Setup
+    public void setup() throws Exception {
+        var mapper = new ObjectMapper();
+        fullWriter = mapper.writerFor(FullPostOutput.class);
+        fullReader = mapper.readerFor(FullPostOutput.class);
+        polishWriter = mapper.writerFor(PolishOutput.class);
+        polishReader = mapper.readerFor(PolishOutput.class);
+
+        var stages = new LinkedHashMap<String, Long>();
+        stages.put("ideas", 900L);
+        stages.put("outline", 1200L);
+        stages.put("draft", 4100L);
+        stages.put("hashtags", 2L);
+        stages.put("image-prompt", 1300L);
+        stages.put("package", 0L);
+        full = new FullPostOutput("Flaky tests are a trust problem", "Hook / bullets / CTA", Samples.POST,
+                List.of("#TestAutomation", "#CICD", "#DevOps"), "Isometric illustration of a CI pipeline",
+                Samples.POST, Samples.POST.length(), stages);
+        polish = new PolishOutput(Samples.POLISHED, Samples.POLISHED.length(), List.of(
+                new DiffItem("more than the minutes they waste", "more than wasted minutes", "Tightened (-8 chars)"),
+                new DiffItem("Every red build that turns green", "Each red build that passes", "Tightened (-6 chars)")));
+        fullJson = fullWriter.writeValueAsString(full);
+        polishJson = polishWriter.writeValueAsString(polish);
+    }
+
+    @Benchmark
+    public String writeFullPost() throws Exception {
+        return fullWriter.writeValueAsString(full);
+    }
+
+    @Benchmark
+    public FullPostOutput readFullPost() throws Exception {
+        return fullReader.readValue(fullJson);
+    }
+
+    @Benchmark
+    public String writePolish() throws Exception {
+        return polishWriter.writeValueAsString(polish);
+    }
+
+    @Benchmark
+    public PolishOutput readPolish() throws Exception {
+        return polishReader.readValue(polishJson);
+    }
+
+    @Benchmark
+    public Topic topicFromJson() {
+        return Topic.fromJson("Test Automation");
+    }
+}
@@ -0,0 +1,62 @@
+package dev.arno.linkedin.postagent.bench;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.arno.linkedin.postagent.dto.IdeaItem;
+import dev.arno.linkedin.postagent.llm.JsonExtractor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/** Getting JSON out of model output; the old fence-stripping path is gone, see {@link JsonExtractor}. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonExtractionBenchmark {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+
+    @Benchmark
+    public String extractFenced() {
+        return JsonExtractor.extract(Samples.FENCED_IDEAS);
+    }
+
+    @Benchmark
+    public String extractSmartQuoted() {
+        return JsonExtractor.extract(Samples.SMART_QUOTED);
+    }
+
+    @Benchmark
+    public IdeaItem[] readIdeas() {
+        return JsonExtractor.read(mapper, Samples.FENCED_IDEAS, IdeaItem[].class, registry);
+    }
+
+    @Benchmark
+    public JsonNode readTreeSmartQuoted() {
+        return JsonExtractor.readTree(mapper, Samples.SMART_QUOTED, registry);
+    }
+
+    @Benchmark
+    public boolean feedChunks() {
+        var x = new JsonExtractor();
+        String s = Samples.FENCED_IDEAS;
+        for (int i = 0; i < s.length(); i += 16) {
+            if (x.feed(s.subSequence(i, Math.min(s.length(), i + 16)))) return true;
+        }
+        return x.complete();
+    }
+}
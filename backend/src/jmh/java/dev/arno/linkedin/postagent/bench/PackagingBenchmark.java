@@ -0,0 +1,61 @@
+package dev.arno.linkedin.postagent.bench;
+
+import dev.arno.linkedin.postagent.dto.Constraints;
+import dev.arno.linkedin.postagent.dto.DiffItem;
+import dev.arno.linkedin.postagent.dto.PackageOutput;
+import dev.arno.linkedin.postagent.service.PackagingService;
+import dev.arno.linkedin.postagent.service.WordDiff;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PackagingBenchmark {
+
+    @Param({"ascii", "multilingual"})
+    public String text;
+
+    private String input;
+    private final Constraints tight = new Constraints(600, false, true, 4, 3);
+
+    @Setup
+    public void setup() {
+        input = text.equals("ascii") ? Samples.POST : Samples.MULTILINGUAL;
+    }
+
+    @Benchmark
+    public int countChars() {
+        return PackagingService.countChars(input);
+    }
+
+    @Benchmark
+    public int countGraphemes() {
+        return PackagingService.countGraphemes(input);
+    }
+
+    @Benchmark
+    public PackageOutput pack() {
+        return PackagingService.pack(input, List.of("#DevOps", "#testing"), null, tight);
+    }
+
+    @Benchmark
+    public List<DiffItem> wordDiff() {
+        return WordDiff.diff(Samples.POST, Samples.POLISHED);
+    }
+}
@@ -0,0 +1,61 @@
+package dev.arno.linkedin.postagent.bench;
+
+import dev.arno.linkedin.postagent.dto.FullPostInput;
+import dev.arno.linkedin.postagent.dto.PostFormat;
+import dev.arno.linkedin.postagent.dto.Topic;
+import dev.arno.linkedin.postagent.llm.LlmMessage;
+import dev.arno.linkedin.postagent.service.Prompts;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PromptsBenchmark {
+
+    private final FullPostInput input = new FullPostInput("flaky tests in CI", "QA leads", "share a lesson learned", "practical", null, 5, null);
+
+    @Benchmark
+    public List<LlmMessage> polishPrompt() {
+        return Prompts.polishMessages(Samples.POST, 15, null);
+    }
+
+    @Benchmark
+    public List<LlmMessage> hashtagsPrompt() {
+        return Prompts.hashtagsMessages(Samples.POST, 5, "balanced");
+    }
+
+    @Benchmark
+    public List<LlmMessage> draftPrompt() {
+        return Prompts.draftMessages(null, "Why flaky tests erode trust", Topic.AUTOMATION, null, "{\"maxChars\":1200}");
+    }
+
+    @Benchmark
+    public List<LlmMessage> fullDraftPrompt() {
+        return Prompts.fullDraftMessages("Hook: flaky tests erode trust\nBullets: quarantine, own, measure", "QA leads", "practical", null);
+    }
+
+    @Benchmark
+    public List<LlmMessage> fullIdeasPrompt() {
+        return Prompts.fullIdeasMessages(input, 4);
+    }
+
+    @Benchmark
+    public List<LlmMessage> outlinePrompt() {
+        return Prompts.outlineMessages("Flaky tests are a trust problem", PostFormat.lesson_learned,
+                List.of("quarantine", "owners", "measure"), null);
+    }
+}
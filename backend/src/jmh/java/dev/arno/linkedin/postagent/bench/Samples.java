@@ -0,0 +1,64 @@
+package dev.arno.linkedin.postagent.bench;
+
+/** Representative inputs shared by the benchmarks. */
+final class Samples {
+
+    private Samples() {}
+
+    static final String POST = """
+            Flaky tests cost more than the minutes they waste.
+
+            Every red build that turns green on retry teaches the team to ignore red builds.
+            Here is what worked for us:
+
+            1. Quarantine: move a flaky test out of the gate within a day.
+            2. Own it: every quarantined test gets an owner and a due date.
+            3. Measure: track the flake rate per suite, weekly.
+            4. Fix the cause, not the symptom. Sleeps are not synchronization.
+
+            After six weeks our retry rate dropped from 18% to 2%, and people trust the pipeline again.
+
+            What's your rule for flaky tests?
+
+            #TestAutomation #CICD #DevOps #QualityEngineering
+            """;
+
+    // mixed scripts, combining marks, ZWJ sequences, skin tones and flags
+    static final String MULTILINGUAL = """
+            🚀 Shipping faster with CI/CD 👩🏽‍💻👨‍👩‍👧 — déjà vu? Ça dépend.
+            Тестирование важно. テストは大事です。测试很重要。 परीक्षण महत्वपूर्ण है।
+            مرحبا بالعالم 🇩🇪🇫🇷🇯🇵 ✔️ 1️⃣ é ñ ü ß
+            """.repeat(8);
+
+    static final String FENCED_IDEAS = """
+            Sure! Here are some ideas for your post:
+            ```json
+            [
+              {"id": "flaky-tests", "title": "Flaky tests are a trust problem", "hook": "Every retry teaches the team to ignore red.",},
+              {"id": "quarantine", "title": "Quarantine in a day", "hook": "Move it out of the gate, then fix it."},
+              {"id": "owners", "title": "Every flaky test needs an owner", "hook": "No owner, no fix."},
+              {"id": "measure", "title": "Measure flake rate weekly", "hook": "What you don't track grows."},
+              {"id": "sleeps", "title": "Sleeps are not synchronization", "hook": "Wait for state, not time."},
+            ]
+            ```
+            Let me know if you want more!
+            """;
+
+    static final String SMART_QUOTED = "Here you go: {“outline”: “Hook: flaky tests erode trust\nBullets: quarantine, own, measure\nCTA: ask_opinion”,}";
+
+    static final String POLISHED = """
+            Flaky tests cost more than wasted minutes.
+
+            Each red build that passes on retry teaches the team to ignore red.
+            What worked for us:
+
+            1. Quarantine flaky tests within a day.
+            2. Give each one an owner and a due date.
+            3. Track flake rate per suite, weekly.
+            4. Fix causes, not symptoms. Sleeps aren't synchronization.
+
+            In six weeks retries fell from 18% to 2%, and the team trusts the pipeline again.
+
+            What's your rule for flaky tests?
+            """;
+}
@@ -0,0 +1,49 @@
+package dev.arno.linkedin.postagent.loadtest;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/** {@code --key=value} command-line options. */
+final class Args {
+
+    private final Map<String, String> values = new HashMap<>();
+
+    Args(String[] args) {
+        for (String a : args) {
+            if (!a.startsWith("--")) throw new IllegalArgumentException("Expected --key=value, got " + a);
+            int eq = a.indexOf('=');
+            if (eq < 0) values.put(a.substring(2), "true");
+            else values.put(a.substring(2, eq), a.substring(eq + 1));
+        }
+    }
+
+    String string(String key, String def) {
+        return values.getOrDefault(key, def);
+    }
+
+    int integer(String key, int def) {
+        String v = values.get(key);
+        return v == null ? def : Integer.parseInt(v);
+    }
+
+    double number(String key, double def) {
+        String v = values.get(key);
+        return v == null ? def : Double.parseDouble(v);
+    }
+
+    boolean flag(String key, boolean def) {
+        String v = values.get(key);
+        return v == null ? def : Boolean.parseBoolean(v);
+    }
+
+    // "90s", "2m", "500ms"
+    Duration duration(String key, Duration def) {
+        String v = values.get(key);
+        if (v == null) return def;
+        if (v.endsWith("ms")) return Duration.ofMillis(Long.parseLong(v.substring(0, v.length() - 2)));
+        if (v.endsWith("s")) return Duration.ofSeconds(Long.parseLong(v.substring(0, v.length() - 1)));
+        if (v.endsWith("m")) return Duration.ofMinutes(Long.parseLong(v.substring(0, v.length() - 1)));
+        return Duration.ofSeconds(Long.parseLong(v));
+    }
+}
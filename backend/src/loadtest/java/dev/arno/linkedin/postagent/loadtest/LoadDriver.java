@@ -0,0 +1,225 @@
+package dev.arno.linkedin.postagent.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Open-loop load against a running backend: requests start at {@code --rps} whether or not earlier
+ * ones have finished, picked from a weighted mix of /posts/* endpoints, so queueing shows up as
+ * latency instead of being hidden by a slower send rate. Prints p50/p90/p99/max and throughput per
+ * endpoint, plus the backend's peak live threads and heap (from /actuator/metrics) while loaded.
+ *
+ * <pre>
+ *   ./gradlew loadTest --args="--target=http://localhost:8080 --rps=20 --duration=2m --warmup=15s"
+ * </pre>
+ *
+ * {@code --mix=ideas:20,polish:15,...} changes the weights; the cache is bypassed unless
+ * {@code --bypass-cache=false}, otherwise every repeat would be a hit.
+ */
+public class LoadDriver {
+
+    private record Endpoint(String name, String path, String body) {}
+
+    private static final Map<String, Endpoint> ENDPOINTS = new LinkedHashMap<>();
+
+    static {
+        add("ideas", "/posts/ideas", """
+                {"topic": "devops", "audienceLevel": "intermediate", "nIdeas": 5, "seedKeywords": ["flaky tests", "CI"]}""");
+        add("outline", "/posts/outline", """
+                {"ideaId": "flaky-trust", "format": "tip_list", "keyPoints": ["quarantine", "owners", "flake rate"]}""");
+        add("draft", "/posts/draft", """
+                {"brief": "Why flaky tests erode trust in CI and what to do about it", "topic": "automation"}""");
+        add("polish", "/posts/polish", """
+                {"draft": "Flaky tests cost more than the minutes they waste. Every red build that turns green on retry teaches the team to ignore red builds. Quarantine them within a day, give each an owner, and track the flake rate weekly.", "tightenByPercent": 15}""");
+        add("hashtagize", "/posts/hashtagize", """
+                {"text": "Flaky tests cost more than the minutes they waste. Quarantine them, give each an owner, track the flake rate in your CI pipeline.", "maxTags": 4}""");
+        add("image-prompts", "/posts/image-prompts", """
+                {"text": "Flaky tests cost more than the minutes they waste.", "style": "minimal_illustration"}""");
+        add("package", "/posts/package", """
+                {"text": "Flaky tests cost more than the minutes they waste.\\n\\nQuarantine, own, measure.", "hashtags": ["#DevOps", "#CICD", "#TestAutomation"], "constraints": "under 1200 chars"}""");
+        add("full", "/posts/full", """
+                {"topic": "flaky tests in CI", "audience": "QA leads", "goal": "share a practical lesson", "tone": "practical", "maxHashtags": 4}""");
+    }
+
+    private static final String DEFAULT_MIX = "ideas:15,outline:10,draft:15,polish:15,hashtagize:15,image-prompts:10,package:10,full:10";
+
+    private static void add(String name, String path, String body) {
+        ENDPOINTS.put(name, new Endpoint(name, path, body));
+    }
+
+    private static final class Stats {
+        final ConcurrentLinkedQueue<Long> micros = new ConcurrentLinkedQueue<>();
+        final AtomicLong errors = new AtomicLong();
+        final Map<Integer, AtomicLong> statuses = new ConcurrentHashMap<>();
+    }
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final HttpClient client;
+    private final String target;
+    private final boolean bypassCache;
+    private final Duration timeout;
+    private final List<Endpoint> weighted = new ArrayList<>();
+    private final Map<String, Stats> stats = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger peakInFlight = new AtomicInteger();
+    private volatile boolean measuring;
+    private volatile double peakThreads = Double.NaN;
+    private volatile double peakHeapBytes = Double.NaN;
+
+    LoadDriver(Args args) {
+        this.target = args.string("target", "http://localhost:8080").replaceAll("/+$", "");
+        this.bypassCache = args.flag("bypass-cache", true);
+        this.timeout = args.duration("timeout", Duration.ofSeconds(120));
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        for (String entry : args.string("mix", DEFAULT_MIX).split(",")) {
+            String[] kv = entry.split(":");
+            Endpoint e = ENDPOINTS.get(kv[0].trim());
+            if (e == null) throw new IllegalArgumentException("Unknown endpoint " + kv[0] + ", known: " + ENDPOINTS.keySet());
+            for (int i = 0, w = Integer.parseInt(kv[1].trim()); i < w; i++) weighted.add(e);
+        }
+    }
+
+    public static void main(String[] argv) throws Exception {
+        var args = new Args(argv);
+        new LoadDriver(args).run(args.number("rps", 10), args.duration("warmup", Duration.ofSeconds(10)),
+                args.duration("duration", Duration.ofSeconds(60)));
+    }
+
+    void run(double rps, Duration warmup, Duration duration) throws InterruptedException {
+        System.out.printf("Driving %s at %.1f rps: %s warmup, %s measured%n", target, rps, warmup, duration);
+        ExecutorService requests = Executors.newVirtualThreadPerTaskExecutor();
+        var sampler = Thread.ofVirtual().start(this::sampleBackend);
+
+        long periodNanos = (long) (1e9 / rps);
+        long start = System.nanoTime();
+        long measureFrom = start + warmup.toNanos();
+        long end = measureFrom + duration.toNanos();
+        long sent = 0;
+        for (long next = start; next < end; next += periodNanos) {
+            long wait = next - System.nanoTime();
+            if (wait > 0) TimeUnit.NANOSECONDS.sleep(wait);
+            if (!measuring && next >= measureFrom) measuring = true;
+            Endpoint e = weighted.get(ThreadLocalRandom.current().nextInt(weighted.size()));
+            boolean record = measuring;
+            requests.submit(() -> call(e, record));
+            sent++;
+        }
+        requests.shutdown();
+        requests.awaitTermination(timeout.toSeconds() + 5, TimeUnit.SECONDS);
+        measuring = false;
+        sampler.interrupt();
+
+        report(sent, duration);
+    }
+
+    private void call(Endpoint e, boolean record) {
+        var req = HttpRequest.newBuilder(URI.create(target + e.path()))
+                .timeout(timeout)
+                .header("Content-Type", "application/json");
+        if (bypassCache) req.header("X-LLM-Cache", "bypass");
+
+        peakInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        long t0 = System.nanoTime();
+        int status;
+        try {
+            status = client.send(req.POST(HttpRequest.BodyPublishers.ofString(e.body())).build(),
+                    HttpResponse.BodyHandlers.discarding()).statusCode();
+        } catch (Exception ex) {
+            status = -1;
+        } finally {
+            inFlight.decrementAndGet();
+        }
+        if (!record) return;
+
+        Stats s = stats.computeIfAbsent(e.name(), k -> new Stats());
+        s.micros.add((System.nanoTime() - t0) / 1_000);
+        s.statuses.computeIfAbsent(status, k -> new AtomicLong()).incrementAndGet();
+        if (status / 100 != 2) s.errors.incrementAndGet();
+    }
+
+    // peak backend threads and heap while the measured phase runs
+    private void sampleBackend() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                if (measuring) {
+                    double threads = metric("jvm.threads.live", null);
+                    double heap = metric("jvm.memory.used", "area:heap");
+                    if (!Double.isNaN(threads)) peakThreads = Double.isNaN(peakThreads) ? threads : Math.max(peakThreads, threads);
+                    if (!Double.isNaN(heap)) peakHeapBytes = Double.isNaN(peakHeapBytes) ? heap : Math.max(peakHeapBytes, heap);
+                }
+                Thread.sleep(1000);
+            }
+        } catch (InterruptedException ignored) {
+            // done
+        }
+    }
+
+    private double metric(String name, String tag) {
+        try {
+            String url = target + "/actuator/metrics/" + name + (tag == null ? "" : "?tag=" + tag);
+            var res = client.send(HttpRequest.newBuilder(URI.create(url)).timeout(Duration.ofSeconds(2)).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            if (res.statusCode() != 200) return Double.NaN;
+            JsonNode m = mapper.readTree(res.body()).path("measurements").path(0).path("value");
+            return m.isNumber() ? m.asDouble() : Double.NaN;
+        } catch (Exception e) {
+            return Double.NaN;
+        }
+    }
+
+    private void report(long sent, Duration duration) {
+        double seconds = duration.toMillis() / 1000.0;
+        long total = 0, errors = 0;
+        List<Long> all = new ArrayList<>();
+
+        System.out.printf("%n%-14s %7s %7s %9s %9s %9s %9s %8s  %s%n",
+                "endpoint", "count", "errors", "p50 ms", "p90 ms", "p99 ms", "max ms", "rps", "statuses");
+        for (String name : ENDPOINTS.keySet()) {
+            Stats s = stats.get(name);
+            if (s == null) continue;
+            List<Long> v = new ArrayList<>(s.micros);
+            v.sort(null);
+            all.addAll(v);
+            total += v.size();
+            errors += s.errors.get();
+            System.out.printf("%-14s %7d %7d %9.1f %9.1f %9.1f %9.1f %8.2f  %s%n", name, v.size(), s.errors.get(),
+                    pct(v, 50), pct(v, 90), pct(v, 99), pct(v, 100), v.size() / seconds, s.statuses);
+        }
+        all.sort(null);
+        System.out.printf("%-14s %7d %7d %9.1f %9.1f %9.1f %9.1f %8.2f%n", "all", total, errors,
+                pct(all, 50), pct(all, 90), pct(all, 99), pct(all, 100), total / seconds);
+
+        System.out.printf("%nsent %d (incl. warmup), peak in flight %d%n", sent, peakInFlight.get());
+        System.out.printf("backend peak live threads: %s, peak heap used: %s%n",
+                Double.isNaN(peakThreads) ? "n/a" : String.format("%.0f", peakThreads),
+                Double.isNaN(peakHeapBytes) ? "n/a (is /actuator/metrics exposed?)" : String.format("%.0f MB", peakHeapBytes / (1 << 20)));
+    }
+
+    private static double pct(List<Long> sorted, int p) {
+        if (sorted.isEmpty()) return Double.NaN;
+        int i = (int) Math.ceil(p / 100.0 * sorted.size()) - 1;
+        return sorted.get(Math.max(0, Math.min(sorted.size() - 1, i))) / 1000.0;
+    }
+}
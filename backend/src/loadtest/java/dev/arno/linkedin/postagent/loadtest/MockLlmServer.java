@@ -0,0 +1,276 @@
+package dev.arno.linkedin.postagent.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An OpenAI-compatible {@code POST /v1/chat/completions} for load tests, so the backend can be
+ * driven hard without a network or an API bill. Point the backend at it with
+ * {@code LLM_BASE_URL=http://localhost:8089/v1}.
+ *
+ * <p>Latency is log-normal with the given median and p99; streamed responses send the first
+ * chunk after a quarter of that and then emit tokens at {@code --tokens-per-second}. A share of
+ * calls fail with 500, and another share with 429 plus {@code Retry-After}. Replies are canned:
+ * the first {@code --canned} rule whose substring occurs in the prompt (all messages) wins, otherwise
+ * a built-in reply shaped like what each backend prompt asks for.
+ *
+ * <p>{@code usage} reports a system message seen before as cached prompt tokens, in 128-token
+ * blocks from 1024 tokens up, the way OpenAI's prefix cache does.
+ *
+ * <pre>
+ *   ./gradlew mockLlm --args="--port=8089 --median=800ms --p99=4s --error-rate=0.01 --rate-limit-rate=0.02"
+ * </pre>
+ *
+ * Canned rules file: one {@code substring<TAB>reply} per line, {@code \n} in the reply for a newline.
+ */
+public class MockLlmServer {
+
+    private static final double Z99 = 2.326;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final double mu;
+    private final double sigma;
+    private final double errorRate;
+    private final double rateLimitRate;
+    private final int retryAfterSeconds;
+    private final double tokensPerSecond;
+    private final List<String[]> canned;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong streamed = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong rateLimited = new AtomicLong();
+    private final AtomicLong cachedTokens = new AtomicLong();
+    private final Set<String> seenPrefixes = ConcurrentHashMap.newKeySet();
+
+    MockLlmServer(Args args) throws IOException {
+        double median = args.duration("median", Duration.ofMillis(800)).toMillis();
+        double p99 = Math.max(median, args.duration("p99", Duration.ofSeconds(4)).toMillis());
+        this.mu = Math.log(Math.max(1, median));
+        this.sigma = Math.log(Math.max(1, p99) / Math.max(1, median)) / Z99;
+        this.errorRate = args.number("error-rate", 0.01);
+        this.rateLimitRate = args.number("rate-limit-rate", 0.02);
+        this.retryAfterSeconds = args.integer("retry-after", 1);
+        this.tokensPerSecond = args.number("tokens-per-second", 80);
+        this.canned = loadCanned(args.string("canned", null));
+    }
+
+    public static void main(String[] argv) throws IOException {
+        var args = new Args(argv);
+        var mock = new MockLlmServer(args);
+        int port = args.integer("port", 8089);
+
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        HttpServer server = HttpServer.create(new InetSocketAddress(port), 1024);
+        server.setExecutor(executor);
+        server.createContext("/v1/chat/completions", mock::completions);
+        server.createContext("/stats", mock::stats);
+        server.start();
+        System.out.printf("Mock LLM listening on http://localhost:%d/v1 (median %.0f ms, sigma %.2f, errors %.1f%%, 429s %.1f%%)%n",
+                port, Math.exp(mock.mu), mock.sigma, mock.errorRate * 100, mock.rateLimitRate * 100);
+    }
+
+    private void completions(HttpExchange ex) throws IOException {
+        try (ex) {
+            if (!"POST".equals(ex.getRequestMethod())) {
+                send(ex, 405, "{\"error\":{\"message\":\"POST only\"}}");
+                return;
+            }
+            requests.incrementAndGet();
+            JsonNode req = mapper.readTree(ex.getRequestBody());
+
+            double roll = ThreadLocalRandom.current().nextDouble();
+            if (roll < rateLimitRate) {
+                rateLimited.incrementAndGet();
+                ex.getResponseHeaders().set("Retry-After", String.valueOf(retryAfterSeconds));
+                send(ex, 429, "{\"error\":{\"message\":\"Rate limit reached (mock)\",\"type\":\"rate_limit_exceeded\"}}");
+                return;
+            }
+
+            long latency = Math.round(Math.exp(mu + sigma * ThreadLocalRandom.current().nextGaussian()));
+            String content = reply(prompt(req));
+            int promptTokens = approxTokens(req.path("messages").toString());
+            int completionTokens = approxTokens(content);
+            int cached = cached(req, promptTokens);
+
+            boolean stream = req.path("stream").asBoolean();
+            Thread.sleep(stream ? latency / 4 : latency);
+            if (roll < rateLimitRate + errorRate) {
+                errors.incrementAndGet();
+                send(ex, 500, "{\"error\":{\"message\":\"Internal error (mock)\",\"type\":\"server_error\"}}");
+                return;
+            }
+            if (stream) {
+                streamed.incrementAndGet();
+                stream(ex, req, content, promptTokens, cached, completionTokens);
+                return;
+            }
+
+            ObjectNode res = mapper.createObjectNode();
+            res.put("id", "chatcmpl-mock-" + requests.get());
+            res.put("object", "chat.completion");
+            res.put("model", req.path("model").asText("mock"));
+            ObjectNode choice = res.putArray("choices").addObject();
+            choice.put("index", 0);
+            choice.putObject("message").put("role", "assistant").put("content", content);
+            choice.put("finish_reason", "stop");
+            usage(res, promptTokens, cached, completionTokens);
+            send(ex, 200, mapper.writeValueAsString(res));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void stream(HttpExchange ex, JsonNode req, String content, int promptTokens, int cached, int completionTokens)
+            throws IOException, InterruptedException {
+        ex.getResponseHeaders().set("Content-Type", "text/event-stream");
+        ex.sendResponseHeaders(200, 0);
+        OutputStream out = ex.getResponseBody();
+        long perChunkNanos = (long) (1e9 / Math.max(1, tokensPerSecond));
+
+        // roughly one token per chunk, like the real API
+        for (int i = 0; i < content.length(); i += 4) {
+            ObjectNode chunk = mapper.createObjectNode();
+            chunk.put("object", "chat.completion.chunk");
+            chunk.putArray("choices").addObject().put("index", 0)
+                    .putObject("delta").put("content", content.substring(i, Math.min(content.length(), i + 4)));
+            event(out, mapper.writeValueAsString(chunk));
+            Thread.sleep(perChunkNanos / 1_000_000, (int) (perChunkNanos % 1_000_000));
+        }
+        if (req.path("stream_options").path("include_usage").asBoolean()) {
+            ObjectNode last = mapper.createObjectNode();
+            last.put("object", "chat.completion.chunk");
+            last.putArray("choices");
+            usage(last, promptTokens, cached, completionTokens);
+            event(out, mapper.writeValueAsString(last));
+        }
+        event(out, "[DONE]");
+    }
+
+    private static void event(OutputStream out, String data) throws IOException {
+        out.write(("data: " + data + "\n\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private static void usage(ObjectNode res, int prompt, int cached, int completion) {
+        ObjectNode usage = res.putObject("usage")
+                .put("prompt_tokens", prompt)
+                .put("completion_tokens", completion)
+                .put("total_tokens", prompt + completion);
+        usage.putObject("prompt_tokens_details").put("cached_tokens", cached);
+    }
+
+    private int cached(JsonNode req, int promptTokens) {
+        JsonNode first = req.path("messages").path(0);
+        if (!"system".equals(first.path("role").asText())) return 0;
+        String prefix = first.path("content").asText();
+        int n = Math.min(approxTokens(prefix), promptTokens);
+        if (seenPrefixes.add(prefix) || n < 1024) return 0;
+        n = n / 128 * 128;
+        cachedTokens.addAndGet(n);
+        return n;
+    }
+
+    private void stats(HttpExchange ex) throws IOException {
+        try (ex) {
+            send(ex, 200, mapper.writeValueAsString(Map.of(
+                    "requests", requests.get(),
+                    "streamed", streamed.get(),
+                    "errors", errors.get(),
+                    "rateLimited", rateLimited.get(),
+                    "cachedTokens", cachedTokens.get())));
+        }
+    }
+
+    private static void send(HttpExchange ex, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", "application/json");
+        ex.sendResponseHeaders(status, bytes.length);
+        ex.getResponseBody().write(bytes);
+    }
+
+    // instructions live in the system message, the data in the user message
+    private static String prompt(JsonNode req) {
+        var sb = new StringBuilder();
+        for (JsonNode m : req.path("messages")) sb.append(m.path("content").asText()).append('\n');
+        return sb.toString();
+    }
+
+    private static int approxTokens(String s) {
+        return Math.max(1, s.length() / 4);
+    }
+
+    private String reply(String prompt) {
+        for (String[] rule : canned) {
+            if (prompt.contains(rule[0])) return rule[1];
+        }
+        // the shapes Prompts asks for, most specific first
+        if (prompt.contains("short title strings")) {
+            return "[\"Flaky tests are a trust problem\", \"Quarantine in a day\", \"Owners fix flakes\", \"Measure flake rate weekly\"]";
+        }
+        if (prompt.contains("\"id\": \"slug\"")) {
+            return """
+                    {"ideas": [{"id": "flaky-trust", "title": "Flaky tests are a trust problem", "hook": "Every retry teaches the team to ignore red."},
+                     {"id": "quarantine", "title": "Quarantine in a day", "hook": "Out of the gate first, fixed second."},
+                     {"id": "owners", "title": "No owner, no fix", "hook": "Give every flaky test a name next to it."}]}""";
+        }
+        if (prompt.contains("\"outline\": {")) {
+            return "{\"outline\": {\"hook\": \"Flaky tests cost trust, not minutes.\", \"bullets\": [\"Quarantine within a day\", \"Assign an owner\", \"Track flake rate weekly\"], \"cta\": \"ask_opinion\"}}";
+        }
+        if (prompt.contains("\"outline\"")) {
+            return "{\"outline\": \"Hook: flaky tests cost trust. Points: quarantine, owners, weekly flake rate. CTA: ask for their rule.\"}";
+        }
+        if (prompt.contains("\"hashtags\"")) {
+            return "{\"hashtags\": [\"#TestAutomation\", \"#CICD\", \"#DevOps\", \"#QualityEngineering\"], \"rationale\": \"Two broad, two niche.\"}";
+        }
+        if (prompt.contains("\"prompts\"")) {
+            return "{\"prompts\": [\"Minimal illustration of a red and green CI pipeline\", \"Flat icons: bug, shield, stopwatch\", \"Diagram of a quarantine lane beside the main gate\"]}";
+        }
+        if (prompt.contains("\"imagePrompt\"")) {
+            return "{\"imagePrompt\": \"Minimal illustration of a CI pipeline with one flickering red stage set aside\"}";
+        }
+        return """
+                Flaky tests cost more than the minutes they waste.
+
+                Every red build that turns green on retry teaches the team to ignore red builds.
+
+                1. Quarantine a flaky test within a day.
+                2. Give it an owner and a due date.
+                3. Track the flake rate per suite, weekly.
+
+                Six weeks later our retry rate fell from 18% to 2%.
+
+                What's your rule for flaky tests?""";
+    }
+
+    private static List<String[]> loadCanned(String file) throws IOException {
+        List<String[]> rules = new ArrayList<>();
+        if (file == null) return rules;
+        for (String line : Files.readAllLines(Path.of(file), StandardCharsets.UTF_8)) {
+            int tab = line.indexOf('\t');
+            if (line.isBlank() || line.startsWith("#") || tab <= 0) continue;
+            rules.add(new String[]{line.substring(0, tab), line.substring(tab + 1).replace("\\n", "\n")});
+        }
+        return rules;
+    }
+}
@@ -0,0 +1,116 @@
+package dev.arno.linkedin.postagent.loadtest;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures cold start: launches the backend with each given command line, polls {@code /health}
+ * until the first 200, and records that time and the process RSS at that moment (from
+ * {@code /proc}, so Linux only). Every command runs {@code --runs} times on a fresh port; the
+ * report has the median and best of each. Used by {@code ./gradlew measureStartup}.
+ *
+ * <pre>
+ *   --labels=default,optimized --default="java -jar app.jar" --optimized="java -XX:SharedArchiveFile=app.jsa -jar app.jar"
+ * </pre>
+ */
+public class StartupProbe {
+
+    private record Sample(long millis, long rssKb) {}
+
+    private final HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofMillis(200)).build();
+    private final Duration timeout;
+    private final Path logDir;
+
+    StartupProbe(Args args) {
+        this.timeout = args.duration("timeout", Duration.ofSeconds(60));
+        this.logDir = Path.of(args.string("log-dir", "build/startup"));
+    }
+
+    public static void main(String[] argv) throws Exception {
+        var args = new Args(argv);
+        var probe = new StartupProbe(args);
+        int runs = args.integer("runs", 3);
+        Files.createDirectories(probe.logDir);
+
+        var report = new StringBuilder(String.format("%-12s %6s %12s %12s %12s%n", "command", "runs", "median ms", "best ms", "median RSS"));
+        for (String label : args.string("labels", "default").split(",")) {
+            String cmd = args.string(label, null);
+            if (cmd == null) throw new IllegalArgumentException("No --" + label + "=<command line>");
+            List<Sample> samples = new ArrayList<>();
+            for (int i = 1; i <= runs; i++) {
+                Sample s = probe.measure(label + "-" + i, cmd);
+                System.out.printf("%s run %d: /health after %d ms, RSS %d MB%n", label, i, s.millis(), s.rssKb() / 1024);
+                samples.add(s);
+            }
+            long[] millis = samples.stream().mapToLong(Sample::millis).sorted().toArray();
+            long[] rss = samples.stream().mapToLong(Sample::rssKb).sorted().toArray();
+            report.append(String.format("%-12s %6d %12d %12d %9d MB%n", label, runs, millis[runs / 2], millis[0], rss[runs / 2] / 1024));
+        }
+
+        System.out.println();
+        System.out.print(report);
+        String out = args.string("report", null);
+        if (out != null) Files.writeString(Path.of(out), report, StandardCharsets.UTF_8);
+    }
+
+    private Sample measure(String name, String cmd) throws IOException, InterruptedException {
+        int port = freePort();
+        List<String> command = new ArrayList<>(Arrays.asList(cmd.trim().split("\\s+")));
+        command.add("--server.port=" + port);
+
+        long start = System.nanoTime();
+        Process p = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(logDir.resolve(name + ".log").toFile())
+                .start();
+        try {
+            var health = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/health")).timeout(Duration.ofSeconds(1)).build();
+            long deadline = start + timeout.toNanos();
+            while (System.nanoTime() < deadline) {
+                if (!p.isAlive()) throw new IllegalStateException(name + " exited with " + p.exitValue() + ", see " + logDir.resolve(name + ".log"));
+                try {
+                    if (client.send(health, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                        long millis = (System.nanoTime() - start) / 1_000_000;
+                        return new Sample(millis, rssKb(p.pid()));
+                    }
+                } catch (IOException notUpYet) {
+                    // connection refused until the server is listening
+                }
+                Thread.sleep(10);
+            }
+            throw new IllegalStateException(name + " did not answer /health within " + timeout);
+        } finally {
+            p.destroy();
+            if (!p.waitFor(10, TimeUnit.SECONDS)) p.destroyForcibly();
+        }
+    }
+
+    private static long rssKb(long pid) {
+        try {
+            for (String line : Files.readAllLines(Path.of("/proc", String.valueOf(pid), "status"))) {
+                if (line.startsWith("VmRSS:")) return Long.parseLong(line.replaceAll("\\D+", ""));
+            }
+        } catch (IOException | NumberFormatException e) {
+            // not Linux
+        }
+        return 0;
+    }
+
+    private static int freePort() throws IOException {
+        try (var s = new ServerSocket(0)) {
+            return s.getLocalPort();
+        }
+    }
+}
@@ -1,11 +1,13 @@
 package dev.arno.linkedin.postagent;
 
+import dev.arno.linkedin.postagent.config.RouterProperties;
+import dev.arno.linkedin.postagent.config.TokenProperties;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 
 @SpringBootApplication
-@EnableConfigurationProperties()
+@EnableConfigurationProperties({TokenProperties.class, RouterProperties.class})
 public class PostAgentApplication {
     public static void main(String[] args) {
         SpringApplication.run(PostAgentApplication.class, args);
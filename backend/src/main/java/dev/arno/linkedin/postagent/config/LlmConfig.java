@@ -0,0 +1,138 @@
+package dev.arno.linkedin.postagent.config;
+
+import dev.arno.linkedin.postagent.llm.CachingLlmClient;
+import dev.arno.linkedin.postagent.llm.DiskResponseStore;
+import dev.arno.linkedin.postagent.llm.LlmClient;
+import dev.arno.linkedin.postagent.llm.LlmRouter;
+import dev.arno.linkedin.postagent.llm.MeteredLlmClient;
+import dev.arno.linkedin.postagent.llm.OpenAiClient;
+import dev.arno.linkedin.postagent.llm.PersistentLlmClient;
+import dev.arno.linkedin.postagent.llm.RateLimitedLlmClient;
+import dev.arno.linkedin.postagent.llm.SingleFlightLlmClient;
+import dev.arno.linkedin.postagent.llm.TokenBudget;
+import dev.arno.linkedin.postagent.llm.TokenCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.util.unit.DataSize;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Assembles the LLM call path. Controllers and services inject the {@link Primary} {@code llmClient},
+ * which is the outermost layer:
+ * <pre>
+ *   metrics → single-flight → cache → disk store (if enabled) → rate limiter → OpenAI
+ * </pre>
+ * With {@code spring.llm.router.enabled} the last hop is an {@link LlmRouter} over several
+ * OpenAI-compatible backends instead of the single one.
+ */
+@Configuration
+public class LlmConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(LlmConfig.class);
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "spring.llm.store.enabled", havingValue = "true")
+    public DiskResponseStore diskResponseStore(
+            @Value("${spring.llm.store.dir:data/llm-store}") Path dir,
+            @Value("${spring.llm.store.max-size:512MB}") DataSize maxSize,
+            @Value("${spring.llm.store.segment-size:16MB}") DataSize segmentSize
+    ) throws IOException {
+        return new DiskResponseStore(dir, maxSize.toBytes(), segmentSize.toBytes());
+    }
+
+    @Bean
+    public TokenBudget tokenBudget(TokenProperties props, MeterRegistry registry) throws IOException {
+        TokenCounter counter;
+        if (props.vocabulary() != null && props.vocabulary().exists()) {
+            try (var in = new BufferedReader(new InputStreamReader(props.vocabulary().getInputStream(), StandardCharsets.US_ASCII))) {
+                counter = new TokenCounter(in);
+            }
+        } else {
+            log.warn("No tokenizer vocabulary at spring.llm.tokens.vocabulary; token counts are estimates");
+            counter = TokenCounter.approximate();
+        }
+        return new TokenBudget(counter, props.maxPromptTokens(), props.maxCompletion(), registry);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "spring.llm.router.enabled", havingValue = "true")
+    public LlmRouter llmRouter(OpenAiClient openAi, RouterProperties props, MeterRegistry registry,
+                               @Value("${spring.llm.http.request-timeout:60s}") Duration requestTimeout) {
+        List<LlmRouter.Backend> backends = new ArrayList<>();
+        props.backends().forEach((name, b) -> {
+            OpenAiClient client = openAi.withBackend(b.baseUrl(), b.apiKey(), b.model(), b.structuredOutputs(), b.maxAttempts());
+            backends.add(new LlmRouter.Backend(name, client, client.model(), b.cost() == null ? 0 : b.cost()));
+        });
+        return new LlmRouter(backends, props.tiers(), props.endpoints(), props.failureThreshold(),
+                props.openFor(), props.explore(), props.costWeight(), requestTimeout, registry);
+    }
+
+    @Bean
+    public RateLimitedLlmClient rateLimitedLlmClient(
+            OpenAiClient openAi,
+            ObjectProvider<LlmRouter> router,
+            TokenBudget budget,
+            @Value("${spring.llm.rate-limit.requests-per-minute:500}") int requestsPerMinute,
+            @Value("${spring.llm.rate-limit.tokens-per-minute:200000}") int tokensPerMinute,
+            @Value("${spring.llm.rate-limit.completion-tokens:700}") int completionTokens,
+            @Value("${spring.llm.rate-limit.max-concurrent:16}") int maxConcurrent,
+            @Value("${spring.llm.rate-limit.max-queue:100}") int maxQueue,
+            @Value("${spring.llm.rate-limit.max-wait:10s}") Duration maxWait
+    ) {
+        LlmClient upstream = router.getIfAvailable();
+        if (upstream == null) upstream = openAi;
+        return new RateLimitedLlmClient(upstream, budget, requestsPerMinute, tokensPerMinute, completionTokens,
+                maxConcurrent, maxQueue, maxWait);
+    }
+
+    @Bean
+    public CachingLlmClient cachingLlmClient(
+            OpenAiClient openAi,
+            RateLimitedLlmClient rateLimited,
+            ObjectProvider<DiskResponseStore> store,
+            ObjectProvider<LlmRouter> router,
+            @Value("${spring.llm.cache.max-entries:1000}") int maxEntries,
+            @Value("${spring.llm.cache.max-size:32MB}") DataSize maxSize,
+            @Value("${spring.llm.cache.ttl:6h}") Duration ttl
+    ) {
+        LlmClient upstream = rateLimited;
+        String model = modelKey(openAi, router);
+        DiskResponseStore disk = store.getIfAvailable();
+        if (disk != null) {
+            upstream = new PersistentLlmClient(upstream, disk, model, openAi.temperature());
+        }
+        return new CachingLlmClient(upstream, model, openAi.temperature(), maxEntries, maxSize.toBytes(), ttl);
+    }
+
+    @Bean
+    public SingleFlightLlmClient singleFlightLlmClient(CachingLlmClient cache, OpenAiClient openAi, ObjectProvider<LlmRouter> router) {
+        return new SingleFlightLlmClient(cache, modelKey(openAi, router), openAi.temperature());
+    }
+
+    // the model part of cache keys
+    private static String modelKey(OpenAiClient openAi, ObjectProvider<LlmRouter> router) {
+        LlmRouter r = router.getIfAvailable();
+        return r == null ? openAi.model() : r.modelKey();
+    }
+
+    @Bean
+    @Primary
+    public LlmClient llmClient(SingleFlightLlmClient singleFlight, MeterRegistry registry) {
+        return new MeteredLlmClient(singleFlight, registry);
+    }
+}
@@ -0,0 +1,73 @@
+package dev.arno.linkedin.postagent.config;
+
+import dev.arno.linkedin.postagent.llm.LlmStatsSource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes the {@code GET /llm/stats} counters (cache, disk store, rate limiter, single-flight,
+ * upstream retries/hedges, tokens) as {@code llm.stats{source, stat}} gauges.
+ */
+@Configuration
+public class MetricsConfig {
+
+    @Bean(destroyMethod = "close")
+    public LlmStatsMeters llmStatsMeters(List<LlmStatsSource> sources,
+                                         @Value("${spring.llm.metrics.refresh:30s}") Duration refresh) {
+        return new LlmStatsMeters(sources, refresh);
+    }
+
+    /**
+     * Sources add keys as they go (a prompt template's first render, a backend's first call), so
+     * the key set is read again every {@code refresh} and gauges are added for keys that are new.
+     */
+    public static class LlmStatsMeters implements MeterBinder, AutoCloseable {
+
+        private final List<LlmStatsSource> sources;
+        private final Duration refresh;
+        private final ScheduledExecutorService refresher = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("llm-stats-meters").daemon().factory());
+
+        LlmStatsMeters(List<LlmStatsSource> sources, Duration refresh) {
+            this.sources = sources;
+            this.refresh = refresh;
+        }
+
+        @Override
+        public void bindTo(MeterRegistry registry) {
+            register(registry);
+            long millis = refresh.toMillis();
+            refresher.scheduleWithFixedDelay(() -> register(registry), millis, millis, TimeUnit.MILLISECONDS);
+        }
+
+        // registering an id that exists returns the gauge already there, so only new keys are added
+        void register(MeterRegistry registry) {
+            for (LlmStatsSource source : sources) {
+                for (String stat : source.stats().keySet()) {
+                    Gauge.builder("llm.stats", source, s -> {
+                                Number v = s.stats().get(stat);
+                                return v == null ? Double.NaN : v.doubleValue();
+                            })
+                            .tag("source", source.statsName())
+                            .tag("stat", stat)
+                            .register(registry);
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+            refresher.shutdownNow();
+        }
+    }
+}
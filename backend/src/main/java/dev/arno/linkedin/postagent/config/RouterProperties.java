@@ -0,0 +1,49 @@
+package dev.arno.linkedin.postagent.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@code spring.llm.router.*}: upstream backends, the tiers they serve, and which tier each
+ * endpoint uses.
+ *
+ * @param enabled          off = every call goes to the single {@code spring.llm} backend
+ * @param backends         by name; unset fields fall back to the {@code spring.llm} backend
+ * @param tiers            tier name to the backends allowed to serve it
+ * @param endpoints        endpoint, stage or lane to tier, with a {@code default}
+ * @param failureThreshold consecutive failures that take a backend out of rotation
+ * @param openFor          how long it stays out before a probe call
+ * @param explore          share of calls sent to a backend other than the best, to keep its latency current
+ * @param costWeight       how much cost counts against latency when ranking backends
+ */
+@ConfigurationProperties("spring.llm.router")
+public record RouterProperties(
+        boolean enabled,
+        Map<String, Backend> backends,
+        Map<String, List<String>> tiers,
+        Map<String, String> endpoints,
+        Integer failureThreshold,
+        Duration openFor,
+        Double explore,
+        Double costWeight
+) {
+    public RouterProperties {
+        backends = (backends == null) ? Map.of() : backends;
+        tiers = (tiers == null) ? Map.of() : tiers;
+        endpoints = (endpoints == null) ? Map.of() : endpoints;
+        failureThreshold = (failureThreshold == null) ? 5 : failureThreshold;
+        openFor = (openFor == null) ? Duration.ofSeconds(30) : openFor;
+        explore = (explore == null) ? 0.05 : explore;
+        costWeight = (costWeight == null) ? 0.1 : costWeight;
+    }
+
+    /**
+     * @param cost              $ per million tokens (blended), used only for ranking
+     * @param structuredOutputs false for servers that reject {@code response_format: json_schema}
+     * @param maxAttempts       retries against this backend before failing over
+     */
+    public record Backend(String baseUrl, String apiKey, String model, Double cost, Boolean structuredOutputs, Integer maxAttempts) {}
+}
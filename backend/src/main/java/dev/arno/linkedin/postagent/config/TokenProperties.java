@@ -0,0 +1,21 @@
+package dev.arno.linkedin.postagent.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.core.io.Resource;
+
+import java.util.Map;
+
+/**
+ * {@code spring.llm.tokens.*}: tokenizer vocabulary and per-call token budgets.
+ *
+ * @param vocabulary      tiktoken rank file; when missing, token counts are estimated
+ * @param maxPromptTokens prompts above this are trimmed before they go upstream (0 = no limit)
+ * @param maxCompletion   {@code max_tokens} by endpoint, stage or lane, with a {@code default}
+ */
+@ConfigurationProperties("spring.llm.tokens")
+public record TokenProperties(Resource vocabulary, Integer maxPromptTokens, Map<String, Integer> maxCompletion) {
+    public TokenProperties {
+        maxPromptTokens = (maxPromptTokens == null) ? 6000 : maxPromptTokens;
+        maxCompletion = (maxCompletion == null) ? Map.of() : maxCompletion;
+    }
+}
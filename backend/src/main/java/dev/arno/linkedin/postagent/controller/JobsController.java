@@ -0,0 +1,39 @@
+package dev.arno.linkedin.postagent.controller;
+
+import dev.arno.linkedin.postagent.dto.FullPostInput;
+import dev.arno.linkedin.postagent.dto.JobOutput;
+import dev.arno.linkedin.postagent.service.JobService;
+import jakarta.validation.Valid;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+public class JobsController {
+
+    private final JobService jobs;
+
+    public JobsController(JobService jobs) {
+        this.jobs = jobs;
+    }
+
+    @PostMapping("/jobs/full")
+    public ResponseEntity<JobOutput> submitFull(@Valid @RequestBody FullPostInput input) {
+        JobOutput job = jobs.submit(input, RequestOptions.of("jobs"));
+        return ResponseEntity.accepted()
+                .header(HttpHeaders.LOCATION, "/jobs/" + job.id())
+                .body(job);
+    }
+
+    @GetMapping("/jobs/{id}")
+    public JobOutput get(@PathVariable String id) {
+        return jobs.get(id);
+    }
+
+    @DeleteMapping("/jobs/{id}")
+    public JobOutput cancel(@PathVariable String id) {
+        return jobs.cancel(id);
+    }
+}
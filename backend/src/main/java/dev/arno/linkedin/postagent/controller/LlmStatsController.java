@@ -0,0 +1,28 @@
+package dev.arno.linkedin.postagent.controller;
+
+import dev.arno.linkedin.postagent.llm.LlmStatsSource;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+public class LlmStatsController {
+
+    private final List<LlmStatsSource> sources;
+
+    public LlmStatsController(List<LlmStatsSource> sources) {
+        this.sources = sources;
+    }
+
+    @GetMapping("/llm/stats")
+    public Map<String, Map<String, Number>> stats() {
+        var out = new LinkedHashMap<String, Map<String, Number>>();
+        for (LlmStatsSource s : sources) {
+            out.put(s.statsName(), s.stats());
+        }
+        return out;
+    }
+}
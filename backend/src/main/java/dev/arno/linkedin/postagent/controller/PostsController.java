@@ -5,12 +5,26 @@ import dev.arno.linkedin.postagent.dto.*;
 import dev.arno.linkedin.postagent.error.ApiException;
 import dev.arno.linkedin.postagent.llm.LlmClient;
 import dev.arno.linkedin.postagent.llm.LlmMessage;
+import dev.arno.linkedin.postagent.llm.LlmOptions;
+import dev.arno.linkedin.postagent.llm.ResponseSchema;
+import dev.arno.linkedin.postagent.service.BatchService;
+import dev.arno.linkedin.postagent.service.FullPostPipeline;
+import dev.arno.linkedin.postagent.service.HashtagEngine;
 import dev.arno.linkedin.postagent.service.PackagingService;
+import dev.arno.linkedin.postagent.service.PipelineListener;
 import dev.arno.linkedin.postagent.service.Prompts;
+import dev.arno.linkedin.postagent.service.WordDiff;
+import dev.arno.linkedin.postagent.web.IdempotencyFilter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
 import java.util.Map;
 
@@ -18,12 +32,32 @@ import java.util.Map;
 @RequestMapping(produces = MediaType.APPLICATION_JSON_VALUE)
 public class PostsController {
 
+    private static final long STREAM_TIMEOUT_MS = 180_000;
+    private static final long BATCH_TIMEOUT_MS = 3_600_000;
+
     private final LlmClient llm;
     private final ObjectMapper mapper;
-
-    public PostsController(LlmClient llm, ObjectMapper mapper) {
+    private final FullPostPipeline pipeline;
+    private final BatchService batch;
+    private final HashtagEngine hashtagEngine;
+
+    // sent as structured-output schemas; each type's schema is generated once, these bind it to the registry
+    private final ResponseSchema<IdeasOutput> ideasSchema;
+    private final ResponseSchema<OutlineOutput> outlineSchema;
+    private final ResponseSchema<HashtagizeOutput> hashtagsSchema;
+    private final ResponseSchema<ImagePromptsOutput> imagePromptsSchema;
+
+    public PostsController(LlmClient llm, ObjectMapper mapper, FullPostPipeline pipeline, BatchService batch, HashtagEngine hashtagEngine,
+                           MeterRegistry registry) {
         this.llm = llm;
         this.mapper = mapper;
+        this.pipeline = pipeline;
+        this.batch = batch;
+        this.hashtagEngine = hashtagEngine;
+        this.ideasSchema = ResponseSchema.of(IdeasOutput.class, registry);
+        this.outlineSchema = ResponseSchema.of(OutlineOutput.class, registry);
+        this.hashtagsSchema = ResponseSchema.of(HashtagizeOutput.class, registry);
+        this.imagePromptsSchema = ResponseSchema.of(ImagePromptsOutput.class, registry);
     }
 
     @GetMapping("/health")
@@ -33,223 +67,168 @@ public class PostsController {
 
     @PostMapping("/posts/ideas")
     public IdeasOutput ideas(@Valid @RequestBody IdeasInput input) throws Exception {
-        String row = llm.chat(List.of(
-                LlmMessage.system(Prompts.SYSTEM),
-                LlmMessage.user(Prompts.ideasPrompt(input))
-        ));
-        String out = unwrapJsonCodeFence(row);
-
-        IdeaItem[] items = mapper.readValue(out, IdeaItem[].class);
-        return new IdeasOutput(List.of(items));
+        return llm.chat(Prompts.ideasMessages(input), options("ideas"), ideasSchema);
     }
 
     @PostMapping("/posts/outline")
     public OutlineOutput outline(@Valid @RequestBody OutlineInput input) throws Exception {
-        String content = llm.chat(List.of(
-                LlmMessage.system(Prompts.SYSTEM),
-                LlmMessage.user(Prompts.outlinePrompt(
-                        input.ideaId(),
-                        input.format(),
-                        input.keyPoints(),
-                        input.audienceLevel()
-                ))
-        ));
-        var node = mapper.readTree(content).get("outline");
-        if (node == null) throw new ApiException(500, "LLM did not return 'outline'");
-        return mapper.treeToValue(mapper.createObjectNode().set("outline", node), OutlineOutput.class);
+        OutlineOutput output = llm.chat(Prompts.outlineMessages(
+                input.ideaId(),
+                input.format(),
+                input.keyPoints(),
+                input.audienceLevel()
+        ), options("outline"), outlineSchema);
+        if (output.outline() == null) throw new ApiException(500, "LLM did not return 'outline'");
+        return output;
     }
 
     @PostMapping("/posts/draft")
     public DraftOutput draft(@Valid @RequestBody DraftInput input) throws Exception {
-        String content = llm.chat(List.of(
-                LlmMessage.system(Prompts.SYSTEM),
-                LlmMessage.user(Prompts.draftPrompt(
-                        input.outline(),
-                        input.brief(),
-                        input.topic(),
-                        input.tone(),
-                        input.constraints()
-                ))
-        ));
+        String content = llm.chat(draftMessages(input), options("draft"));
         return new DraftOutput(content, PackagingService.countChars(content));
     }
 
+    @PostMapping(value = "/posts/draft/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter draftStream(@Valid @RequestBody DraftInput input, HttpServletRequest request) {
+        LlmOptions options = options("draft");
+        return stream(request, emitter -> {
+            String content = llm.chatStream(draftMessages(input), options, delta -> send(emitter, "token", Map.of("stage", "draft", "text", delta)));
+            send(emitter, "done", new DraftOutput(content, PackagingService.countChars(content)));
+        });
+    }
+
+    private List<LlmMessage> draftMessages(DraftInput input) {
+        return Prompts.draftMessages(
+                input.outline(),
+                input.brief(),
+                input.topic(),
+                input.tone(),
+                input.constraints()
+        );
+    }
+
     @PostMapping("/posts/polish")
     public PolishOutput polish(@Valid @RequestBody PolishInput input) throws Exception {
-        String content = llm.chat(List.of(
-                LlmMessage.system(Prompts.SYSTEM),
-                LlmMessage.user(Prompts.polishPrompt(
-                        input.draft(),
-                        input.tightenByPercent(),
-                        input.editRules()
-                ))
-        ));
-        return mapper.readValue(content, PolishOutput.class);
+        String content = llm.chat(Prompts.polishMessages(input.draft(), input.tightenByPercent(), input.editRules()), options("polish"));
+        String polished = content.strip();
+        return new PolishOutput(polished, PackagingService.countChars(polished), WordDiff.diff(input.draft(), polished));
     }
 
     @PostMapping("/posts/hashtagize")
     public HashtagizeOutput hashtags(@Valid @RequestBody HashtagizeInput input) throws Exception {
-        String content = llm.chat(List.of(
-                LlmMessage.system(Prompts.SYSTEM),
-                LlmMessage.user(Prompts.hashtagsPrompt(
-                        input.text(),
-                        input.maxTags(),
-                        input.strategy()
-                ))
-        ));
-        return mapper.readValue(content, HashtagizeOutput.class);
+        var local = hashtagEngine.suggest(input.text(), input.maxTags(), input.strategy());
+        if (local.confident()) {
+            return new HashtagizeOutput(local.hashtags(), local.rationale());
+        }
+
+        return llm.chat(Prompts.hashtagsMessages(input.text(), input.maxTags(), input.strategy()), options("hashtagize"), hashtagsSchema);
     }
 
     @PostMapping("/posts/image-prompts")
     public ImagePromptsOutput imagePrompts(@Valid @RequestBody ImagePromptsInput input) throws Exception {
-        String content = llm.chat(List.of(
-                LlmMessage.system(Prompts.SYSTEM),
-                LlmMessage.user(Prompts.imagePrompt(
-                        input.text(),
-                        input.style()
-                ))
-        ));
-        return mapper.readValue(content, ImagePromptsOutput.class);
+        return llm.chat(Prompts.imageMessages(input.text(), input.style()), options("image-prompts"), imagePromptsSchema);
     }
 
     @PostMapping("/posts/package")
     public PackageOutput pack(@Valid @RequestBody PackageInput input) throws Exception {
-        String content = llm.chat(List.of(
-                LlmMessage.system(Prompts.SYSTEM),
-                LlmMessage.user(Prompts.packagePrompt(
-                        input.text(),
-                        input.hashtags(),
-                        input.imagePrompt(),
-                        input.constraints()
-                ))
-        ));
-        return mapper.readValue(content, PackageOutput.class);
-    }
-
-    private String unwrapJsonCodeFence(String s) {
-        if (s == null) return "";
-        String trimmed = s.trim();
-        if (trimmed.startsWith("```")) {
-            // Skip the first line (``` or ```json)
-            int firstNewline = trimmed.indexOf('\n');
-            int lastFence = trimmed.lastIndexOf("```");
-            if (firstNewline != -1 && lastFence > firstNewline) {
-                return trimmed.substring(firstNewline + 1, lastFence).trim();
-            }
+        Constraints c = PackagingService.parseConstraints(input.constraints(), mapper);
+        String text = input.text();
+        if (PackagingService.needsRewrite(text, input.hashtags(), c)) {
+            // leave room for the hashtag line
+            int budget = PackagingService.bodyBudget(text, input.hashtags(), c);
+            text = llm.chat(Prompts.shortenMessages(text, budget), options("package")).strip();
         }
-        return trimmed;
+        return PackagingService.pack(text, input.hashtags(), input.imagePrompt(), c);
+    }
+
+    private LlmOptions options(String endpoint) {
+        return RequestOptions.of(endpoint);
     }
 
     @PostMapping("/posts/full")
     public FullPostOutput full(@Valid @RequestBody FullPostInput input) throws Exception {
-        // sensible defaults
-        String tone = (input.tone() == null || input.tone().isBlank())
-                ? "practical"
-                : input.tone();
-        int maxTags = (input.maxHashtags() == null || input.maxHashtags() <= 0)
-                ? 5
-                : input.maxHashtags();
-
-        // 1) Get a few ideas and pick the first
-        String ideasJson = llm.chat(List.of(
-                LlmMessage.system(Prompts.SYSTEM),
-                LlmMessage.user("""
-                    I need LinkedIn post ideas.
-
-                    Topic: %s
-                    Audience: %s
-                    Goal: %s
-
-                    Return a JSON array of short title strings.
-                    """.formatted(input.topic(), input.audience(), input.goal()))
-        ));
-        // Example expected: ["Title 1", "Title 2", ...]
-        var ideasNode = mapper.readTree(ideasJson);
-        String ideaTitle = ideasNode.isArray() && ideasNode.size() > 0
-                ? ideasNode.get(0).asText()
-                : input.goal(); // fallback
-
-        // 2) Outline
-        String outlineJson = llm.chat(List.of(
-                LlmMessage.system(Prompts.SYSTEM),
-                LlmMessage.user("""
-                    Create a concise outline for a LinkedIn post with this title:
-
-                    "%s"
-
-                    Audience: %s
-                    Tone: %s
-
-                    Return JSON: { "outline": "..." }
-                    """.formatted(ideaTitle, input.audience(), tone))
-        ));
-        String outline = mapper.readTree(outlineJson).path("outline").asText();
-
-        // 3) Draft
-        String draft = llm.chat(List.of(
-                LlmMessage.system(Prompts.SYSTEM),
-                LlmMessage.user("""
-                    Write a LinkedIn post using this outline:
-
-                    %s
-
-                    Audience: %s
-                    Tone: %s
-                    Constraints: %s
-
-                    Return ONLY the post text, no JSON.
-                    """.formatted(outline, input.audience(), tone,
-                        input.constraints() == null ? "" : input.constraints()))
-        ));
-
-        // 4) Hashtags
-        String hashtagsJson = llm.chat(List.of(
-                LlmMessage.system(Prompts.SYSTEM),
-                LlmMessage.user("""
-                    Generate up to %d high-quality hashtags for this LinkedIn post:
-
-                    %s
-
-                    Return JSON: { "hashtags": ["#tag1", "#tag2", ...] }
-                    """.formatted(maxTags, draft))
-        ));
-        var tagsNode = mapper.readTree(hashtagsJson).path("hashtags");
-        java.util.List<String> hashtags = new java.util.ArrayList<>();
-        if (tagsNode.isArray()) {
-            tagsNode.forEach(n -> hashtags.add(n.asText()));
-        }
+        return pipeline.run(input, options("full"), PipelineListener.NONE);
+    }
 
-        // 5) Image prompt
-        String imageJson = llm.chat(List.of(
-                LlmMessage.system(Prompts.SYSTEM),
-                LlmMessage.user("""
-                    Create a concise prompt for an illustration or header image
-                    that would go well with this LinkedIn post:
-
-                    %s
-
-                    Return JSON: { "imagePrompt": "..." }
-                    """.formatted(draft))
-        ));
-        String imagePrompt = mapper.readTree(imageJson).path("imagePrompt").asText();
-
-        // 6) Final packaged text (post + hashtags)
-        String tagsLine = hashtags.isEmpty()
-                ? ""
-                : "\n\n" + String.join(" ", hashtags);
-
-        String finalText = draft.trim() + tagsLine;
-        int charCount = dev.arno.linkedin.postagent.service.PackagingService.countChars(finalText);
-
-        return new FullPostOutput(
-                ideaTitle,
-                outline,
-                draft,
-                hashtags,
-                imagePrompt,
-                finalText,
-                charCount
-        );
+    @PostMapping(value = "/posts/full/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter fullStream(@Valid @RequestBody FullPostInput input, HttpServletRequest request) {
+        LlmOptions options = options("full");
+        return stream(request, emitter -> {
+            FullPostOutput out = pipeline.run(input, options, new PipelineListener() {
+                @Override
+                public void token(String stage, String delta) {
+                    send(emitter, "token", Map.of("stage", stage, "text", delta));
+                }
+
+                @Override
+                public void stageCompleted(String stage, Object result, long millis) {
+                    send(emitter, "stage", Map.of("stage", stage, "millis", millis));
+                }
+            });
+            send(emitter, "done", out);
+        });
+    }
+
+    // One NDJSON line per post, in completion order: {"index":..,"result":{..}} or {"index":..,"error":".."}
+    // A batch with a failed post is never replayed for an Idempotency-Key, so a retry runs it again.
+    @PostMapping(value = "/posts/batch", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseBodyEmitter batch(@Valid @RequestBody BatchInput input, HttpServletRequest request) {
+        LlmOptions options = options("batch");
+        var emitter = new ResponseBodyEmitter(BATCH_TIMEOUT_MS);
+        Thread.startVirtualThread(() -> {
+            try {
+                batch.run(input.posts(), input.parallelism(), options, item -> {
+                    if (item.error() != null) request.setAttribute(IdempotencyFilter.NOT_REPLAYABLE, true);
+                    try {
+                        emitter.send(mapper.writeValueAsString(item) + "\n", MediaType.APPLICATION_NDJSON);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                emitter.complete();
+            } catch (Exception e) {
+                request.setAttribute(IdempotencyFilter.NOT_REPLAYABLE, true);
+                emitter.completeWithError(e);
+            }
+        });
+        return emitter;
+    }
+
+    private interface StreamBody {
+        void run(SseEmitter emitter) throws Exception;
+    }
+
+    // Generation runs on its own virtual thread; failures after the stream opened become an "error" event.
+    private SseEmitter stream(HttpServletRequest request, StreamBody body) {
+        var emitter = new SseEmitter(STREAM_TIMEOUT_MS);
+        Thread.startVirtualThread(() -> {
+            try {
+                body.run(emitter);
+                emitter.complete();
+            } catch (UncheckedIOException e) {
+                // client went away; nothing left to tell it
+                request.setAttribute(IdempotencyFilter.NOT_REPLAYABLE, true);
+                emitter.completeWithError(e.getCause());
+            } catch (Exception e) {
+                request.setAttribute(IdempotencyFilter.NOT_REPLAYABLE, true);
+                try {
+                    emitter.send(SseEmitter.event().name("error").data(Map.of("error", String.valueOf(e.getMessage()))));
+                    emitter.complete();
+                } catch (IOException | RuntimeException ignored) {
+                    emitter.completeWithError(e);
+                }
+            }
+        });
+        return emitter;
+    }
+
+    // Throwing out of a token callback aborts the upstream stream when the client disconnects.
+    private static void send(SseEmitter emitter, String event, Object data) {
+        try {
+            emitter.send(SseEmitter.event().name(event).data(data));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
 }
@@ -0,0 +1,28 @@
+package dev.arno.linkedin.postagent.controller;
+
+import dev.arno.linkedin.postagent.llm.LlmOptions;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+/**
+ * Builds the {@link LlmOptions} for the current request.
+ */
+final class RequestOptions {
+
+    static final String CACHE_HEADER = "X-LLM-Cache";
+
+    private RequestOptions() {}
+
+    // "X-LLM-Cache: bypass" (or "Cache-Control: no-cache") forces a fresh completion
+    static LlmOptions of(String endpoint) {
+        var options = LlmOptions.forEndpoint(endpoint);
+        if (RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attrs) {
+            String cache = attrs.getRequest().getHeader(CACHE_HEADER);
+            String cacheControl = attrs.getRequest().getHeader("Cache-Control");
+            if ("bypass".equalsIgnoreCase(cache) || (cacheControl != null && cacheControl.contains("no-cache"))) {
+                options = options.withCacheable(false);
+            }
+        }
+        return options;
+    }
+}
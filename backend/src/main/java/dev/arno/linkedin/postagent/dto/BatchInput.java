@@ -0,0 +1,14 @@
+package dev.arno.linkedin.postagent.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+public record BatchInput(
+        @NotEmpty @Size(max = 100) List<@Valid FullPostInput> posts,
+        @Min(1) @Max(16) Integer parallelism   // optional, default from spring.llm.batch.parallelism
+) { }
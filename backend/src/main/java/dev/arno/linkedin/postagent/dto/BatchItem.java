@@ -0,0 +1,7 @@
+package dev.arno.linkedin.postagent.dto;
+
+public record BatchItem(
+        int index,                  // position in BatchInput.posts
+        FullPostOutput result,
+        String error
+) { }
@@ -1,6 +1,7 @@
 package dev.arno.linkedin.postagent.dto;
 
 import java.util.List;
+import java.util.Map;
 
 public record FullPostOutput(
         String ideaTitle,
@@ -9,5 +10,6 @@ public record FullPostOutput(
         List<String> hashtags,
         String imagePrompt,
         String finalText,
-        int charCount
+        int charCount,
+        Map<String, Long> stageMillis
 ) { }
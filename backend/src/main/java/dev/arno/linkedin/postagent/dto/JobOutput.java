@@ -0,0 +1,15 @@
+package dev.arno.linkedin.postagent.dto;
+
+import java.time.Instant;
+import java.util.Map;
+
+public record JobOutput(
+        String id,
+        JobState state,
+        Instant createdAt,
+        Instant finishedAt,
+        Map<String, Object> stages,      // results of the stages finished so far
+        Map<String, Long> stageMillis,
+        FullPostOutput result,
+        String error
+) { }
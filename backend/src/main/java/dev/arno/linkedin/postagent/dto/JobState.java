@@ -0,0 +1,9 @@
+package dev.arno.linkedin.postagent.dto;
+
+public enum JobState {
+    queued,
+    running,
+    succeeded,
+    failed,
+    cancelled
+}
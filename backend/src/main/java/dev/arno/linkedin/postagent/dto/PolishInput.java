@@ -3,11 +3,12 @@ package dev.arno.linkedin.postagent.dto;
 import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Size;
 
 import java.util.List;
 
 public record PolishInput(
-        @NotBlank String draft,
+        @NotBlank @Size(max = 20_000) String draft,
         @Min(0) @Max(60) Integer tightenByPercent,
         List<String> editRules,
         String platform // "linkedin"
@@ -2,6 +2,9 @@ package dev.arno.linkedin.postagent.error;
 
 public class ApiException extends RuntimeException {
     private final int status;
-    public ApiException(int status, String message){ super(message); this.status = status; }
+    private final Long retryAfterSeconds;
+    public ApiException(int status, String message){ this(status, message, null); }
+    public ApiException(int status, String message, Long retryAfterSeconds){ super(message); this.status = status; this.retryAfterSeconds = retryAfterSeconds; }
     public int status(){ return status; }
+    public Long retryAfterSeconds(){ return retryAfterSeconds; }
 }
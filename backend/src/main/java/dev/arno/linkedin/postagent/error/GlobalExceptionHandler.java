@@ -1,5 +1,6 @@
 package dev.arno.linkedin.postagent.error;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -17,7 +18,11 @@ public class GlobalExceptionHandler {
 
     @ExceptionHandler(ApiException.class)
     public ResponseEntity<?> handleApi(ApiException e){
-        return ResponseEntity.status(e.status()).body(Map.of("error", e.getMessage()));
+        var res = ResponseEntity.status(e.status());
+        if (e.retryAfterSeconds() != null) {
+            res.header(HttpHeaders.RETRY_AFTER, String.valueOf(e.retryAfterSeconds()));
+        }
+        return res.body(Map.of("error", e.getMessage()));
     }
 
     @ExceptionHandler(Exception.class)
@@ -0,0 +1,20 @@
+package dev.arno.linkedin.postagent.llm;
+
+/**
+ * Admits the extra upstream attempts of a call that has already been let through once: retries and
+ * hedged duplicates. {@link RateLimitedLlmClient} hands one down in {@link LlmOptions} so those
+ * attempts count against the same request and token limits as the first.
+ */
+public interface AttemptGate {
+
+    /** Admits everything; for calls that didn't pass a limiter. */
+    AttemptGate OPEN = wait -> true;
+
+    /**
+     * Takes the permits for one more attempt. With {@code wait} it queues like a new call would,
+     * within the limiter's wait budget; without, it only succeeds if the permits are free now.
+     *
+     * @return false when the attempt should not be made
+     */
+    boolean acquire(boolean wait) throws InterruptedException;
+}
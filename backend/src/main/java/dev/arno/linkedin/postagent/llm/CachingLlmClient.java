@@ -0,0 +1,141 @@
+package dev.arno.linkedin.postagent.llm;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * In-memory LRU cache in front of an {@link LlmClient}, keyed by {@link PromptKey}. Bounded both by
+ * entry count and by the approximate heap size of the cached completions; entries also expire
+ * after a TTL. Calls with {@link LlmOptions#cacheable()} false skip the lookup but still refresh
+ * the entry with the new completion. {@link #evict} drops an entry the caller could not use.
+ */
+public class CachingLlmClient implements LlmClient, LlmStatsSource {
+
+    private record Entry(String content, long bytes, long expiresAt) {}
+
+    private final LlmClient delegate;
+    private final String model;
+    private final double temperature;
+    private final int maxEntries;
+    private final long maxBytes;
+    private final long ttlNanos;
+
+    // access-ordered: iteration starts at the least recently used entry
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong bypasses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+
+    public CachingLlmClient(LlmClient delegate, String model, double temperature, int maxEntries, long maxBytes, Duration ttl) {
+        this.delegate = delegate;
+        this.model = model;
+        this.temperature = temperature;
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        this.ttlNanos = ttl.toNanos();
+    }
+
+    @Override
+    public String chat(List<LlmMessage> messages, LlmOptions options) throws IOException, InterruptedException {
+        String key = PromptKey.of(model, temperature, messages);
+        String cached = lookup(key, options);
+        if (cached != null) return cached;
+
+        String content = delegate.chat(messages, options);
+        store(key, content);
+        return content;
+    }
+
+    @Override
+    public String chatStream(List<LlmMessage> messages, LlmOptions options, Consumer<String> onToken) throws IOException, InterruptedException {
+        String key = PromptKey.of(model, temperature, messages);
+        String cached = lookup(key, options);
+        if (cached != null) {
+            onToken.accept(cached);
+            return cached;
+        }
+
+        String content = delegate.chatStream(messages, options, onToken);
+        store(key, content);
+        return content;
+    }
+
+    @Override
+    public void evict(List<LlmMessage> messages) {
+        synchronized (entries) {
+            remove(PromptKey.of(model, temperature, messages));
+        }
+        delegate.evict(messages);
+    }
+
+    private String lookup(String key, LlmOptions options) {
+        if (!options.cacheable()) {
+            bypasses.incrementAndGet();
+            return null;
+        }
+        synchronized (entries) {
+            Entry e = entries.get(key);
+            if (e != null && e.expiresAt() - System.nanoTime() <= 0) {
+                remove(key);
+                expirations.incrementAndGet();
+                e = null;
+            }
+            (e == null ? misses : hits).incrementAndGet();
+            return e == null ? null : e.content();
+        }
+    }
+
+    private void store(String key, String content) {
+        // UTF-16 payload plus a rough allowance for the key, entry and map node
+        long size = 2L * content.length() + 200;
+        if (maxEntries <= 0 || size > maxBytes) return;
+
+        synchronized (entries) {
+            remove(key);
+            entries.put(key, new Entry(content, size, System.nanoTime() + ttlNanos));
+            bytes += size;
+
+            Iterator<Entry> lru = entries.values().iterator();
+            while ((entries.size() > maxEntries || bytes > maxBytes) && lru.hasNext()) {
+                bytes -= lru.next().bytes();
+                lru.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    private void remove(String key) {
+        Entry old = entries.remove(key);
+        if (old != null) bytes -= old.bytes();
+    }
+
+    @Override
+    public String statsName() {
+        return "cache";
+    }
+
+    @Override
+    public Map<String, Number> stats() {
+        var stats = new LinkedHashMap<String, Number>();
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        stats.put("bypasses", bypasses.get());
+        stats.put("evictions", evictions.get());
+        stats.put("expirations", expirations.get());
+        synchronized (entries) {
+            stats.put("entries", entries.size());
+            stats.put("bytes", bytes);
+        }
+        return stats;
+    }
+}
@@ -0,0 +1,36 @@
+package dev.arno.linkedin.postagent.llm;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * The parts of a chat completion, or of one streamed chunk, that this service reads. Responses are
+ * bound straight into it; every other field of the envelope is skipped without building a tree.
+ */
+record ChatCompletion(List<Choice> choices, Usage usage) {
+
+    /** The first choice, or null when there is none (e.g. the usage-only last chunk of a stream). */
+    Choice first() {
+        return choices == null || choices.isEmpty() ? null : choices.get(0);
+    }
+
+    /** {@code message} on a plain completion, {@code delta} on a streamed chunk. */
+    record Choice(Message message, Message delta, @JsonProperty("finish_reason") String finishReason) {
+    }
+
+    record Message(String content) {
+    }
+
+    record Usage(@JsonProperty("prompt_tokens") int promptTokens,
+                 @JsonProperty("completion_tokens") int completionTokens,
+                 @JsonProperty("prompt_tokens_details") PromptDetails promptDetails) {
+
+        int cachedTokens() {
+            return promptDetails == null ? 0 : promptDetails.cachedTokens();
+        }
+    }
+
+    record PromptDetails(@JsonProperty("cached_tokens") int cachedTokens) {
+    }
+}
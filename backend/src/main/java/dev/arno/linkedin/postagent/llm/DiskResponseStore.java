@@ -0,0 +1,390 @@
+package dev.arno.linkedin.postagent.llm;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only key/value store for completions, kept in segment files under one directory so that it
+ * survives restarts on a plain volume.
+ *
+ * <p>Each record is {@code [crc32][keyLen][valueLen][writtenAt][key][value]}; a {@code valueLen} of
+ * -1 marks a removed key and carries no value. Writes only ever go to
+ * the newest segment, which rolls over at {@code segmentBytes}. The in-memory index (key → location)
+ * is rebuilt at startup by scanning the segments oldest first, so a later record supersedes an
+ * earlier one; a torn record at the tail (crash mid-write) ends the scan and is truncated away.
+ *
+ * <p>Compaction rewrites the live records into fresh segments and deletes the old ones. It runs
+ * when superseded bytes outweigh live bytes or the store exceeds {@code maxBytes}; in the latter
+ * case the oldest entries are dropped until the store is back under 90% of the cap. It runs on a
+ * background thread and holds the store's lock only to take a snapshot and to swap the result in,
+ * so reads and writes carry on meanwhile. Its output segments are numbered below the segment that
+ * takes new writes, so a restart still sees every concurrent write as newer than its compacted copy.
+ */
+public class DiskResponseStore implements Closeable, LlmStatsSource {
+
+    private static final Logger log = LoggerFactory.getLogger(DiskResponseStore.class);
+
+    private static final int HEADER_BYTES = 4 + 4 + 4 + 8;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private record Location(long segment, long offset, int recordBytes, long writtenAt) {}
+
+    private record Copy(String key, Location from, Location to) {}
+
+    private final Path dir;
+    private final long maxBytes;
+    private final long segmentBytes;
+
+    private final Map<String, Location> index = new HashMap<>();
+    private final TreeMap<Long, FileChannel> segments = new TreeMap<>();
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(
+            Thread.ofPlatform().name("llm-store-compaction").daemon().factory());
+    private CompletableFuture<Void> compaction;
+    private long activeSegment;
+    private long totalBytes;
+    private long liveBytes;
+
+    private long hits;
+    private long misses;
+    private long writes;
+    private long compactions;
+    private long errors;
+
+    public DiskResponseStore(Path dir, long maxBytes, long segmentBytes) throws IOException {
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+        this.segmentBytes = segmentBytes;
+        Files.createDirectories(dir);
+        load();
+    }
+
+    public synchronized String get(String key) throws IOException {
+        Location loc = index.get(key);
+        if (loc == null) {
+            misses++;
+            return null;
+        }
+        ByteBuffer record = read(loc);
+        int keyLen = record.getInt(4);
+        int valueLen = record.getInt(8);
+        hits++;
+        return new String(record.array(), HEADER_BYTES + keyLen, valueLen, StandardCharsets.UTF_8);
+    }
+
+    public synchronized void put(String key, String value) throws IOException {
+        Location loc = append(key, value.getBytes(StandardCharsets.UTF_8));
+        if (loc == null) return;
+        index(key, loc);
+        writes++;
+        maybeCompact();
+    }
+
+    /** Drops {@code key}; a tombstone record keeps it dropped across a restart. */
+    public synchronized void remove(String key) throws IOException {
+        if (!index.containsKey(key)) return;
+        Location tombstone = append(key, null);
+        unindex(key);
+        totalBytes += tombstone.recordBytes();
+        maybeCompact();
+    }
+
+    // writes one record (a tombstone when value is null) to the active segment
+    private Location append(String key, byte[] value) throws IOException {
+        byte[] k = key.getBytes(StandardCharsets.UTF_8);
+        int valueLen = value == null ? -1 : value.length;
+        int recordBytes = HEADER_BYTES + k.length + Math.max(0, valueLen);
+        if (recordBytes > maxBytes) return null;
+
+        if (size(activeSegment) + recordBytes > segmentBytes && size(activeSegment) > 0) {
+            openSegment(activeSegment + 1);
+        }
+
+        long writtenAt = System.currentTimeMillis();
+        var buf = ByteBuffer.allocate(recordBytes);
+        buf.putInt(0).putInt(k.length).putInt(valueLen).putLong(writtenAt).put(k);
+        if (value != null) buf.put(value);
+        buf.putInt(0, crc(buf.array(), recordBytes));
+        buf.flip();
+
+        FileChannel ch = segments.get(activeSegment);
+        long offset = ch.size();
+        while (buf.hasRemaining()) ch.write(buf, offset + buf.position());
+        return new Location(activeSegment, offset, recordBytes, writtenAt);
+    }
+
+    private void maybeCompact() {
+        if (totalBytes > maxBytes || (totalBytes - liveBytes > liveBytes && totalBytes > segmentBytes)) {
+            compact();
+        }
+    }
+
+    /** Counts a failed read or write that a caller chose to survive; shows up as {@code errors}. */
+    public synchronized void recordError() {
+        errors++;
+    }
+
+    public synchronized int size() {
+        return index.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        compactor.shutdown();
+        try {
+            compactor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            for (FileChannel ch : segments.values()) ch.close();
+            segments.clear();
+        }
+    }
+
+    private void load() throws IOException {
+        List<Long> ids = new ArrayList<>();
+        try (var files = Files.list(dir)) {
+            files.map(p -> p.getFileName().toString())
+                    .filter(n -> n.startsWith(SEGMENT_PREFIX) && n.endsWith(SEGMENT_SUFFIX))
+                    .forEach(n -> ids.add(Long.parseLong(n.substring(SEGMENT_PREFIX.length(), n.length() - SEGMENT_SUFFIX.length()))));
+        }
+        ids.sort(Comparator.naturalOrder());
+
+        for (long id : ids) {
+            FileChannel ch = FileChannel.open(segmentPath(id), StandardOpenOption.READ, StandardOpenOption.WRITE);
+            segments.put(id, ch);
+            long validEnd = scan(id, ch);
+            if (validEnd < ch.size()) {
+                log.warn("Truncating torn tail of {} at offset {} (was {} bytes)", segmentPath(id), validEnd, ch.size());
+                ch.truncate(validEnd);
+            }
+        }
+        if (segments.isEmpty()) openSegment(1);
+        activeSegment = segments.lastKey();
+
+        log.info("LLM response store at {}: {} entries, {} live / {} total bytes in {} segment(s)",
+                dir, index.size(), liveBytes, totalBytes, segments.size());
+    }
+
+    // Indexes every intact record of a segment and returns the offset just past the last one.
+    private long scan(long segment, FileChannel ch) throws IOException {
+        long offset = 0;
+        long size = ch.size();
+        var header = ByteBuffer.allocate(HEADER_BYTES);
+        while (offset + HEADER_BYTES <= size) {
+            header.clear();
+            readFully(ch, header, offset);
+            int keyLen = header.getInt(4);
+            int valueLen = header.getInt(8);
+            if (keyLen <= 0 || valueLen < -1 || offset + HEADER_BYTES + keyLen + Math.max(0, valueLen) > size) break;
+
+            int recordBytes = HEADER_BYTES + keyLen + Math.max(0, valueLen);
+            ByteBuffer record = ByteBuffer.allocate(recordBytes);
+            readFully(ch, record, offset);
+            if (record.getInt(0) != crc(record.array(), recordBytes)) break;
+
+            String key = new String(record.array(), HEADER_BYTES, keyLen, StandardCharsets.UTF_8);
+            if (valueLen < 0) {
+                unindex(key);
+                totalBytes += recordBytes;
+            } else {
+                index(key, new Location(segment, offset, recordBytes, header.getLong(12)));
+            }
+            offset += recordBytes;
+        }
+        return offset;
+    }
+
+    private void index(String key, Location loc) {
+        Location old = index.put(key, loc);
+        if (old != null) liveBytes -= old.recordBytes();
+        liveBytes += loc.recordBytes();
+        totalBytes += loc.recordBytes();
+    }
+
+    private void unindex(String key) {
+        Location old = index.remove(key);
+        if (old != null) liveBytes -= old.recordBytes();
+    }
+
+    /** Starts a compaction unless one is running; the future completes when it has been swapped in. */
+    synchronized CompletableFuture<Void> compact() {
+        if (compaction != null && !compaction.isDone()) return compaction;
+        compaction = CompletableFuture.runAsync(() -> {
+            try {
+                compactInBackground();
+            } catch (IOException e) {
+                recordError();
+                log.warn("Compacting LLM response store failed, keeping the current segments", e);
+            }
+        }, compactor);
+        return compaction;
+    }
+
+    private void compactInBackground() throws IOException {
+        List<Copy> plan = new ArrayList<>();
+        Map<Long, FileChannel> old;
+        int dropped;
+        synchronized (this) {
+            List<Map.Entry<String, Location>> live = new ArrayList<>(index.entrySet());
+            live.sort(Comparator.comparingLong(e -> e.getValue().writtenAt()));
+
+            // drop the oldest entries until the survivors fit in 90% of the cap
+            long keepBytes = liveBytes;
+            int from = 0;
+            while (keepBytes > maxBytes * 9 / 10 && from < live.size()) {
+                keepBytes -= live.get(from++).getValue().recordBytes();
+            }
+            dropped = from;
+
+            // lay the survivors out over fresh segments, rolling over like put() does
+            long segment = activeSegment + 1;
+            long offset = 0;
+            for (int i = from; i < live.size(); i++) {
+                Location loc = live.get(i).getValue();
+                if (offset + loc.recordBytes() > segmentBytes && offset > 0) {
+                    segment++;
+                    offset = 0;
+                }
+                plan.add(new Copy(live.get(i).getKey(), loc, new Location(segment, offset, loc.recordBytes(), loc.writtenAt())));
+                offset += loc.recordBytes();
+            }
+            old = new LinkedHashMap<>(segments);
+            openSegment(segment + 1); // new writes land after the compacted segments
+        }
+
+        // old segments are no longer written to, so copying them needs no lock
+        Map<Long, FileChannel> written = new TreeMap<>();
+        try {
+            for (Copy c : plan) {
+                FileChannel ch = written.get(c.to().segment());
+                if (ch == null) {
+                    ch = FileChannel.open(segmentPath(c.to().segment()),
+                            StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                    written.put(c.to().segment(), ch);
+                }
+                ByteBuffer record = read(old.get(c.from().segment()), c.from());
+                while (record.hasRemaining()) ch.write(record, c.to().offset() + record.position());
+            }
+            for (FileChannel ch : written.values()) ch.force(true);
+        } catch (IOException e) {
+            for (var w : written.entrySet()) {
+                w.getValue().close();
+                Files.deleteIfExists(segmentPath(w.getKey()));
+            }
+            throw e;
+        }
+
+        synchronized (this) {
+            long copied = 0;
+            int kept = 0;
+            for (Copy c : plan) {
+                copied += c.to().recordBytes();
+                // a key written again meanwhile keeps its newer record; the copy is just dead bytes
+                if (c.from().equals(index.get(c.key()))) {
+                    index.put(c.key(), c.to());
+                    kept++;
+                }
+            }
+            long oldBytes = 0;
+            for (var e : old.entrySet()) oldBytes += e.getValue().size();
+            // whatever still points into an old segment is one of the dropped oldest entries
+            var it = index.values().iterator();
+            while (it.hasNext()) {
+                Location loc = it.next();
+                if (old.containsKey(loc.segment())) {
+                    liveBytes -= loc.recordBytes();
+                    it.remove();
+                }
+            }
+            segments.putAll(written);
+            for (var e : old.entrySet()) {
+                e.getValue().close();
+                segments.remove(e.getKey());
+                Files.deleteIfExists(segmentPath(e.getKey()));
+            }
+            totalBytes += copied - oldBytes;
+            compactions++;
+            log.info("Compacted LLM response store: kept {} entries ({} bytes), dropped {} oldest", kept, copied, dropped);
+        }
+    }
+
+    private void openSegment(long id) throws IOException {
+        segments.put(id, FileChannel.open(segmentPath(id),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE));
+        activeSegment = id;
+    }
+
+    private long size(long segment) throws IOException {
+        return segments.get(segment).size();
+    }
+
+    private ByteBuffer read(Location loc) throws IOException {
+        return read(segments.get(loc.segment()), loc);
+    }
+
+    private static ByteBuffer read(FileChannel ch, Location loc) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(loc.recordBytes());
+        readFully(ch, record, loc.offset());
+        record.flip();
+        return record;
+    }
+
+    private static void readFully(FileChannel ch, ByteBuffer buf, long offset) throws IOException {
+        while (buf.hasRemaining()) {
+            if (ch.read(buf, offset + buf.position()) < 0) throw new IOException("Unexpected end of segment");
+        }
+    }
+
+    private static int crc(byte[] record, int length) {
+        var crc = new CRC32();
+        crc.update(record, 4, length - 4);
+        return (int) crc.getValue();
+    }
+
+    private Path segmentPath(long id) {
+        return dir.resolve(SEGMENT_PREFIX + "%08d".formatted(id) + SEGMENT_SUFFIX);
+    }
+
+    @Override
+    public String statsName() {
+        return "store";
+    }
+
+    @Override
+    public synchronized Map<String, Number> stats() {
+        var stats = new LinkedHashMap<String, Number>();
+        stats.put("hits", hits);
+        stats.put("misses", misses);
+        stats.put("writes", writes);
+        stats.put("compactions", compactions);
+        stats.put("errors", errors);
+        stats.put("entries", index.size());
+        stats.put("liveBytes", liveBytes);
+        stats.put("totalBytes", totalBytes);
+        stats.put("segments", segments.size());
+        return stats;
+    }
+}
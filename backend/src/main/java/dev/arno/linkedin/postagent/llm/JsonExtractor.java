@@ -0,0 +1,220 @@
+package dev.arno.linkedin.postagent.llm;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.arno.linkedin.postagent.error.ApiException;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Pulls a balanced JSON object or array out of model output, skipping anything around it (code
+ * fences, "Here you go:", trailing notes). While copying it repairs the usual defects: trailing
+ * commas, smart or single quotes used as string delimiters, and raw control characters inside
+ * strings. Chunks can be {@link #feed fed} as they stream in.
+ * <p>
+ * The static readers look inside a fenced block first, then try each opening brace or bracket
+ * in turn until one yields the shape the caller wants, so a "[1]" or "[link]" in the prose before
+ * the answer is passed over instead of being returned as the value.
+ */
+public class JsonExtractor {
+
+    // candidates tried per call; each is read in place and costs a scan of its own value only
+    private static final int MAX_CANDIDATES = 32;
+
+    private final StringBuilder out = new StringBuilder();
+    private int depth;
+    private boolean done;
+    private boolean pendingComma;
+    // inside a string: the quote chars that may close it, or 0 when outside
+    private char close1, close2;
+    private boolean escape;
+
+    /**
+     * The first JSON object in the content, or failing that the first JSON array. Failures count
+     * as {@code llm.parse.failures{reason}} in {@code registry}.
+     */
+    public static JsonNode readTree(ObjectMapper mapper, String content, MeterRegistry registry) {
+        return first(content, mapper::readTree, JsonNode::isObject, registry);
+    }
+
+    public static <T> T read(ObjectMapper mapper, String content, Class<T> type, MeterRegistry registry) {
+        return first(content, json -> mapper.readValue(json, type), value -> true, registry);
+    }
+
+    private interface Parser<T> {
+        T parse(String json) throws JsonProcessingException;
+    }
+
+    private static <T> T first(String content, Parser<T> parser, Predicate<T> preferred, MeterRegistry registry) {
+        if (content == null) content = "";
+        JsonProcessingException error = null;
+        T fallback = null;
+        boolean truncated = false;
+        for (int start : candidates(content)) {
+            var x = new JsonExtractor();
+            x.feed(content, start);
+            if (!x.done) {
+                truncated = true;
+                // a cut-off object is the answer itself; anything complete inside it is a fragment
+                if (content.charAt(start) == '{') break;
+                continue;
+            }
+            try {
+                T value = parser.parse(x.out.toString());
+                if (preferred.test(value)) return value;
+                if (fallback == null) fallback = value;
+            } catch (JsonProcessingException e) {
+                if (error == null) error = e;
+            }
+        }
+        if (fallback != null) return fallback;
+        if (error != null) {
+            failed(registry, "malformed");
+            throw new ApiException(502, "LLM returned malformed JSON: " + error.getOriginalMessage());
+        }
+        failed(registry, truncated ? "truncated" : "missing");
+        throw new ApiException(502, truncated ? "LLM returned truncated JSON" : "LLM returned no JSON");
+    }
+
+    // openers inside the first fenced block, then the rest in order, collected in one scan
+    private static List<Integer> candidates(String content) {
+        var fenced = new ArrayList<Integer>();
+        var rest = new ArrayList<Integer>();
+        // 0 = before the first fence, 1 = on its opening line, 2 = in its body, 3 = past it
+        int fence = 0;
+        for (int i = 0, n = content.length(); i < n; i++) {
+            char c = content.charAt(i);
+            if (c == '`' && fence != 1 && fence != 3 && content.startsWith("```", i)) {
+                fence++;
+                i += 2;
+            } else if (c == '\n' && fence == 1) {
+                fence = 2;
+            } else if (opens(c)) {
+                var starts = fence == 2 ? fenced : rest;
+                if (starts.size() < MAX_CANDIDATES) starts.add(i);
+            }
+        }
+        // a fence that never closes is no fence
+        List<Integer> starts = new ArrayList<>(fenced);
+        starts.addAll(rest);
+        if (fence != 3) starts.sort(null);
+        return starts.subList(0, Math.min(starts.size(), MAX_CANDIDATES));
+    }
+
+    private static boolean opens(char c) {
+        return c == '{' || c == '[';
+    }
+
+    private static void failed(MeterRegistry registry, String reason) {
+        registry.counter("llm.parse.failures", "reason", reason).increment();
+    }
+
+    /** The first balanced value, repaired; does not check that it parses. */
+    public static String extract(String content) {
+        var x = new JsonExtractor();
+        if (content != null) x.feed(content);
+        return x.result();
+    }
+
+    /** Consumes the next chunk; returns true once a complete value has been read (the rest is ignored). */
+    public boolean feed(CharSequence chunk) {
+        return feed(chunk, 0);
+    }
+
+    /** Like {@link #feed(CharSequence)}, reading {@code chunk} from {@code from} on without copying it. */
+    public boolean feed(CharSequence chunk, int from) {
+        for (int i = from, n = chunk.length(); i < n && !done; i++) {
+            char c = chunk.charAt(i);
+            if (close1 != 0) inString(c);
+            else if (depth == 0) seek(c);
+            else structural(c);
+        }
+        return done;
+    }
+
+    public boolean complete() {
+        return done;
+    }
+
+    /** The repaired JSON text; fails when no complete value has been seen. Not counted as a parse failure. */
+    public String result() {
+        if (!done) {
+            throw new ApiException(502, depth == 0 ? "LLM returned no JSON" : "LLM returned truncated JSON");
+        }
+        return out.toString();
+    }
+
+    private void seek(char c) {
+        if (opens(c)) {
+            out.append(c);
+            depth = 1;
+        }
+    }
+
+    private void structural(char c) {
+        if (Character.isWhitespace(c)) return;
+        if (c == ',') {
+            pendingComma = true;
+            return;
+        }
+        if (c == '}' || c == ']') {
+            pendingComma = false; // trailing comma
+            out.append(c);
+            if (--depth == 0) done = true;
+            return;
+        }
+        if (pendingComma) {
+            out.append(',');
+            pendingComma = false;
+        }
+        switch (c) {
+            case '{', '[' -> {
+                depth++;
+                out.append(c);
+            }
+            case '"' -> openString('"', '"');
+            case '“', '”' -> openString('”', '“');
+            case '\'' -> openString('\'', '\'');
+            case '‘', '’' -> openString('’', '‘');
+            default -> out.append(c);
+        }
+    }
+
+    private void openString(char c1, char c2) {
+        close1 = c1;
+        close2 = c2;
+        out.append('"');
+    }
+
+    private void inString(char c) {
+        if (escape) {
+            escape = false;
+            // \' is not valid JSON
+            if (c != '\'') out.append('\\');
+            out.append(c);
+            return;
+        }
+        if (c == '\\') {
+            escape = true;
+        } else if (c == close1 || c == close2) {
+            close1 = close2 = 0;
+            out.append('"');
+        } else if (c == '"') {
+            out.append("\\\""); // plain quote inside a smart/single-quoted string
+        } else if (c == '\n') {
+            out.append("\\n");
+        } else if (c == '\r') {
+            out.append("\\r");
+        } else if (c == '\t') {
+            out.append("\\t");
+        } else if (c < 0x20) {
+            out.append(String.format("\\u%04x", (int) c));
+        } else {
+            out.append(c);
+        }
+    }
+}
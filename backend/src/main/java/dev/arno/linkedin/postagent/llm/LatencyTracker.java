@@ -0,0 +1,32 @@
+package dev.arno.linkedin.postagent.llm;
+
+import java.util.Arrays;
+
+/**
+ * Sliding window of the most recent upstream latencies, used to derive the hedging delay.
+ */
+final class LatencyTracker {
+
+    private final long[] window;
+    private int next;
+    private int count;
+
+    LatencyTracker(int size) {
+        this.window = new long[size];
+    }
+
+    synchronized void record(long millis) {
+        window[next] = millis;
+        next = (next + 1) % window.length;
+        if (count < window.length) count++;
+    }
+
+    /** The given percentile (0–100) of the window, or -1 with fewer than {@code minSamples} samples. */
+    synchronized long percentile(double p, int minSamples) {
+        if (count < minSamples) return -1;
+        long[] sorted = Arrays.copyOf(window, count);
+        Arrays.sort(sorted);
+        int idx = (int) Math.ceil(p / 100.0 * count) - 1;
+        return sorted[Math.max(0, Math.min(count - 1, idx))];
+    }
+}
@@ -2,7 +2,48 @@ package dev.arno.linkedin.postagent.llm;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface LlmClient {
-    String chat(List<LlmMessage> messages) throws IOException, InterruptedException;
+    String chat(List<LlmMessage> messages, LlmOptions options) throws IOException, InterruptedException;
+
+    default String chat(List<LlmMessage> messages) throws IOException, InterruptedException {
+        return chat(messages, LlmOptions.defaults());
+    }
+
+    /**
+     * Asks for a completion shaped like {@code schema} (the provider's structured-output mode where
+     * the client supports it) and binds it into the schema's record.
+     */
+    default <T> T chat(List<LlmMessage> messages, LlmOptions options, ResponseSchema<T> schema) throws IOException, InterruptedException {
+        String content = chat(messages, options.withSchema(schema));
+        try {
+            return schema.read(content);
+        } catch (RuntimeException e) {
+            evict(messages);
+            throw e;
+        }
+    }
+
+    /**
+     * Forgets any cached completion for {@code messages}, so the next identical call goes upstream.
+     * Callers use it when a completion turns out to be unusable; wrapping clients pass it on.
+     */
+    default void evict(List<LlmMessage> messages) {
+    }
+
+    /**
+     * Streams the completion, handing every content delta to {@code onToken} as it arrives,
+     * and returns the full text once the stream ends. Clients without native streaming
+     * deliver the whole completion as a single delta.
+     */
+    default String chatStream(List<LlmMessage> messages, LlmOptions options, Consumer<String> onToken) throws IOException, InterruptedException {
+        String content = chat(messages, options);
+        onToken.accept(content);
+        return content;
+    }
+
+    default String chatStream(List<LlmMessage> messages, Consumer<String> onToken) throws IOException, InterruptedException {
+        return chatStream(messages, LlmOptions.defaults(), onToken);
+    }
 }
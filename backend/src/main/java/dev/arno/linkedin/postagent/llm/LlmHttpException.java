@@ -0,0 +1,33 @@
+package dev.arno.linkedin.postagent.llm;
+
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * A failed upstream exchange: a non-2xx status, or a 2xx whose body has no usable completion.
+ */
+public class LlmHttpException extends IOException {
+
+    private final int status;
+    private final Duration retryAfter;
+
+    public LlmHttpException(int status, String message, Duration retryAfter) {
+        super(message);
+        this.status = status;
+        this.retryAfter = retryAfter;
+    }
+
+    public int status() {
+        return status;
+    }
+
+    /** Server-requested delay before the next attempt, or null. */
+    public Duration retryAfter() {
+        return retryAfter;
+    }
+
+    /** Rate limits, timeouts, server errors and malformed 2xx bodies are worth another attempt. */
+    public boolean retryable() {
+        return status == 408 || status == 409 || status == 429 || status >= 500 || status / 100 == 2;
+    }
+}
@@ -0,0 +1,177 @@
+package dev.arno.linkedin.postagent.llm;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import javax.net.ssl.SSLSession;
+
+/**
+ * The shared HTTP transport for upstream LLM calls: one {@link HttpClient} preferring HTTP/2, so
+ * concurrent calls multiplex as streams over a few connections instead of opening one each, with a
+ * configurable executor (virtual threads, or a bounded pool), connect and per-request timeouts,
+ * and gzip-compressed responses for non-streaming calls.
+ *
+ * <p>The JDK client does not expose its connection pool, so reuse is observed indirectly: the
+ * negotiated protocol of every response and the peak number of exchanges in flight at once.
+ */
+@Component
+public class LlmHttpTransport implements AutoCloseable, LlmStatsSource {
+
+    private final URI completions;
+    private final HttpClient httpClient;
+    private final ExecutorService executor;
+    private final Duration requestTimeout;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong http2 = new AtomicLong();
+    private final AtomicLong http11 = new AtomicLong();
+    private final AtomicLong gzipped = new AtomicLong();
+    private final AtomicLong bytesReceived = new AtomicLong();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger peakInFlight = new AtomicInteger();
+
+    public LlmHttpTransport(
+            @Value("${spring.llm.base-url:https://api.openai.com/v1}") String baseUrl,
+            @Value("${spring.llm.http.version:HTTP_2}") HttpClient.Version version,
+            @Value("${spring.llm.http.executor-threads:0}") int executorThreads,
+            @Value("${spring.llm.http.connect-timeout:10s}") Duration connectTimeout,
+            @Value("${spring.llm.http.request-timeout:60s}") Duration requestTimeout
+    ) {
+        // any OpenAI-compatible server, e.g. the load-test mock at http://localhost:8089/v1
+        this.completions = completions(baseUrl);
+        // 0 threads = a virtual thread per task; the client only uses it for response handling
+        this.executor = executorThreads > 0
+                ? Executors.newFixedThreadPool(executorThreads, Thread.ofPlatform().name("llm-http-", 0).daemon().factory())
+                : Executors.newVirtualThreadPerTaskExecutor();
+        this.httpClient = HttpClient.newBuilder()
+                .version(version)
+                .executor(executor)
+                .connectTimeout(connectTimeout)
+                .build();
+        this.requestTimeout = requestTimeout;
+    }
+
+    public static URI completions(String baseUrl) {
+        return URI.create(baseUrl.replaceAll("/+$", "") + "/chat/completions");
+    }
+
+    /** A chat-completions request with the transport's timeout; non-streaming calls accept gzip. */
+    public HttpRequest.Builder newRequest(boolean stream) {
+        return newRequest(completions, stream);
+    }
+
+    /** The same, against another OpenAI-compatible server's completions URI. */
+    public HttpRequest.Builder newRequest(URI completions, boolean stream) {
+        var builder = HttpRequest.newBuilder(completions).timeout(requestTimeout);
+        // compressed SSE would be buffered by the decoder and delay the first token, so only plain responses ask for it
+        if (!stream) builder.header("Accept-Encoding", "gzip");
+        return builder;
+    }
+
+    public CompletableFuture<HttpResponse<String>> sendAsync(HttpRequest req) {
+        started();
+        // hand back the client's own future so that cancelling it aborts the exchange
+        var exchange = httpClient.sendAsync(req, this::decodedString);
+        exchange.whenComplete((res, err) -> finished(res));
+        return exchange;
+    }
+
+    /** The exchange counts as in flight until the caller closes the body's line stream. */
+    public HttpResponse<Stream<String>> sendLines(HttpRequest req) throws IOException, InterruptedException {
+        started();
+        HttpResponse<Stream<String>> res;
+        try {
+            res = httpClient.send(req, HttpResponse.BodyHandlers.ofLines());
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            finished(null);
+            throw e;
+        }
+        var closed = new AtomicBoolean();
+        Stream<String> body = res.body().onClose(() -> {
+            if (closed.compareAndSet(false, true)) finished(res);
+        });
+        return new StreamedResponse(res, body);
+    }
+
+    private HttpResponse.BodySubscriber<String> decodedString(HttpResponse.ResponseInfo info) {
+        boolean gzip = info.headers().firstValue("Content-Encoding").map(e -> e.equalsIgnoreCase("gzip")).orElse(false);
+        return HttpResponse.BodySubscribers.mapping(HttpResponse.BodySubscribers.ofByteArray(), bytes -> {
+            bytesReceived.addAndGet(bytes.length);
+            if (!gzip) return new String(bytes, StandardCharsets.UTF_8);
+            gzipped.incrementAndGet();
+            try (var in = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+                return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                // surfaces from the future as the cause; OpenAiClient unwraps it back to an IOException
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    // the response as received, with a body stream that reports back when it is closed
+    private record StreamedResponse(HttpResponse<Stream<String>> res, Stream<String> body) implements HttpResponse<Stream<String>> {
+        @Override public int statusCode() { return res.statusCode(); }
+        @Override public HttpRequest request() { return res.request(); }
+        @Override public Optional<HttpResponse<Stream<String>>> previousResponse() { return res.previousResponse(); }
+        @Override public HttpHeaders headers() { return res.headers(); }
+        @Override public Optional<SSLSession> sslSession() { return res.sslSession(); }
+        @Override public URI uri() { return res.uri(); }
+        @Override public HttpClient.Version version() { return res.version(); }
+    }
+
+    private void started() {
+        requests.incrementAndGet();
+        peakInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+    }
+
+    private void finished(HttpResponse<?> res) {
+        inFlight.decrementAndGet();
+        if (res == null) return;
+        (res.version() == HttpClient.Version.HTTP_2 ? http2 : http11).incrementAndGet();
+    }
+
+    @Override
+    public void close() {
+        httpClient.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    @Override
+    public String statsName() {
+        return "http";
+    }
+
+    @Override
+    public Map<String, Number> stats() {
+        var stats = new LinkedHashMap<String, Number>();
+        stats.put("requests", requests.get());
+        stats.put("http2Responses", http2.get());
+        stats.put("http11Responses", http11.get());
+        stats.put("gzipResponses", gzipped.get());
+        stats.put("bytesReceived", bytesReceived.get());
+        stats.put("inFlight", inFlight.get());
+        stats.put("peakInFlight", peakInFlight.get());
+        return stats;
+    }
+}
@@ -0,0 +1,51 @@
+package dev.arno.linkedin.postagent.llm;
+
+import java.util.Map;
+
+/**
+ * Per-call settings that travel with a request through the {@link LlmClient} decorators.
+ *
+ * @param endpoint  logical caller, e.g. {@code "polish"} or {@code "full.draft"}
+ * @param cacheable false when the caller asked for a fresh completion
+ * @param schema    the JSON shape the completion must have, or null for free text
+ * @param attempts  admits retries and hedges upstream; set by the rate limiter
+ */
+public record LlmOptions(String endpoint, boolean cacheable, ResponseSchema<?> schema, AttemptGate attempts) {
+
+    public static LlmOptions defaults() {
+        return new LlmOptions("default", true, null, AttemptGate.OPEN);
+    }
+
+    public static LlmOptions forEndpoint(String endpoint) {
+        return new LlmOptions(endpoint, true, null, AttemptGate.OPEN);
+    }
+
+    public LlmOptions withEndpoint(String endpoint) {
+        return new LlmOptions(endpoint, cacheable, schema, attempts);
+    }
+
+    public LlmOptions withCacheable(boolean cacheable) {
+        return new LlmOptions(endpoint, cacheable, schema, attempts);
+    }
+
+    public LlmOptions withSchema(ResponseSchema<?> schema) {
+        return new LlmOptions(endpoint, cacheable, schema, attempts);
+    }
+
+    public LlmOptions withAttempts(AttemptGate attempts) {
+        return new LlmOptions(endpoint, cacheable, schema, attempts);
+    }
+
+    /**
+     * Per-endpoint setting looked up by full endpoint ({@code full.draft}), then stage
+     * ({@code draft}), then lane ({@code full}), then {@code default}; null if none match.
+     */
+    public static <T> T byEndpoint(Map<String, T> settings, String endpoint) {
+        T v = settings.get(endpoint);
+        int dot = endpoint.indexOf('.');
+        if (v == null && dot >= 0) v = settings.get(endpoint.substring(endpoint.lastIndexOf('.') + 1));
+        if (v == null && dot >= 0) v = settings.get(endpoint.substring(0, dot));
+        if (v == null) v = settings.get("default");
+        return v;
+    }
+}
@@ -0,0 +1,272 @@
+package dev.arno.linkedin.postagent.llm;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Spreads calls over several OpenAI-compatible backends. Each endpoint maps to a tier (looked up
+ * like {@link LlmOptions#byEndpoint}), and a tier lists the backends allowed to serve it. Within a
+ * tier the backend with the lowest score goes first:
+ * <pre>
+ *   score = EWMA latency × (1 + 4 × EWMA error rate) × (1 + costWeight × cost)
+ * </pre>
+ * with a small share of calls sent to a random other backend so that every latency stays current.
+ * A backend without a successful call yet is scored at the median latency of the tier's measured
+ * backends (or at {@code priorLatency} when none is measured), so its errors still count against it.
+ *
+ * <p>A backend that fails {@code failureThreshold} times in a row is skipped for {@code openFor},
+ * then gets a single probe call that closes or re-opens it. Server errors, rate limits and timeouts
+ * fail over to the next backend; other 4xx are the caller's fault and are thrown as is. A stream
+ * only fails over until its first token has been handed out.
+ */
+public class LlmRouter implements LlmClient, LlmStatsSource {
+
+    private static final Logger log = LoggerFactory.getLogger(LlmRouter.class);
+
+    /** A routable backend; {@code cost} is in $ per million tokens, or any consistent unit. */
+    public record Backend(String name, LlmClient client, String model, double cost) {}
+
+    private final Map<String, Route> routes = new LinkedHashMap<>();
+    private final Map<String, List<Route>> tiers = new LinkedHashMap<>();
+    private final Map<String, String> endpoints;
+    private final int failureThreshold;
+    private final long openForNanos;
+    private final double explore;
+    private final double costWeight;
+    private final double priorLatencyMillis;
+    private final MeterRegistry registry;
+
+    private final AtomicLong failovers = new AtomicLong();
+
+    public LlmRouter(List<Backend> backends, Map<String, List<String>> tiers, Map<String, String> endpoints,
+                     int failureThreshold, Duration openFor, double explore, double costWeight, Duration priorLatency,
+                     MeterRegistry registry) {
+        if (backends.isEmpty()) throw new IllegalArgumentException("LLM router needs at least one backend");
+        for (Backend b : backends) routes.put(b.name(), new Route(b));
+        tiers.forEach((tier, names) -> this.tiers.put(tier, names.stream().map(n -> {
+            Route r = routes.get(n);
+            if (r == null) throw new IllegalArgumentException("Tier " + tier + " names unknown backend " + n + ", known: " + routes.keySet());
+            return r;
+        }).toList()));
+        endpoints.forEach((endpoint, tier) -> {
+            if (!this.tiers.containsKey(tier)) throw new IllegalArgumentException("Endpoint " + endpoint + " maps to unknown tier " + tier);
+        });
+        this.endpoints = Map.copyOf(endpoints);
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openForNanos = openFor.toNanos();
+        this.explore = explore;
+        this.costWeight = costWeight;
+        this.priorLatencyMillis = priorLatency.toMillis();
+        this.registry = registry;
+    }
+
+    /** Identifies the configured models, so cached completions don't outlive a model change. */
+    public String modelKey() {
+        return routes.values().stream().map(r -> r.backend.model()).distinct().sorted()
+                .collect(Collectors.joining(",", "router:", ""));
+    }
+
+    @Override
+    public String chat(List<LlmMessage> messages, LlmOptions options) throws IOException, InterruptedException {
+        return route(options, (client, started) -> client.chat(messages, options));
+    }
+
+    @Override
+    public String chatStream(List<LlmMessage> messages, LlmOptions options, Consumer<String> onToken) throws IOException, InterruptedException {
+        return route(options, (client, started) -> client.chatStream(messages, options, token -> {
+            started.set(true);
+            onToken.accept(token);
+        }));
+    }
+
+    private interface Call {
+        String run(LlmClient client, AtomicBoolean started) throws IOException, InterruptedException;
+    }
+
+    private String route(LlmOptions options, Call call) throws IOException, InterruptedException {
+        String tier = LlmOptions.byEndpoint(endpoints, options.endpoint());
+        List<Route> candidates = tier == null ? List.copyOf(routes.values()) : tiers.get(tier);
+        List<Route> order = order(candidates);
+        int preferred = order.size();
+        for (Route r : candidates) if (!order.contains(r)) order.add(r);
+
+        IOException last = null;
+        for (int i = 0; i < order.size(); i++) {
+            Route r = order.get(i);
+            // a half-open backend takes a single probe; past the preferred ones, everything is tried
+            if (i < preferred && !r.claim(System.nanoTime())) continue;
+            if (last != null) {
+                failovers.incrementAndGet();
+                registry.counter("llm.router.failovers", "tier", String.valueOf(tier), "to", r.backend.name()).increment();
+            }
+            var started = new AtomicBoolean();
+            long start = System.nanoTime();
+            boolean settled = false;
+            try {
+                String content = call.run(r.backend.client(), started);
+                r.success((System.nanoTime() - start) / 1_000_000);
+                settled = true;
+                outcome(r, "ok");
+                return content;
+            } catch (IOException e) {
+                settled = true;
+                if (!backendFault(e)) {
+                    r.success((System.nanoTime() - start) / 1_000_000);
+                    outcome(r, "rejected");
+                    throw e;
+                }
+                if (r.failure(failureThreshold, openForNanos)) {
+                    log.warn("LLM backend {} failed {} times in a row, skipping it for {} ms: {}",
+                            r.backend.name(), failureThreshold, openForNanos / 1_000_000, e.getMessage());
+                }
+                outcome(r, "failed");
+                if (started.get()) throw e;
+                last = e;
+            } finally {
+                // interrupted or blew up on our side: says nothing about the backend, but frees its probe
+                if (!settled) r.abandon();
+            }
+        }
+        throw last != null ? last : new LlmHttpException(503, "No LLM backend available for tier " + tier, null);
+    }
+
+    // available backends best-first; the open ones are appended by route() as a last resort
+    private List<Route> order(List<Route> candidates) {
+        long now = System.nanoTime();
+        List<Route> available = new ArrayList<>();
+        for (Route r : candidates) if (r.available(now)) available.add(r);
+
+        double prior = prior(candidates);
+        available.sort(Comparator.comparingDouble(r -> r.score(costWeight, prior)));
+        if (available.size() > 1 && ThreadLocalRandom.current().nextDouble() < explore) {
+            int i = 1 + ThreadLocalRandom.current().nextInt(available.size() - 1);
+            available.add(0, available.remove(i));
+        }
+        return available;
+    }
+
+    // what an unmeasured backend is assumed to take: the tier's median measured latency
+    private double prior(List<Route> candidates) {
+        List<Double> measured = new ArrayList<>();
+        for (Route r : candidates) {
+            double latency = r.latency();
+            if (latency > 0) measured.add(latency);
+        }
+        if (measured.isEmpty()) return priorLatencyMillis;
+        measured.sort(null);
+        return measured.get(measured.size() / 2);
+    }
+
+    private static boolean backendFault(IOException e) {
+        if (!(e instanceof LlmHttpException h)) return true;
+        return h.retryable();
+    }
+
+    private void outcome(Route r, String outcome) {
+        registry.counter("llm.router.calls", "backend", r.backend.name(), "outcome", outcome).increment();
+    }
+
+    @Override
+    public String statsName() {
+        return "router";
+    }
+
+    @Override
+    public Map<String, Number> stats() {
+        var stats = new LinkedHashMap<String, Number>();
+        stats.put("failovers", failovers.get());
+        long now = System.nanoTime();
+        for (Route r : routes.values()) {
+            synchronized (r) {
+                String n = r.backend.name() + ".";
+                stats.put(n + "state", r.openUntil == 0 ? 0 : now < r.openUntil ? 1 : 2);
+                stats.put(n + "latencyMillis", Math.round(r.latencyMillis));
+                stats.put(n + "errorRatePct", Math.round(r.errorRate * 1000) / 10.0);
+                stats.put(n + "calls", r.calls);
+                stats.put(n + "failures", r.failures);
+                stats.put(n + "opened", r.opened);
+            }
+        }
+        return stats;
+    }
+
+    // live health of one backend: EWMAs plus a consecutive-failure circuit breaker
+    private static final class Route {
+        final Backend backend;
+        double latencyMillis; // 0 until the first success; scored at the tier's prior until then
+        double errorRate;
+        int consecutiveFailures;
+        long openUntil; // 0 = closed; past = half-open, one probe allowed
+        boolean probing;
+        long calls;
+        long failures;
+        long opened;
+
+        Route(Backend backend) {
+            this.backend = backend;
+        }
+
+        synchronized boolean available(long now) {
+            return openUntil == 0 || (now >= openUntil && !probing);
+        }
+
+        synchronized boolean claim(long now) {
+            if (!available(now)) return false;
+            if (openUntil != 0) probing = true;
+            return true;
+        }
+
+        synchronized double latency() {
+            return latencyMillis;
+        }
+
+        synchronized double score(double costWeight, double priorLatencyMillis) {
+            double latency = latencyMillis == 0 ? priorLatencyMillis : latencyMillis;
+            return latency * (1 + 4 * errorRate) * (1 + costWeight * backend.cost());
+        }
+
+        synchronized void success(long millis) {
+            calls++;
+            latencyMillis = latencyMillis == 0 ? millis : latencyMillis + 0.2 * (millis - latencyMillis);
+            errorRate *= 0.9;
+            consecutiveFailures = 0;
+            openUntil = 0;
+            probing = false;
+        }
+
+        // a call that ended without a verdict; a half-open backend can be probed again
+        synchronized void abandon() {
+            probing = false;
+        }
+
+        /** True when this failure opened the breaker. */
+        synchronized boolean failure(int threshold, long openForNanos) {
+            calls++;
+            failures++;
+            errorRate += 0.1 * (1 - errorRate);
+            consecutiveFailures++;
+            if (probing || (openUntil == 0 && consecutiveFailures >= threshold)) {
+                boolean wasClosed = openUntil == 0;
+                openUntil = System.nanoTime() + openForNanos;
+                probing = false;
+                if (wasClosed) opened++;
+                return wasClosed;
+            }
+            return false;
+        }
+    }
+}
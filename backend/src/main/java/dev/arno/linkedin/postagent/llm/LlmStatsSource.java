@@ -0,0 +1,12 @@
+package dev.arno.linkedin.postagent.llm;
+
+import java.util.Map;
+
+/**
+ * A component on the LLM call path that exposes counters on {@code GET /llm/stats}.
+ */
+public interface LlmStatsSource {
+    String statsName();
+
+    Map<String, Number> stats();
+}
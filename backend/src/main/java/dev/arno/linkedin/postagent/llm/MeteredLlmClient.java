@@ -0,0 +1,84 @@
+package dev.arno.linkedin.postagent.llm;
+
+import dev.arno.linkedin.postagent.error.ApiException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Times every call as the caller sees it, cache hits and queueing included, as
+ * {@code llm.calls{endpoint, mode, outcome}} with a percentile histogram; streams also record
+ * the time to their first token as {@code llm.first_token{endpoint}}.
+ */
+public class MeteredLlmClient implements LlmClient {
+
+    private final LlmClient delegate;
+    private final MeterRegistry registry;
+
+    public MeteredLlmClient(LlmClient delegate, MeterRegistry registry) {
+        this.delegate = delegate;
+        this.registry = registry;
+    }
+
+    @Override
+    public String chat(List<LlmMessage> messages, LlmOptions options) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        String outcome = "error";
+        try {
+            String content = delegate.chat(messages, options);
+            outcome = "success";
+            return content;
+        } catch (ApiException e) {
+            outcome = e.status() == 503 ? "rejected" : "error";
+            throw e;
+        } finally {
+            record(options.endpoint(), "chat", outcome, start);
+        }
+    }
+
+    @Override
+    public String chatStream(List<LlmMessage> messages, LlmOptions options, Consumer<String> onToken) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        String outcome = "error";
+        boolean[] first = {true};
+        try {
+            String content = delegate.chatStream(messages, options, token -> {
+                if (first[0]) {
+                    first[0] = false;
+                    Timer.builder("llm.first_token")
+                            .tag("endpoint", options.endpoint())
+                            .publishPercentileHistogram()
+                            .register(registry)
+                            .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                }
+                onToken.accept(token);
+            });
+            outcome = "success";
+            return content;
+        } catch (ApiException e) {
+            outcome = e.status() == 503 ? "rejected" : "error";
+            throw e;
+        } finally {
+            record(options.endpoint(), "stream", outcome, start);
+        }
+    }
+
+    @Override
+    public void evict(List<LlmMessage> messages) {
+        delegate.evict(messages);
+    }
+
+    private void record(String endpoint, String mode, String outcome, long start) {
+        Timer.builder("llm.calls")
+                .tag("endpoint", endpoint)
+                .tag("mode", mode)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+}
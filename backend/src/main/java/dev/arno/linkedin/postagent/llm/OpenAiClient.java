@@ -1,82 +1,438 @@
-package dev.arno.linkedin.postagent.llm; // or .llm – match your package
+package dev.arno.linkedin.postagent.llm;
 
-import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import dev.arno.linkedin.postagent.error.ApiException;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
-import java.nio.charset.StandardCharsets;
+import java.net.http.HttpTimeoutException;
 import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
-public class OpenAiClient implements LlmClient{
+public class OpenAiClient implements LlmClient, LlmStatsSource {
 
-    private final HttpClient httpClient;
+    private static final Logger log = LoggerFactory.getLogger(OpenAiClient.class);
+
+    // the response envelope, bound without a JsonNode tree; providers add fields freely
+    private static final ObjectReader COMPLETION = JsonMapper.builder()
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .build()
+            .readerFor(ChatCompletion.class);
+
+    private final LlmHttpTransport transport;
+    private final URI completions; // null = the transport's base URL
+    private final TokenBudget budget;
+    private final MeterRegistry registry;
     @Autowired
     private ObjectMapper mapper;
     private final String apiKey;
     private final String model;
+    private final double temperature;
+    private final boolean structuredOutputs;
+
+    private final RetryPolicy retry;
+    private final boolean hedge;
+    private final Duration hedgeMinDelay;
+    private final LatencyTracker latencies = new LatencyTracker(256);
+    private final double logSampleRate;
+    private final int logMaxBody;
 
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong hedges = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+
+    @Autowired
     public OpenAiClient(
+            LlmHttpTransport transport,
+            TokenBudget budget,
+            MeterRegistry registry,
             @Value("${OPENAI_API_KEY:}") String apiKey,
-            @Value("${openai.model:gpt-4o-mini}") String model
+            @Value("${openai.model:gpt-4o-mini}") String model,
+            @Value("${spring.llm.temperature:0.7}") double temperature,
+            @Value("${spring.llm.structured-outputs:true}") boolean structuredOutputs,
+            @Value("${spring.llm.retry.max-attempts:4}") int maxAttempts,
+            @Value("${spring.llm.retry.base-delay:500ms}") Duration baseDelay,
+            @Value("${spring.llm.retry.max-delay:8s}") Duration maxDelay,
+            @Value("${spring.llm.retry.deadline:90s}") Duration deadline,
+            @Value("${spring.llm.retry.hedge.enabled:false}") boolean hedge,
+            @Value("${spring.llm.retry.hedge.min-delay:2s}") Duration hedgeMinDelay,
+            @Value("${spring.llm.log.sample-rate:0.01}") double logSampleRate,
+            @Value("${spring.llm.log.max-body:2000}") int logMaxBody
     ) {
-        this.httpClient = HttpClient.newBuilder()
-                .connectTimeout(Duration.ofSeconds(10))
-                .build();
+        this.transport = transport;
+        this.completions = null;
+        this.budget = budget;
+        this.registry = registry;
         this.apiKey = apiKey;
         this.model = (model == null || model.isBlank()) ? "gpt-4o-mini" : model;
+        this.temperature = temperature;
+        this.structuredOutputs = structuredOutputs;
+        this.retry = new RetryPolicy(Math.max(1, maxAttempts), baseDelay, maxDelay, deadline);
+        this.hedge = hedge;
+        this.hedgeMinDelay = hedgeMinDelay;
+        this.logSampleRate = logSampleRate;
+        this.logMaxBody = logMaxBody;
+    }
+
+    private OpenAiClient(OpenAiClient base, URI completions, String apiKey, String model, boolean structuredOutputs, int maxAttempts) {
+        this.transport = base.transport;
+        this.completions = completions;
+        this.budget = base.budget;
+        this.registry = base.registry;
+        this.mapper = base.mapper;
+        this.apiKey = apiKey;
+        this.model = model;
+        this.temperature = base.temperature;
+        this.structuredOutputs = structuredOutputs;
+        this.retry = new RetryPolicy(Math.max(1, maxAttempts), base.retry.baseDelay(), base.retry.maxDelay(), base.retry.deadline());
+        this.hedge = base.hedge;
+        this.hedgeMinDelay = base.hedgeMinDelay;
+        this.logSampleRate = base.logSampleRate;
+        this.logMaxBody = base.logMaxBody;
+    }
+
+    /**
+     * A client for another OpenAI-compatible backend that shares this one's transport, token budget
+     * and settings; null arguments keep this client's values.
+     */
+    public OpenAiClient withBackend(String baseUrl, String apiKey, String model, Boolean structuredOutputs, Integer maxAttempts) {
+        return new OpenAiClient(this,
+                baseUrl == null ? completions : LlmHttpTransport.completions(baseUrl),
+                apiKey == null ? this.apiKey : apiKey,
+                model == null || model.isBlank() ? this.model : model,
+                structuredOutputs == null ? this.structuredOutputs : structuredOutputs,
+                maxAttempts == null ? retry.maxAttempts() : maxAttempts);
+    }
+
+    public String model() {
+        return model;
+    }
+
+    public double temperature() {
+        return temperature;
     }
 
     @Override
-    public String chat(List<LlmMessage> messages) throws IOException, InterruptedException {
-        var url = URI.create("https://api.openai.com/v1/chat/completions");
-        var body = Map.of(
-                "model", model,
-                "temperature", 0.7,
-                "messages", messages.stream()
-                        .map(m -> Map.of("role", m.role(), "content", m.content()))
-                        .toList()
-        );
-
-        var req = HttpRequest.newBuilder(url)
-                .header("Authorization", "Bearer " + apiKey)
-                .header("Content-Type", "application/json")
-                .POST(HttpRequest.BodyPublishers.ofString(mapper.writeValueAsString(body)))
-                .build();
+    public String chat(List<LlmMessage> messages, LlmOptions options) throws IOException, InterruptedException {
+        var call = newCall(messages, options, false);
+        return withRetry(call, deadline -> hedge ? hedged(call, deadline) : attempt(call, deadline));
+    }
+
+    @Override
+    public String chatStream(List<LlmMessage> messages, LlmOptions options, Consumer<String> onToken) throws IOException, InterruptedException {
+        var call = newCall(messages, options, true);
+        // only opening the stream is retried; once tokens have been handed out a failure is final
+        var res = withRetry(call, deadline -> {
+            var r = transport.sendLines(call.request());
+            status(r.statusCode());
+            if (r.statusCode() / 100 != 2) {
+                String body;
+                try (Stream<String> lines = r.body()) {
+                    body = lines.collect(Collectors.joining("\n"));
+                }
+                logResponse(call, r.statusCode(), body);
+                throw new LlmHttpException(r.statusCode(), "LLM error: " + r.statusCode() + " - " + body,
+                        RetryPolicy.retryAfter(r.headers()));
+            }
+            return r;
+        });
+
+        try (Stream<String> lines = res.body()) {
+            var content = new StringBuilder();
+            String finishReason = null;
+            Iterator<String> it = lines.iterator();
+            while (it.hasNext()) {
+                String line = it.next();
+                // SSE frames: "data: {...}", terminated by "data: [DONE]"; comments and blank lines are skipped
+                if (!line.startsWith("data:")) continue;
+                String data = line.substring(5).trim();
+                if (data.equals("[DONE]")) break;
+
+                ChatCompletion chunk = COMPLETION.readValue(data);
+                // with include_usage the last chunk carries usage and no choices
+                if (chunk.usage() != null) budget.record(call.endpoint(), call.estimate(), chunk.usage());
+                ChatCompletion.Choice choice = chunk.first();
+                if (choice == null) continue;
+                String delta = choice.delta() == null ? null : choice.delta().content();
+                if (delta != null && !delta.isEmpty()) {
+                    content.append(delta);
+                    onToken.accept(delta);
+                }
+                if (choice.finishReason() != null) finishReason = choice.finishReason();
+            }
+            checkFinished(call, finishReason);
 
-        var res = httpClient.send(req, HttpResponse.BodyHandlers.ofString());
+            if (content.isEmpty() || content.toString().isBlank()) {
+                throw new IOException("LLM stream ended without content");
+            }
+            return content.toString().trim();
+        }
+    }
 
-        // 🔍 Debug: log status + raw body
-        System.out.println("LLM status = " + res.statusCode());
-        System.out.println("LLM raw body = " + res.body());
+    private interface Attempt<T> {
+        T run(long deadline) throws IOException, InterruptedException;
+    }
+
+    private <T> T withRetry(Call call, Attempt<T> attempt) throws IOException, InterruptedException {
+        calls.incrementAndGet();
+        long deadline = System.nanoTime() + retry.deadline().toNanos();
+        long delay = retry.baseDelay().toMillis();
+        for (int n = 1; ; n++) {
+            try {
+                return attempt.run(deadline);
+            } catch (IOException e) {
+                if (!(e instanceof LlmHttpException)) status(e instanceof HttpTimeoutException ? "timeout" : "io_error");
+                boolean retryable = !(e instanceof LlmHttpException h) || h.retryable();
+                if (!retryable || n >= retry.maxAttempts()) {
+                    failures.incrementAndGet();
+                    throw e;
+                }
+
+                delay = retry.nextDelayMillis(delay);
+                if (e instanceof LlmHttpException h && h.retryAfter() != null) {
+                    delay = Math.max(delay, h.retryAfter().toMillis());
+                }
+                if (System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay) >= deadline) {
+                    failures.incrementAndGet();
+                    throw e;
+                }
+                Thread.sleep(delay);
+                // a retry is one more request against the rate limits
+                if (!call.attempts().acquire(true)) {
+                    failures.incrementAndGet();
+                    throw e;
+                }
+                retries.incrementAndGet();
+                registry.counter("llm.upstream.retries",
+                        "reason", e instanceof LlmHttpException h ? String.valueOf(h.status()) : e.getClass().getSimpleName()).increment();
+            }
+        }
+    }
+
+    // One exchange, bounded by the call deadline.
+    private String attempt(Call call, long deadline) throws IOException, InterruptedException {
+        var exchange = send(call);
+        try {
+            return await(exchange, deadline);
+        } finally {
+            exchange.cancel(true);
+        }
+    }
+
+    // Sends a duplicate request once the first has been outstanding for the recent p95 latency;
+    // the first successful response wins and the other exchange is cancelled.
+    private String hedged(Call call, long deadline) throws IOException, InterruptedException {
+        long p95 = latencies.percentile(95, 20);
+        if (p95 < 0) return attempt(call, deadline);
+        long hedgeAfter = Math.max(p95, hedgeMinDelay.toMillis());
+
+        var first = send(call);
+        CompletableFuture<String> second = null;
+        try {
+            try {
+                return first.get(hedgeAfter, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                // slow primary: fall through and hedge
+            } catch (ExecutionException e) {
+                throw unwrap(e);
+            }
+
+            // no spare rate permit: keep waiting on the primary rather than overshoot the limits
+            if (!call.attempts().acquire(false)) return await(first, deadline);
+            hedges.incrementAndGet();
+            second = send(call);
+            var winner = new CompletableFuture<String>();
+            var primary = first;
+            var backup = second;
+            first.whenComplete((content, err) -> {
+                if (err == null) winner.complete(content);
+                else if (backup.isCompletedExceptionally()) winner.completeExceptionally(err);
+            });
+            second.whenComplete((content, err) -> {
+                if (err == null && winner.complete(content)) hedgeWins.incrementAndGet();
+                else if (err != null && primary.isCompletedExceptionally()) winner.completeExceptionally(err);
+            });
+            return await(winner, deadline);
+        } finally {
+            first.cancel(true);
+            if (second != null) second.cancel(true);
+        }
+    }
+
+    private CompletableFuture<String> send(Call call) {
+        long start = System.nanoTime();
+        var exchange = transport.sendAsync(call.request());
+        var content = exchange.thenApply(res -> {
+            try {
+                String c = content(res, call);
+                latencies.record((System.nanoTime() - start) / 1_000_000);
+                return c;
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        });
+        // cancelling the derived stage must abort the HTTP exchange itself
+        content.whenComplete((c, err) -> {
+            if (content.isCancelled()) exchange.cancel(true);
+        });
+        return content;
+    }
+
+    private static String await(CompletableFuture<String> f, long deadline) throws IOException, InterruptedException {
+        try {
+            return f.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            throw new HttpTimeoutException("LLM call exceeded its deadline");
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        }
+    }
+
+    private static IOException unwrap(ExecutionException e) {
+        Throwable cause = e.getCause() instanceof CompletionException ce && ce.getCause() != null ? ce.getCause() : e.getCause();
+        // a failed body decode (e.g. corrupt gzip) is an I/O failure and retried like one
+        if (cause instanceof UncheckedIOException u) return u.getCause();
+        if (cause instanceof IOException io) return io;
+        if (cause instanceof RuntimeException re) throw re;
+        return new IOException(cause);
+    }
+
+    private String content(HttpResponse<String> res, Call call) throws IOException {
+        status(res.statusCode());
+        logResponse(call, res.statusCode(), res.body());
 
         if (res.statusCode() / 100 != 2) {
-            throw new IOException("LLM error: " + res.statusCode() + " - " + res.body());
+            throw new LlmHttpException(res.statusCode(), "LLM error: " + res.statusCode() + " - " + res.body(),
+                    RetryPolicy.retryAfter(res.headers()));
         }
 
-        JsonNode root = mapper.readTree(res.body());
-        JsonNode choices = root.path("choices");
+        ChatCompletion completion = COMPLETION.readValue(res.body());
+        budget.record(call.endpoint(), call.estimate(), completion.usage());
+        ChatCompletion.Choice choice = completion.first();
 
-        if (!choices.isArray() || choices.isEmpty()) {
-            throw new IOException("LLM response missing choices: " + res.body());
+        if (choice == null) {
+            throw new LlmHttpException(res.statusCode(), "LLM response missing choices: " + res.body(), null);
         }
 
-        JsonNode contentNode = choices.get(0).path("message").path("content");
+        checkFinished(call, choice.finishReason());
+        String content = choice.message() == null ? null : choice.message().content();
 
-        if (contentNode.isMissingNode() || contentNode.asText().isBlank()) {
-            throw new IOException("LLM response missing content: " + res.body());
+        if (content == null || content.isBlank()) {
+            throw new LlmHttpException(res.statusCode(), "LLM response missing content: " + res.body(), null);
         }
 
-        return contentNode.asText().trim();
+        return content.trim();
+    }
+
+    // a completion cut off at max_tokens must not be returned, and so never reaches a cache
+    private void checkFinished(Call call, String finishReason) {
+        if ("length".equals(finishReason)) {
+            registry.counter("llm.upstream.truncated", "endpoint", call.endpoint()).increment();
+            throw new ApiException(502, "LLM reply was cut off at max_tokens for " + call.endpoint());
+        }
+    }
+
+    private void status(int code) {
+        status(String.valueOf(code));
+    }
+
+    private void status(String status) {
+        registry.counter("llm.upstream.responses", "status", status).increment();
+    }
+
+    // every error response, and a sample of successful ones, with the body capped
+    private void logResponse(Call call, int status, String body) {
+        boolean ok = status / 100 == 2;
+        if (ok && (logSampleRate <= 0 || ThreadLocalRandom.current().nextDouble() >= logSampleRate)) return;
+        String excerpt = body == null || body.length() <= logMaxBody
+                ? body
+                : body.substring(0, logMaxBody) + "…[" + body.length() + " chars]";
+        if (ok) {
+            log.info("llm_response endpoint={} status={} estimate={} body={}", call.endpoint(), status, call.estimate(), excerpt);
+        } else {
+            log.warn("llm_response endpoint={} status={} estimate={} body={}", call.endpoint(), status, call.estimate(), excerpt);
+        }
+    }
+
+    // one upstream call: the request plus what's needed to account for its tokens
+    private record Call(HttpRequest request, String endpoint, int estimate, AttemptGate attempts) {}
+
+    private Call newCall(List<LlmMessage> messages, LlmOptions options, boolean stream) throws IOException {
+        String endpoint = options.endpoint();
+        messages = budget.fit(messages, endpoint);
+        int maxTokens = budget.maxTokens(endpoint);
+
+        var body = new LinkedHashMap<String, Object>();
+        body.put("model", model);
+        body.put("temperature", temperature);
+        body.put("messages", messages.stream()
+                .map(m -> Map.of("role", m.role(), "content", m.content()))
+                .toList());
+        if (maxTokens > 0) {
+            body.put("max_tokens", maxTokens);
+        }
+        if (options.schema() != null && structuredOutputs) {
+            body.put("response_format", Map.of("type", "json_schema", "json_schema", Map.of(
+                    "name", options.schema().name(),
+                    "strict", true,
+                    "schema", options.schema().schema())));
+        }
+        if (stream) {
+            body.put("stream", true);
+            body.put("stream_options", Map.of("include_usage", true));
+        }
+
+        var request = (completions == null ? transport.newRequest(stream) : transport.newRequest(completions, stream))
+                .header("Authorization", "Bearer " + apiKey)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(mapper.writeValueAsString(body)))
+                .build();
+        return new Call(request, endpoint, budget.estimate(messages), options.attempts());
+    }
+
+    @Override
+    public String statsName() {
+        return "upstream";
+    }
+
+    @Override
+    public Map<String, Number> stats() {
+        var stats = new LinkedHashMap<String, Number>();
+        stats.put("calls", calls.get());
+        stats.put("retries", retries.get());
+        stats.put("failures", failures.get());
+        stats.put("hedges", hedges.get());
+        stats.put("hedgeWins", hedgeWins.get());
+        stats.put("p95Millis", latencies.percentile(95, 1));
+        return stats;
     }
 
 }
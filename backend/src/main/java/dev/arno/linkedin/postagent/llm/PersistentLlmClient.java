@@ -0,0 +1,90 @@
+package dev.arno.linkedin.postagent.llm;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Serves completions from a {@link DiskResponseStore} and records every new upstream completion in
+ * it, so results outlive a redeploy. Like the in-memory cache, a non-cacheable call skips the
+ * lookup but still writes its fresh result. The store is best effort: a failing disk is logged and
+ * counted, and the call goes upstream or returns its already paid-for result as if it had no store.
+ */
+public class PersistentLlmClient implements LlmClient {
+
+    private static final Logger log = LoggerFactory.getLogger(PersistentLlmClient.class);
+
+    private final LlmClient delegate;
+    private final DiskResponseStore store;
+    private final String model;
+    private final double temperature;
+
+    public PersistentLlmClient(LlmClient delegate, DiskResponseStore store, String model, double temperature) {
+        this.delegate = delegate;
+        this.store = store;
+        this.model = model;
+        this.temperature = temperature;
+    }
+
+    @Override
+    public String chat(List<LlmMessage> messages, LlmOptions options) throws IOException, InterruptedException {
+        String key = PromptKey.of(model, temperature, messages);
+        if (options.cacheable()) {
+            String stored = lookup(key);
+            if (stored != null) return stored;
+        }
+
+        String content = delegate.chat(messages, options);
+        save(key, content);
+        return content;
+    }
+
+    @Override
+    public String chatStream(List<LlmMessage> messages, LlmOptions options, Consumer<String> onToken) throws IOException, InterruptedException {
+        String key = PromptKey.of(model, temperature, messages);
+        if (options.cacheable()) {
+            String stored = lookup(key);
+            if (stored != null) {
+                onToken.accept(stored);
+                return stored;
+            }
+        }
+
+        String content = delegate.chatStream(messages, options, onToken);
+        save(key, content);
+        return content;
+    }
+
+    @Override
+    public void evict(List<LlmMessage> messages) {
+        try {
+            store.remove(PromptKey.of(model, temperature, messages));
+        } catch (IOException | RuntimeException e) {
+            store.recordError();
+            log.warn("LLM response store delete failed, entry kept: {}", e.toString());
+        }
+        delegate.evict(messages);
+    }
+
+    private String lookup(String key) {
+        try {
+            return store.get(key);
+        } catch (IOException | RuntimeException e) {
+            store.recordError();
+            log.warn("LLM response store read failed, calling upstream: {}", e.toString());
+            return null;
+        }
+    }
+
+    private void save(String key, String content) {
+        try {
+            store.put(key, content);
+        } catch (IOException | RuntimeException e) {
+            store.recordError();
+            log.warn("LLM response store write failed, result not persisted: {}", e.toString());
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package dev.arno.linkedin.postagent.llm;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Content-addressed key for a completion: SHA-256 over model, temperature and the normalized
+ * messages. Normalization ignores line-ending style and trailing whitespace, which the model
+ * does not see as meaningful, so re-submitted text from different editors maps to the same key.
+ */
+public final class PromptKey {
+
+    private PromptKey() {}
+
+    public static String of(String model, double temperature, List<LlmMessage> messages) {
+        MessageDigest sha = sha256();
+        update(sha, model);
+        update(sha, Double.toString(temperature));
+        for (LlmMessage m : messages) {
+            update(sha, m.role().trim().toLowerCase(Locale.ROOT));
+            update(sha, normalize(m.content()));
+        }
+        return HexFormat.of().formatHex(sha.digest());
+    }
+
+    static String normalize(String content) {
+        if (content == null) return "";
+        var sb = new StringBuilder(content.length());
+        int lineEnd = 0; // length of sb without the current line's trailing whitespace
+        for (int i = 0; i < content.length(); i++) {
+            char c = content.charAt(i);
+            if (c == '\r') {
+                if (i + 1 < content.length() && content.charAt(i + 1) == '\n') continue;
+                c = '\n';
+            }
+            if (c == '\n') {
+                sb.setLength(lineEnd);
+                sb.append('\n');
+                lineEnd = sb.length();
+            } else {
+                sb.append(c);
+                if (!Character.isWhitespace(c)) lineEnd = sb.length();
+            }
+        }
+        sb.setLength(lineEnd);
+        return sb.toString().strip();
+    }
+
+    // length-prefixed so that ("ab", "c") and ("a", "bc") hash differently
+    private static void update(MessageDigest sha, String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        sha.update((byte) (bytes.length >>> 24));
+        sha.update((byte) (bytes.length >>> 16));
+        sha.update((byte) (bytes.length >>> 8));
+        sha.update((byte) bytes.length);
+        sha.update(bytes);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package dev.arno.linkedin.postagent.llm;
+
+import dev.arno.linkedin.postagent.error.ApiException;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Keeps upstream traffic inside the provider's requests-per-minute and tokens-per-minute limits and
+ * caps the number of concurrent upstream calls, so a burst queues briefly instead of turning into a
+ * 429 storm.
+ *
+ * <p>Waiting callers are queued per lane (the endpoint up to its first dot, so all /posts/full
+ * stages share one lane) and served round-robin across lanes, FIFO within a lane. A call is
+ * rejected with 503 and a {@code Retry-After} as soon as the queue is full or its projected wait
+ * exceeds {@code maxWait}, rather than after sitting in the queue.
+ *
+ * <p>Upstream retries and hedged duplicates take their own rate permits through the
+ * {@link AttemptGate} passed down in the options; a retry that can't get one within
+ * {@code maxWait} is given up, and a hedge that can't get one right away is not sent.
+ */
+public class RateLimitedLlmClient implements LlmClient, LlmStatsSource {
+
+    private static final class Waiter {
+        final double tokens;
+        boolean granted;
+
+        Waiter(double tokens) {
+            this.tokens = tokens;
+        }
+    }
+
+    private final LlmClient delegate;
+    private final TokenBudget budget;
+    private final TokenBucket requests;
+    private final TokenBucket tokens;
+    private final int completionTokens;
+    private final int maxQueue;
+    private final long maxWaitNanos;
+    private final int maxConcurrent;
+    private final Semaphore concurrency;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final Map<String, ArrayDeque<Waiter>> lanes = new HashMap<>();
+    private final ArrayDeque<String> turn = new ArrayDeque<>();
+    private int waiting;
+    private double waitingTokens;
+
+    private final AtomicLong granted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong extraAttempts = new AtomicLong();
+    private final AtomicLong waitedMillis = new AtomicLong();
+
+    public RateLimitedLlmClient(LlmClient delegate, TokenBudget budget, int requestsPerMinute, int tokensPerMinute, int completionTokens,
+                                int maxConcurrent, int maxQueue, Duration maxWait) {
+        this.delegate = delegate;
+        this.budget = budget;
+        this.requests = new TokenBucket(requestsPerMinute);
+        this.tokens = new TokenBucket(tokensPerMinute);
+        this.completionTokens = completionTokens;
+        this.maxQueue = maxQueue;
+        this.maxWaitNanos = maxWait.toNanos();
+        this.maxConcurrent = maxConcurrent;
+        this.concurrency = new Semaphore(maxConcurrent, true);
+    }
+
+    @Override
+    public String chat(List<LlmMessage> messages, LlmOptions options) throws IOException, InterruptedException {
+        String lane = lane(options.endpoint());
+        double estimate = estimateTokens(messages, options.endpoint());
+        acquire(lane, estimate);
+        try {
+            return delegate.chat(messages, options.withAttempts(attempts(lane, estimate)));
+        } finally {
+            concurrency.release();
+        }
+    }
+
+    @Override
+    public String chatStream(List<LlmMessage> messages, LlmOptions options, Consumer<String> onToken) throws IOException, InterruptedException {
+        String lane = lane(options.endpoint());
+        double estimate = estimateTokens(messages, options.endpoint());
+        acquire(lane, estimate);
+        try {
+            return delegate.chatStream(messages, options.withAttempts(attempts(lane, estimate)), onToken);
+        } finally {
+            concurrency.release();
+        }
+    }
+
+    // Prompt tokens plus the completion we expect back, which can't exceed the endpoint's max_tokens.
+    private double estimateTokens(List<LlmMessage> messages, String endpoint) {
+        int max = budget.maxTokens(endpoint);
+        return budget.estimate(messages) + (max > 0 ? Math.min(max, completionTokens) : completionTokens);
+    }
+
+    /** Takes a rate permit and a concurrency slot, or throws 503. */
+    private void acquire(String lane, double estimate) throws InterruptedException {
+        long start = System.nanoTime();
+        long deadline = start + maxWaitNanos;
+        waitForRate(lane, estimate, start, deadline);
+
+        long remaining = deadline - System.nanoTime();
+        if (!concurrency.tryAcquire(Math.max(0, remaining), TimeUnit.NANOSECONDS)) {
+            throw overloaded("too many concurrent LLM calls", maxWaitNanos);
+        }
+        waitedMillis.addAndGet((System.nanoTime() - start) / 1_000_000);
+        granted.incrementAndGet();
+    }
+
+    // retries and hedges of a call run in its concurrency slot, so they only need rate permits
+    private AttemptGate attempts(String lane, double estimate) {
+        return wait -> {
+            if (wait) {
+                long now = System.nanoTime();
+                try {
+                    waitForRate(lane, estimate, now, now + maxWaitNanos);
+                } catch (ApiException e) {
+                    return false;
+                }
+            } else if (!tryTake(estimate)) {
+                return false;
+            }
+            extraAttempts.incrementAndGet();
+            return true;
+        };
+    }
+
+    // permits that are free right now and wanted by no one queued
+    private boolean tryTake(double estimate) {
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            if (waiting > 0 || requests.nanosUntil(1, now) > 0 || tokens.nanosUntil(estimate, now) > 0) return false;
+            requests.take(1);
+            tokens.take(estimate);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void waitForRate(String lane, double estimate, long now, long deadline) throws InterruptedException {
+        lock.lock();
+        try {
+            if (waiting >= maxQueue) {
+                throw overloaded("LLM request queue is full", maxWaitNanos);
+            }
+            // everyone already queued goes first; fail fast if that alone blows the latency budget
+            long projected = Math.max(
+                    nanosFor(requests, waiting + 1, now),
+                    nanosFor(tokens, waitingTokens + estimate, now));
+            if (projected > maxWaitNanos) {
+                throw overloaded("LLM rate limit budget exhausted", projected);
+            }
+
+            var me = new Waiter(estimate);
+            lanes.computeIfAbsent(lane, k -> new ArrayDeque<>()).addLast(me);
+            if (!turn.contains(lane)) turn.addLast(lane);
+            waiting++;
+            waitingTokens += estimate;
+
+            try {
+                while (true) {
+                    long retryIn = dispatch();
+                    if (me.granted) return;
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        throw overloaded("LLM rate limit wait exceeded", maxWaitNanos);
+                    }
+                    changed.awaitNanos(Math.min(remaining, retryIn));
+                }
+            } finally {
+                if (!me.granted) dequeue(lane, me);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Grants queue heads round-robin across lanes while the buckets allow; returns nanos until the next grant is possible.
+    private long dispatch() {
+        while (!turn.isEmpty()) {
+            String lane = turn.peekFirst();
+            ArrayDeque<Waiter> queue = lanes.get(lane);
+            Waiter head = queue.peekFirst();
+
+            long now = System.nanoTime();
+            long wait = Math.max(requests.nanosUntil(1, now), tokens.nanosUntil(head.tokens, now));
+            if (wait > 0) return wait;
+
+            requests.take(1);
+            tokens.take(head.tokens);
+            head.granted = true;
+            queue.pollFirst();
+            waiting--;
+            waitingTokens -= head.tokens;
+
+            turn.pollFirst();
+            if (queue.isEmpty()) lanes.remove(lane);
+            else turn.addLast(lane);
+            changed.signalAll();
+        }
+        return Long.MAX_VALUE;
+    }
+
+    private void dequeue(String lane, Waiter w) {
+        ArrayDeque<Waiter> queue = lanes.get(lane);
+        if (queue == null || !queue.remove(w)) return;
+        waiting--;
+        waitingTokens -= w.tokens;
+        if (queue.isEmpty()) {
+            lanes.remove(lane);
+            turn.remove(lane);
+        }
+        changed.signalAll();
+    }
+
+    private static long nanosFor(TokenBucket bucket, double needed, long now) {
+        double missing = needed - bucket.available(now);
+        return missing <= 0 ? 0 : (long) Math.ceil(missing / bucket.perNano());
+    }
+
+    private ApiException overloaded(String reason, long retryAfterNanos) {
+        rejected.incrementAndGet();
+        long seconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(retryAfterNanos + 999_999_999));
+        return new ApiException(503, reason + ", retry in " + seconds + "s", seconds);
+    }
+
+    private static String lane(String endpoint) {
+        int dot = endpoint.indexOf('.');
+        return dot < 0 ? endpoint : endpoint.substring(0, dot);
+    }
+
+    @Override
+    public String statsName() {
+        return "rateLimit";
+    }
+
+    @Override
+    public Map<String, Number> stats() {
+        var stats = new LinkedHashMap<String, Number>();
+        stats.put("granted", granted.get());
+        stats.put("rejected", rejected.get());
+        stats.put("extraAttempts", extraAttempts.get());
+        stats.put("waitedMillis", waitedMillis.get());
+        stats.put("inFlight", maxConcurrent - concurrency.availablePermits());
+        lock.lock();
+        try {
+            stats.put("queued", waiting);
+        } finally {
+            lock.unlock();
+        }
+        return stats;
+    }
+}
@@ -0,0 +1,131 @@
+package dev.arno.linkedin.postagent.llm;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.RecordComponent;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.util.Collection;
+
+/**
+ * A JSON Schema generated from a record DTO, for providers' structured-output mode
+ * ({@code response_format: json_schema}, strict), plus a reader that binds a completion straight
+ * into the record. Every component is required and no other properties are allowed, as strict
+ * mode demands; enums become string enums and collections and arrays become arrays.
+ *
+ * <p>The schema of a record type is generated once per process and shared by every instance for
+ * that type; an instance only adds the registry its counters go to. Keep instances in fields of
+ * the component that uses them.
+ */
+public final class ResponseSchema<T> {
+
+    private static final ObjectMapper MAPPER = JsonMapper.builder()
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .build();
+    private static final JsonNodeFactory NODES = JsonNodeFactory.instance;
+    private static final ClassValue<ObjectNode> SCHEMAS = new ClassValue<>() {
+        @Override
+        protected ObjectNode computeValue(Class<?> type) {
+            return schema(type);
+        }
+    };
+
+    private final Class<T> type;
+    private final String name;
+    private final ObjectNode schema;
+    private final ObjectReader reader;
+    private final MeterRegistry registry;
+    private final Counter repaired;
+
+    private ResponseSchema(Class<T> type, MeterRegistry registry) {
+        if (!type.isRecord()) throw new IllegalArgumentException("Structured output needs a record type, got " + type.getName());
+        this.type = type;
+        this.name = type.getSimpleName();
+        this.schema = SCHEMAS.get(type);
+        this.reader = MAPPER.readerFor(type);
+        this.registry = registry;
+        this.repaired = registry.counter("llm.structured.repaired", "schema", name);
+    }
+
+    /** Completions that needed {@link JsonExtractor} and its failures are counted in {@code registry}. */
+    public static <T> ResponseSchema<T> of(Class<T> type, MeterRegistry registry) {
+        return new ResponseSchema<>(type, registry);
+    }
+
+    public String name() {
+        return name;
+    }
+
+    /** The schema as a JSON object, ready to embed in a request body. */
+    public ObjectNode schema() {
+        return schema;
+    }
+
+    /**
+     * Binds the completion into the record. A backend without structured outputs may still wrap the
+     * JSON in prose or fences; that falls back to {@link JsonExtractor}, which repairs or throws 502.
+     */
+    public T read(String content) {
+        try {
+            return reader.readValue(content);
+        } catch (JsonProcessingException e) {
+            repaired.increment();
+            return JsonExtractor.read(MAPPER, content, type, registry);
+        }
+    }
+
+    private static ObjectNode schema(Type t) {
+        if (t instanceof ParameterizedType p && p.getRawType() instanceof Class<?> raw && Collection.class.isAssignableFrom(raw)) {
+            return array(schema(p.getActualTypeArguments()[0]));
+        }
+        if (!(t instanceof Class<?> c)) throw new IllegalArgumentException("No JSON schema for " + t);
+
+        if (c == String.class || c == char.class || c == Character.class) return type("string");
+        if (c == int.class || c == long.class || c == short.class || c == Integer.class || c == Long.class || c == Short.class) {
+            return type("integer");
+        }
+        if (c == double.class || c == float.class || c == Double.class || c == Float.class || c == BigDecimal.class) {
+            return type("number");
+        }
+        if (c == boolean.class || c == Boolean.class) return type("boolean");
+        if (c.isEnum()) {
+            ObjectNode node = type("string");
+            ArrayNode values = node.putArray("enum");
+            for (Object constant : c.getEnumConstants()) values.add(((Enum<?>) constant).name());
+            return node;
+        }
+        if (c.isArray()) return array(schema(c.getComponentType()));
+        if (c.isRecord()) {
+            ObjectNode node = type("object");
+            ObjectNode properties = node.putObject("properties");
+            ArrayNode required = node.putArray("required");
+            for (RecordComponent rc : c.getRecordComponents()) {
+                properties.set(rc.getName(), schema(rc.getGenericType()));
+                required.add(rc.getName());
+            }
+            node.put("additionalProperties", false);
+            return node;
+        }
+        throw new IllegalArgumentException("No JSON schema for " + c.getName());
+    }
+
+    private static ObjectNode type(String type) {
+        return NODES.objectNode().put("type", type);
+    }
+
+    private static ObjectNode array(ObjectNode items) {
+        ObjectNode node = type("array");
+        node.set("items", items);
+        return node;
+    }
+}
@@ -0,0 +1,46 @@
+package dev.arno.linkedin.postagent.llm;
+
+import java.net.http.HttpHeaders;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Retry schedule for upstream calls: decorrelated jitter ({@code sleep = min(cap, rand(base, prev * 3))}),
+ * never shorter than a server-sent {@code Retry-After}, and never past the per-call deadline.
+ */
+public record RetryPolicy(int maxAttempts, Duration baseDelay, Duration maxDelay, Duration deadline) {
+
+    public long nextDelayMillis(long previousMillis) {
+        long base = baseDelay.toMillis();
+        long upper = Math.max(base + 1, previousMillis * 3);
+        return Math.min(maxDelay.toMillis(), ThreadLocalRandom.current().nextLong(base, upper));
+    }
+
+    /** Parses {@code retry-after-ms}, or {@code Retry-After} as delta-seconds or an HTTP date. */
+    public static Duration retryAfter(HttpHeaders headers) {
+        var millis = headers.firstValue("retry-after-ms");
+        if (millis.isPresent()) {
+            try {
+                return Duration.ofMillis((long) Double.parseDouble(millis.get().trim()));
+            } catch (NumberFormatException ignored) {
+                // fall through to Retry-After
+            }
+        }
+        var value = headers.firstValue("retry-after");
+        if (value.isEmpty()) return null;
+        String v = value.get().trim();
+        try {
+            return Duration.ofSeconds(Long.parseLong(v));
+        } catch (NumberFormatException e) {
+            try {
+                var at = ZonedDateTime.parse(v, DateTimeFormatter.RFC_1123_DATE_TIME);
+                Duration d = Duration.between(ZonedDateTime.now(at.getZone()), at);
+                return d.isNegative() ? Duration.ZERO : d;
+            } catch (RuntimeException ignored) {
+                return null;
+            }
+        }
+    }
+}
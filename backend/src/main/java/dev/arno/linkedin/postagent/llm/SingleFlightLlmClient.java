@@ -0,0 +1,95 @@
+package dev.arno.linkedin.postagent.llm;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Coalesces concurrent identical prompts: the first caller for a {@link PromptKey} makes the call,
+ * everyone arriving while it is in flight waits for and shares its result, including its failure.
+ * Streaming calls pass straight through: each subscriber needs its own token stream.
+ */
+public class SingleFlightLlmClient implements LlmClient, LlmStatsSource {
+
+    private final LlmClient delegate;
+    private final String model;
+    private final double temperature;
+
+    private final ConcurrentHashMap<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    public SingleFlightLlmClient(LlmClient delegate, String model, double temperature) {
+        this.delegate = delegate;
+        this.model = model;
+        this.temperature = temperature;
+    }
+
+    @Override
+    public String chat(List<LlmMessage> messages, LlmOptions options) throws IOException, InterruptedException {
+        // a caller asking for a fresh completion must not be handed a cached one via a cacheable leader
+        String key = PromptKey.of(model, temperature, messages) + (options.cacheable() ? "" : "/fresh");
+
+        var mine = new CompletableFuture<String>();
+        var leader = inFlight.putIfAbsent(key, mine);
+        if (leader != null) {
+            coalesced.incrementAndGet();
+            return await(leader);
+        }
+
+        calls.incrementAndGet();
+        try {
+            String content = delegate.chat(messages, options);
+            mine.complete(content);
+            return content;
+        } catch (Throwable e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    @Override
+    public String chatStream(List<LlmMessage> messages, LlmOptions options, Consumer<String> onToken) throws IOException, InterruptedException {
+        return delegate.chatStream(messages, options, onToken);
+    }
+
+    @Override
+    public void evict(List<LlmMessage> messages) {
+        delegate.evict(messages);
+    }
+
+    private static String await(CompletableFuture<String> leader) throws IOException, InterruptedException {
+        try {
+            return leader.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) throw io;
+            if (cause instanceof RuntimeException re) throw re;
+            if (cause instanceof Error err) throw err;
+            // the leader was interrupted (e.g. its job was cancelled); that is not this caller's interrupt
+            throw new IOException("Coalesced LLM call was cancelled", cause);
+        }
+    }
+
+    @Override
+    public String statsName() {
+        return "singleFlight";
+    }
+
+    @Override
+    public Map<String, Number> stats() {
+        var stats = new LinkedHashMap<String, Number>();
+        stats.put("calls", calls.get());
+        stats.put("coalesced", coalesced.get());
+        stats.put("inFlight", inFlight.size());
+        return stats;
+    }
+}
@@ -0,0 +1,45 @@
+package dev.arno.linkedin.postagent.llm;
+
+/**
+ * Classic token bucket refilled continuously at {@code perMinute / 60s}. Not thread-safe; the owner
+ * guards it.
+ */
+final class TokenBucket {
+
+    private final double capacity;
+    private final double perNano;
+    private double stored;
+    private long last;
+
+    TokenBucket(double perMinute) {
+        this.capacity = perMinute;
+        this.perNano = perMinute / 60e9;
+        this.stored = perMinute;
+        this.last = System.nanoTime();
+    }
+
+    /** Nanoseconds until {@code n} units are available; 0 if they are available now. */
+    long nanosUntil(double n, long now) {
+        refill(now);
+        n = Math.min(n, capacity);
+        return stored >= n ? 0 : (long) Math.ceil((n - stored) / perNano);
+    }
+
+    void take(double n) {
+        stored -= Math.min(n, capacity);
+    }
+
+    double available(long now) {
+        refill(now);
+        return stored;
+    }
+
+    double perNano() {
+        return perNano;
+    }
+
+    private void refill(long now) {
+        stored = Math.min(capacity, stored + (now - last) * perNano);
+        last = now;
+    }
+}
@@ -0,0 +1,136 @@
+package dev.arno.linkedin.postagent.llm;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token accounting for upstream calls: estimates a prompt before it is sent, trims the largest
+ * user message when a prompt is over {@code maxPromptTokens}, picks {@code max_tokens} per endpoint,
+ * and compares the estimate with the {@code usage} the provider reports, including how many prompt
+ * tokens the provider served from its prefix cache.
+ *
+ * <p>{@code max_tokens} is looked up by full endpoint ({@code full.draft}), then stage
+ * ({@code draft}), then lane ({@code full}), then {@code default}; 0 leaves it unset.
+ */
+public class TokenBudget implements LlmStatsSource {
+
+    private static final Logger log = LoggerFactory.getLogger(TokenBudget.class);
+
+    private final TokenCounter counter;
+    private final int maxPromptTokens;
+    private final Map<String, Integer> maxCompletion;
+    private final MeterRegistry registry;
+
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong estimatedPrompt = new AtomicLong();
+    private final AtomicLong actualPrompt = new AtomicLong();
+    private final AtomicLong cachedPrompt = new AtomicLong();
+    private final AtomicLong completion = new AtomicLong();
+    private final AtomicLong absError = new AtomicLong();
+    private final AtomicLong trimmed = new AtomicLong();
+
+    public TokenBudget(TokenCounter counter, int maxPromptTokens, Map<String, Integer> maxCompletion, MeterRegistry registry) {
+        this.counter = counter;
+        this.maxPromptTokens = maxPromptTokens;
+        this.maxCompletion = Map.copyOf(maxCompletion);
+        this.registry = registry;
+    }
+
+    public int estimate(List<LlmMessage> messages) {
+        return counter.count(messages);
+    }
+
+    public int maxTokens(String endpoint) {
+        Integer n = LlmOptions.byEndpoint(maxCompletion, endpoint);
+        return n == null ? 0 : n;
+    }
+
+    /** The messages, with the longest user message cut down if the prompt is over budget. */
+    public List<LlmMessage> fit(List<LlmMessage> messages, String endpoint) {
+        int total = counter.count(messages);
+        if (maxPromptTokens <= 0 || total <= maxPromptTokens) return messages;
+
+        int longest = -1;
+        int longestTokens = 0;
+        for (int i = 0; i < messages.size(); i++) {
+            if (!"user".equals(messages.get(i).role())) continue;
+            int t = counter.count(messages.get(i).content());
+            if (t > longestTokens) {
+                longest = i;
+                longestTokens = t;
+            }
+        }
+        int keep = longestTokens - (total - maxPromptTokens);
+        if (longest < 0 || keep <= 0) return messages;
+
+        String content = messages.get(longest).content();
+        String cut = truncate(content, longestTokens, keep);
+        trimmed.incrementAndGet();
+        log.warn("Trimmed {} prompt from {} to ~{} tokens (budget {})", endpoint, total, total - longestTokens + counter.count(cut), maxPromptTokens);
+
+        List<LlmMessage> out = new ArrayList<>(messages);
+        out.set(longest, new LlmMessage(messages.get(longest).role(), cut));
+        return out;
+    }
+
+    // keeps the head of the data (the instructions sit in the system message, which is never cut); cut at a word boundary
+    private String truncate(String s, int tokens, int keep) {
+        int end = (int) ((long) s.length() * keep / tokens);
+        while (end > 0) {
+            int space = s.lastIndexOf(' ', end);
+            end = space > 0 ? space : end;
+            String cut = s.substring(0, end) + " …";
+            if (counter.count(cut) <= keep) return cut;
+            end = end * 9 / 10;
+        }
+        return "";
+    }
+
+    /** Records the provider's {@code usage} object against the estimate taken before the call. */
+    void record(String endpoint, int estimate, ChatCompletion.Usage usage) {
+        if (usage == null) return;
+        int prompt = usage.promptTokens();
+        int completionTokens = usage.completionTokens();
+        int cached = usage.cachedTokens();
+        calls.incrementAndGet();
+        estimatedPrompt.addAndGet(estimate);
+        actualPrompt.addAndGet(prompt);
+        cachedPrompt.addAndGet(cached);
+        completion.addAndGet(completionTokens);
+        absError.addAndGet(Math.abs(estimate - prompt));
+        registry.counter("llm.tokens", "endpoint", endpoint, "type", "estimated").increment(estimate);
+        registry.counter("llm.tokens", "endpoint", endpoint, "type", "prompt").increment(prompt);
+        registry.counter("llm.tokens", "endpoint", endpoint, "type", "cached").increment(cached);
+        registry.counter("llm.tokens", "endpoint", endpoint, "type", "completion").increment(completionTokens);
+        log.debug("tokens endpoint={} estimated={} prompt={} cached={} completion={}", endpoint, estimate, prompt, cached, completionTokens);
+    }
+
+    @Override
+    public String statsName() {
+        return "tokens";
+    }
+
+    @Override
+    public Map<String, Number> stats() {
+        var stats = new LinkedHashMap<String, Number>();
+        long n = calls.get();
+        long actual = actualPrompt.get();
+        stats.put("exactCounter", counter.exact() ? 1 : 0);
+        stats.put("calls", n);
+        stats.put("estimatedPromptTokens", estimatedPrompt.get());
+        stats.put("promptTokens", actual);
+        stats.put("cachedPromptTokens", cachedPrompt.get());
+        stats.put("cachedPromptPct", actual == 0 ? 0 : Math.round(1000.0 * cachedPrompt.get() / actual) / 10.0);
+        stats.put("completionTokens", completion.get());
+        stats.put("estimateErrorPct", actual == 0 ? 0 : Math.round(100.0 * absError.get() / actual * 10) / 10.0);
+        stats.put("trimmed", trimmed.get());
+        return stats;
+    }
+}
@@ -0,0 +1,144 @@
+package dev.arno.linkedin.postagent.llm;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Counts tokens the way OpenAI's byte-level BPE tokenizers do, from a tiktoken rank file
+ * ({@code <base64 token> <rank>} per line, e.g. {@code o200k_base.tiktoken}).
+ *
+ * <p>Text is pre-split into word, number, punctuation and whitespace pieces (a hand-written
+ * approximation of tiktoken's split pattern), and each piece is merged by rank. Piece counts are
+ * cached, since posts repeat most of their words. Without a rank file it falls back to about
+ * four UTF-8 bytes per piece-token, which is fine for budgeting but not exact.
+ */
+public class TokenCounter {
+
+    private static final int MAX_CACHED = 100_000;
+
+    // token bytes as ISO-8859-1 strings (one char per byte) → rank
+    private final Map<String, Integer> ranks;
+    private final Map<String, Integer> cache = new ConcurrentHashMap<>();
+
+    public TokenCounter(BufferedReader rankFile) throws IOException {
+        Map<String, Integer> r = new HashMap<>(1 << 18);
+        Base64.Decoder b64 = Base64.getDecoder();
+        String line;
+        while ((line = rankFile.readLine()) != null) {
+            int sp = line.indexOf(' ');
+            if (sp <= 0) continue;
+            byte[] token = b64.decode(line.substring(0, sp));
+            r.put(new String(token, StandardCharsets.ISO_8859_1), Integer.parseInt(line.substring(sp + 1).trim()));
+        }
+        this.ranks = r;
+    }
+
+    private TokenCounter() {
+        this.ranks = null;
+    }
+
+    /** A counter without a vocabulary, estimating from byte length. */
+    public static TokenCounter approximate() {
+        return new TokenCounter();
+    }
+
+    public boolean exact() {
+        return ranks != null;
+    }
+
+    public int count(String text) {
+        if (text == null || text.isEmpty()) return 0;
+        int n = 0;
+        for (String piece : split(text)) {
+            Integer cached = cache.get(piece);
+            if (cached == null) {
+                cached = ranks != null ? bpe(piece.getBytes(StandardCharsets.UTF_8)) : approx(piece);
+                if (cache.size() >= MAX_CACHED) cache.clear();
+                cache.put(piece, cached);
+            }
+            n += cached;
+        }
+        return n;
+    }
+
+    /** Chat prompt size: content plus the per-message framing the chat format adds. */
+    public int count(List<LlmMessage> messages) {
+        int n = 3; // reply priming
+        for (LlmMessage m : messages) n += 4 + count(m.content());
+        return n;
+    }
+
+    // Word (with one leading space), up to 3 digits, punctuation run (with one leading space),
+    // or whitespace; a single space before a word or punctuation belongs to it.
+    static List<String> split(String s) {
+        List<String> out = new ArrayList<>();
+        int i = 0, n = s.length();
+        while (i < n) {
+            int start = i;
+            char c = s.charAt(i);
+            if (c == ' ' && i + 1 < n && !Character.isWhitespace(s.charAt(i + 1))) {
+                c = s.charAt(++i);
+            }
+            if (Character.isLetter(c)) {
+                while (i < n && (Character.isLetter(s.charAt(i)) || Character.getType(s.charAt(i)) == Character.NON_SPACING_MARK)) i++;
+            } else if (Character.isDigit(c)) {
+                if (i > start) { out.add(" "); start = i; } // digits never take the space
+                int end = Math.min(n, i + 3);
+                while (i < end && Character.isDigit(s.charAt(i))) i++;
+            } else if (Character.isWhitespace(c)) {
+                while (i < n && Character.isWhitespace(s.charAt(i))) i++;
+                // leave one space for the following word
+                if (i < n && i - start > 1 && s.charAt(i - 1) == ' ') i--;
+            } else {
+                while (i < n && !Character.isLetterOrDigit(s.charAt(i)) && !Character.isWhitespace(s.charAt(i))) i++;
+                while (i < n && (s.charAt(i) == '\n' || s.charAt(i) == '\r')) i++;
+            }
+            if (i == start) i++; // unpaired surrogate or similar: one char
+            out.add(s.substring(start, i));
+        }
+        return out;
+    }
+
+    private int bpe(byte[] bytes) {
+        if (bytes.length <= 1) return bytes.length;
+        if (rank(bytes, 0, bytes.length) != null) return 1;
+
+        // boundaries between parts; merge the lowest-ranked adjacent pair until none is in the vocabulary
+        List<Integer> starts = new ArrayList<>(bytes.length + 1);
+        for (int i = 0; i <= bytes.length; i++) starts.add(i);
+        while (starts.size() > 2) {
+            int best = -1;
+            int bestRank = Integer.MAX_VALUE;
+            for (int i = 0; i + 2 < starts.size(); i++) {
+                Integer r = rank(bytes, starts.get(i), starts.get(i + 2));
+                if (r != null && r < bestRank) {
+                    bestRank = r;
+                    best = i;
+                }
+            }
+            if (best < 0) break;
+            starts.remove(best + 1);
+        }
+        return starts.size() - 1;
+    }
+
+    private Integer rank(byte[] bytes, int from, int to) {
+        return ranks.get(new String(bytes, from, to - from, StandardCharsets.ISO_8859_1));
+    }
+
+    private static int approx(String piece) {
+        int bytes = 0;
+        for (int i = 0; i < piece.length(); i++) {
+            char c = piece.charAt(i);
+            bytes += c < 0x80 ? 1 : (Character.isSurrogate(c) ? 2 : 3);
+        }
+        return Math.max(1, (bytes + 3) / 4);
+    }
+}
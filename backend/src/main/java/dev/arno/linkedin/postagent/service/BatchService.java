@@ -0,0 +1,124 @@
+package dev.arno.linkedin.postagent.service;
+
+import dev.arno.linkedin.postagent.dto.BatchItem;
+import dev.arno.linkedin.postagent.dto.FullPostInput;
+import dev.arno.linkedin.postagent.llm.LlmOptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+
+/**
+ * Generates many posts at once. Posts sharing a topic, audience and goal get their titles from one
+ * ideas call (each post a different title), then every post runs the rest of the /posts/full graph
+ * with bounded parallelism. All calls go out under the {@code batch} endpoint, so the whole batch
+ * shares one lane of the upstream rate limiter instead of crowding out interactive traffic.
+ */
+@Service
+public class BatchService {
+
+    private static final Logger log = LoggerFactory.getLogger(BatchService.class);
+
+    private final FullPostPipeline pipeline;
+    private final int defaultParallelism;
+
+    public BatchService(FullPostPipeline pipeline, @Value("${spring.llm.batch.parallelism:4}") int defaultParallelism) {
+        this.pipeline = pipeline;
+        this.defaultParallelism = defaultParallelism;
+    }
+
+    /**
+     * Runs the batch and hands each post's outcome to {@code onResult} as soon as it completes, in
+     * completion order. Returns when every post has finished; if {@code onResult} throws (the client
+     * went away) the remaining posts are cancelled.
+     */
+    public void run(List<FullPostInput> posts, Integer parallelism, LlmOptions options, Consumer<BatchItem> onResult) throws InterruptedException {
+        var permits = new Semaphore(parallelism == null ? defaultParallelism : parallelism);
+        Map<String, Integer> groupSizes = new HashMap<>();
+        for (FullPostInput p : posts) groupSizes.merge(ideasKey(p), 1, Integer::sum);
+        Map<String, CompletableFuture<List<String>>> ideas = new ConcurrentHashMap<>();
+        Map<String, Integer> nextIdea = new HashMap<>();
+
+        long start = System.nanoTime();
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<CompletableFuture<?>> running = new ArrayList<>();
+            for (int i = 0; i < posts.size(); i++) {
+                int index = i;
+                FullPostInput post = posts.get(i);
+                String key = ideasKey(post);
+                int slot = nextIdea.merge(key, 1, Integer::sum) - 1;
+
+                running.add(CompletableFuture.runAsync(() -> {
+                    BatchItem item;
+                    try {
+                        permits.acquire();
+                        try {
+                            String title = pick(ideas.computeIfAbsent(key, k -> CompletableFuture.supplyAsync(() -> {
+                                try {
+                                    return pipeline.ideas(post, Math.max(3, groupSizes.get(k)), options);
+                                } catch (Exception e) {
+                                    // the posts fall back to running their own ideas stage
+                                    log.warn("Batch ideas call failed for '{}': {}", post.topic(), e.getMessage());
+                                    return List.of();
+                                }
+                            }, executor)), slot);
+                            item = new BatchItem(index, pipeline.run(post, title, options, PipelineListener.NONE), null);
+                        } finally {
+                            permits.release();
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    } catch (Exception e) {
+                        item = new BatchItem(index, null, e.getMessage());
+                    }
+                    onResult.accept(item);
+                }, executor));
+            }
+
+            var failed = new CompletableFuture<Void>();
+            running.forEach(f -> f.whenComplete((v, e) -> {
+                if (e != null) failed.completeExceptionally(e);
+            }));
+            try {
+                CompletableFuture.anyOf(CompletableFuture.allOf(running.toArray(CompletableFuture[]::new)), failed).get();
+            } catch (ExecutionException e) {
+                executor.shutdownNow();
+                Throwable cause = e.getCause() instanceof CompletionException ce ? ce.getCause() : e.getCause();
+                if (cause instanceof RuntimeException re) throw re;
+                throw new IllegalStateException(cause);
+            } catch (InterruptedException e) {
+                executor.shutdownNow();
+                throw e;
+            }
+        }
+        log.info("Batch of {} posts finished in {} ms", posts.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private static String pick(CompletableFuture<List<String>> ideas, int slot) throws Exception {
+        List<String> titles;
+        try {
+            titles = ideas.get();
+        } catch (ExecutionException e) {
+            return null;
+        }
+        return titles.isEmpty() ? null : titles.get(slot % titles.size());
+    }
+
+    private static String ideasKey(FullPostInput p) {
+        return (p.topic() + "\u0000" + p.audience() + "\u0000" + p.goal()).toLowerCase(Locale.ROOT).strip();
+    }
+}
@@ -0,0 +1,199 @@
+package dev.arno.linkedin.postagent.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.arno.linkedin.postagent.dto.FullPostInput;
+import dev.arno.linkedin.postagent.dto.FullPostOutput;
+import dev.arno.linkedin.postagent.llm.JsonExtractor;
+import dev.arno.linkedin.postagent.llm.LlmClient;
+import dev.arno.linkedin.postagent.llm.LlmMessage;
+import dev.arno.linkedin.postagent.llm.LlmOptions;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The /posts/full stage graph:
+ * <pre>
+ *   ideas → outline → draft ─┬─ hashtags ─────┬─ package
+ *                            └─ image-prompt ─┘
+ * </pre>
+ * A request only waits on its critical path: hashtags and image-prompt both depend on the draft
+ * alone, so they run concurrently on virtual threads. The draft stage streams its tokens to the
+ * {@link PipelineListener}. Stage names are the same everywhere: timings, listener events, the
+ * {@code posts.full.stage} timer and the per-stage LLM options.
+ */
+@Service
+public class FullPostPipeline {
+
+    private static final Logger log = LoggerFactory.getLogger(FullPostPipeline.class);
+
+    private final LlmClient llm;
+    private final ObjectMapper mapper;
+    private final HashtagEngine hashtagEngine;
+    private final MeterRegistry registry;
+
+    public FullPostPipeline(LlmClient llm, ObjectMapper mapper, HashtagEngine hashtagEngine, MeterRegistry registry) {
+        this.llm = llm;
+        this.registry = registry;
+        this.mapper = mapper;
+        this.hashtagEngine = hashtagEngine;
+    }
+
+    public FullPostOutput run(FullPostInput input) throws Exception {
+        return run(input, LlmOptions.forEndpoint("full"), PipelineListener.NONE);
+    }
+
+    public FullPostOutput run(FullPostInput input, LlmOptions options, PipelineListener listener) throws Exception {
+        return run(input, null, options, listener);
+    }
+
+    /**
+     * Runs the graph with the ideas stage already settled when {@code ideaTitle} is given, e.g. by a
+     * batch that generated ideas for many posts in one call.
+     */
+    public FullPostOutput run(FullPostInput input, String ideaTitle, LlmOptions options, PipelineListener listener) throws Exception {
+        // sensible defaults
+        String tone = (input.tone() == null || input.tone().isBlank())
+                ? "practical"
+                : input.tone();
+        int maxTags = (input.maxHashtags() == null || input.maxHashtags() <= 0)
+                ? 5
+                : input.maxHashtags();
+
+        long start = System.nanoTime();
+        var scope = new StageScope(listener);
+        String outcome = "error";
+        try (scope) {
+            String idea = ideaTitle != null ? ideaTitle : scope.run("ideas", () -> ideas(input, options));
+            String outline = scope.run("outline", () -> outline(idea, input.audience(), tone, options));
+            String draft = scope.run("draft", () -> draft(outline, input.audience(), tone, input.constraints(), options, listener));
+
+            var hashtags = scope.fork("hashtags", () -> hashtags(draft, maxTags, options));
+            var imagePrompt = scope.fork("image-prompt", () -> imagePrompt(draft, options));
+            scope.join();
+
+            // Final packaged text (post + hashtags)
+            List<String> tags = hashtags.resultNow();
+            String finalText = scope.run("package", () -> tags.isEmpty()
+                    ? draft.trim()
+                    : draft.trim() + "\n\n" + String.join(" ", tags));
+            int charCount = PackagingService.countChars(finalText);
+
+            var timings = scope.timings();
+            log.info("/posts/full finished in {} ms, stages (ms): {}", (System.nanoTime() - start) / 1_000_000, timings);
+            outcome = "success";
+
+            return new FullPostOutput(
+                    idea,
+                    outline,
+                    draft,
+                    tags,
+                    imagePrompt.resultNow(),
+                    finalText,
+                    charCount,
+                    timings
+            );
+        } finally {
+            // failed runs too, so a stage that errors out still shows up in its timer
+            record(options, scope, outcome, (System.nanoTime() - start) / 1_000_000);
+        }
+    }
+
+    // Get a few ideas and pick the first
+    private String ideas(FullPostInput input, LlmOptions options) throws Exception {
+        var messages = Prompts.fullIdeasMessages(input);
+        String ideasJson = llm.chat(messages, stage(options, "ideas"));
+        // Example expected: ["Title 1", "Title 2", ...]
+        var ideasNode = readTree(messages, ideasJson);
+        return ideasNode.isArray() && ideasNode.size() > 0
+                ? ideasNode.get(0).asText()
+                : input.goal(); // fallback
+    }
+
+    /** Up to {@code count} distinct idea titles for the input's topic/audience/goal, in one call. */
+    public List<String> ideas(FullPostInput input, int count, LlmOptions options) throws Exception {
+        var messages = Prompts.fullIdeasMessages(input, count);
+        String ideasJson = llm.chat(messages, stage(options, "ideas"));
+        var ideasNode = readTree(messages, ideasJson);
+        List<String> titles = new ArrayList<>();
+        if (ideasNode.isArray()) {
+            ideasNode.forEach(n -> titles.add(n.asText()));
+        }
+        return titles;
+    }
+
+    private String outline(String ideaTitle, String audience, String tone, LlmOptions options) throws Exception {
+        var messages = Prompts.fullOutlineMessages(ideaTitle, audience, tone);
+        String outlineJson = llm.chat(messages, stage(options, "outline"));
+        return readTree(messages, outlineJson).path("outline").asText();
+    }
+
+    private String draft(String outline, String audience, String tone, String constraints, LlmOptions options, PipelineListener listener) throws Exception {
+        return llm.chatStream(Prompts.fullDraftMessages(outline, audience, tone, constraints), stage(options, "draft"), delta -> listener.token("draft", delta));
+    }
+
+    // the local engine answers in microseconds; the LLM is only asked when it has too few matches
+    private List<String> hashtags(String draft, int maxTags, LlmOptions options) throws Exception {
+        var local = hashtagEngine.suggest(draft, maxTags, "balanced");
+        if (local.confident()) {
+            return local.hashtags();
+        }
+
+        var messages = Prompts.fullHashtagsMessages(draft, maxTags);
+        String hashtagsJson = llm.chat(messages, stage(options, "hashtags"));
+        var tagsNode = readTree(messages, hashtagsJson).path("hashtags");
+        List<String> hashtags = new ArrayList<>();
+        if (tagsNode.isArray()) {
+            tagsNode.forEach(n -> hashtags.add(n.asText()));
+        }
+        return hashtags;
+    }
+
+    private String imagePrompt(String draft, LlmOptions options) throws Exception {
+        var messages = Prompts.fullImageMessages(draft);
+        String imageJson = llm.chat(messages, stage(options, "image-prompt"));
+        return readTree(messages, imageJson).path("imagePrompt").asText();
+    }
+
+    // a completion that doesn't parse is dropped from the caches, so a retry asks again
+    private JsonNode readTree(List<LlmMessage> messages, String content) {
+        try {
+            return JsonExtractor.readTree(mapper, content, registry);
+        } catch (RuntimeException e) {
+            llm.evict(messages);
+            throw e;
+        }
+    }
+
+    // posts.full.stage{caller, stage, outcome} and posts.full{caller, outcome}, caller being the lane (full, jobs, batch)
+    private void record(LlmOptions options, StageScope scope, String outcome, long total) {
+        String caller = options.endpoint();
+        Map<String, String> outcomes = scope.outcomes();
+        scope.timings().forEach((stage, millis) -> Timer.builder("posts.full.stage")
+                .tag("caller", caller)
+                .tag("stage", stage)
+                .tag("outcome", outcomes.getOrDefault(stage, "error"))
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(millis, TimeUnit.MILLISECONDS));
+        Timer.builder("posts.full")
+                .tag("caller", caller)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(total, TimeUnit.MILLISECONDS);
+    }
+
+    // stage calls are attributed to the caller, e.g. "full.draft" or "batch.draft"
+    private static LlmOptions stage(LlmOptions options, String stage) {
+        return options.withEndpoint(options.endpoint() + "." + stage);
+    }
+}
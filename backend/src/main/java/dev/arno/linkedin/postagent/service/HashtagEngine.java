@@ -0,0 +1,220 @@
+package dev.arno.linkedin.postagent.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In-process hashtag suggester, so /posts/hashtagize and the full pipeline's hashtags stage don't
+ * need an LLM round trip for what is mostly keyword work.
+ *
+ * <p>The curated dictionary ({@code hashtags.tsv}) maps each tag to keyword phrases. Phrases are
+ * indexed word by word in a trie, so one left-to-right pass over the post finds every phrase
+ * occurrence. A tag scores {@code Σ (1 + ln tf) · idf · words} over its matched phrases, where idf
+ * discounts phrases shared by several tags and multi-word phrases count per word. Strategy shifts
+ * weight between broad and niche tags, and tags from the post's dominant topic get a small boost.
+ *
+ * <p>When fewer than {@code min(maxTags, 3)} tags clear the score threshold, or the picked tags
+ * together score less than {@link #CONFIDENT_SCORE} each (roughly: one multi-word phrase or one
+ * repeated keyword per tag), the suggestion is marked not confident and callers fall back to the LLM.
+ */
+@Service
+public class HashtagEngine {
+
+    public record Suggestion(List<String> hashtags, String rationale, boolean confident) {}
+
+    private record Tag(String tag, String topic, boolean broad) {}
+
+    private static final class Node {
+        final Map<String, Node> next = new HashMap<>(4);
+        List<Integer> tags;       // tags listing the phrase ending here
+        String phrase;
+        int words;
+        double idf;
+    }
+
+    private static final double MIN_SCORE = 1.0;
+    private static final double CONFIDENT_SCORE = 8.0;
+
+    private final List<Tag> tags = new ArrayList<>();
+    private final Node root = new Node();
+    private final Set<String> vocabulary = new HashSet<>();
+
+    public HashtagEngine(@Value("${spring.llm.hashtags.dictionary:classpath:hashtags.tsv}") Resource dictionary) throws IOException {
+        try (var in = new BufferedReader(new InputStreamReader(dictionary.getInputStream(), StandardCharsets.UTF_8))) {
+            load(in);
+        }
+    }
+
+    HashtagEngine(BufferedReader dictionary) throws IOException {
+        load(dictionary);
+    }
+
+    public Suggestion suggest(String text, int maxTags, String strategy) {
+        double[] scores = new double[tags.size()];
+        Map<Integer, List<String>> matched = new HashMap<>();
+        Map<Node, Integer> tf = new HashMap<>();
+
+        List<String> words = words(text, vocabulary);
+        for (int i = 0; i < words.size(); i++) {
+            Node n = root;
+            for (int j = i; j < words.size() && (n = n.next.get(words.get(j))) != null; j++) {
+                if (n.tags != null) tf.merge(n, 1, Integer::sum);
+            }
+        }
+
+        Map<String, Double> topicWeight = new HashMap<>();
+        for (var e : tf.entrySet()) {
+            Node phrase = e.getKey();
+            double s = (1 + Math.log(e.getValue())) * phrase.idf * phrase.words;
+            for (int t : phrase.tags) {
+                scores[t] += s;
+                matched.computeIfAbsent(t, k -> new ArrayList<>()).add(phrase.phrase);
+                topicWeight.merge(tags.get(t).topic(), s, Double::sum);
+            }
+        }
+        String topic = topicWeight.entrySet().stream()
+                .filter(e -> !e.getKey().equals("general"))
+                .max(Map.Entry.comparingByValue()).map(Map.Entry::getKey).orElse(null);
+
+        double broadBoost = switch (strategy == null ? "balanced" : strategy.toLowerCase(Locale.ROOT)) {
+            case "broad" -> 1.5;
+            case "niche" -> 0.6;
+            default -> 1.0;
+        };
+        List<Integer> ranked = new ArrayList<>();
+        for (int t = 0; t < scores.length; t++) {
+            if (scores[t] == 0) continue;
+            Tag tag = tags.get(t);
+            scores[t] *= tag.broad() ? broadBoost : 1 / broadBoost;
+            if (tag.topic().equals(topic)) scores[t] *= 1.2;
+            if (scores[t] >= MIN_SCORE) ranked.add(t);
+        }
+        ranked.sort((a, b) -> Double.compare(scores[b], scores[a]));
+
+        List<Integer> picked = pick(ranked, maxTags, strategy);
+        List<String> hashtags = new ArrayList<>(picked.size());
+        var rationale = new StringBuilder("Keyword matches: ");
+        double total = 0;
+        for (int t : picked) {
+            total += scores[t];
+            if (!hashtags.isEmpty()) rationale.append("; ");
+            hashtags.add(tags.get(t).tag());
+            rationale.append(tags.get(t).tag()).append(" (").append(String.join(", ", matched.get(t))).append(')');
+        }
+        int needed = Math.min(maxTags, 3);
+        boolean confident = picked.size() >= needed && total >= needed * CONFIDENT_SCORE;
+        return new Suggestion(hashtags, rationale.toString(), confident);
+    }
+
+    // "balanced" keeps at least one broad and one niche tag when both kinds matched
+    private List<Integer> pick(List<Integer> ranked, int maxTags, String strategy) {
+        List<Integer> picked = new ArrayList<>(ranked.subList(0, Math.min(maxTags, ranked.size())));
+        if (!"balanced".equalsIgnoreCase(strategy == null ? "balanced" : strategy) || picked.size() < 2) return picked;
+        for (boolean broad : new boolean[]{true, false}) {
+            if (picked.stream().anyMatch(t -> tags.get(t).broad() == broad)) continue;
+            ranked.stream().skip(picked.size())
+                    .filter(t -> tags.get(t).broad() == broad)
+                    .findFirst()
+                    .ifPresent(t -> picked.set(picked.size() - 1, t));
+        }
+        return picked;
+    }
+
+    private void load(BufferedReader in) throws IOException {
+        Map<Node, Integer> df = new LinkedHashMap<>();
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (line.isBlank() || line.startsWith("# ")) continue;
+            String[] cols = line.split("\t");
+            if (cols.length < 4) continue;
+            int id = tags.size();
+            tags.add(new Tag(cols[0].trim(), cols[1].trim(), cols[2].trim().equalsIgnoreCase("broad")));
+
+            for (String phrase : cols[3].split(",")) {
+                List<String> words = words(phrase, Set.of());
+                if (words.isEmpty()) continue;
+                vocabulary.addAll(words);
+                Node n = root;
+                for (String w : words) n = n.next.computeIfAbsent(w, k -> new Node());
+                if (n.tags == null) {
+                    n.tags = new ArrayList<>(1);
+                    n.phrase = phrase.trim();
+                    n.words = words.size();
+                }
+                if (!n.tags.contains(id)) {
+                    n.tags.add(id);
+                    df.merge(n, 1, Integer::sum);
+                }
+            }
+        }
+        for (var e : df.entrySet()) {
+            e.getKey().idf = 1 + Math.log((double) tags.size() / e.getValue());
+        }
+    }
+
+    /**
+     * Lower-cased words, split on anything that is not a letter or digit and on camelCase humps
+     * (so "#TestAutomation" reads as "test automation"), with a plural "s" dropped. Humps that
+     * together spell a dictionary word stay one word, so "GitHub" is "github", not "git hub".
+     */
+    static List<String> words(String text, Set<String> vocabulary) {
+        List<String> out = new ArrayList<>();
+        List<String> humps = new ArrayList<>();
+        var w = new StringBuilder();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            boolean letterOrDigit = Character.isLetterOrDigit(c);
+            boolean hump = Character.isUpperCase(c) && i > 0 && Character.isLowerCase(text.charAt(i - 1));
+            if (hump) {
+                humps.add(w.toString());
+                w.setLength(0);
+            }
+            if (letterOrDigit) {
+                w.append(Character.toLowerCase(c));
+            } else {
+                token(humps, w, vocabulary, out);
+            }
+        }
+        token(humps, w, vocabulary, out);
+        return out;
+    }
+
+    // one run of letters and digits: joins back the longest runs of humps that form a known word
+    private static void token(List<String> humps, StringBuilder last, Set<String> vocabulary, List<String> out) {
+        if (!last.isEmpty()) humps.add(last.toString());
+        last.setLength(0);
+        for (int i = 0; i < humps.size(); ) {
+            int end = i + 1;
+            for (int j = humps.size(); j > i + 1; j--) {
+                if (vocabulary.contains(normalize(String.join("", humps.subList(i, j))))) {
+                    end = j;
+                    break;
+                }
+            }
+            String word = normalize(String.join("", humps.subList(i, end)));
+            if (!word.isEmpty()) out.add(word);
+            i = end;
+        }
+        humps.clear();
+    }
+
+    private static String normalize(String w) {
+        int len = w.length();
+        if (len > 3 && w.charAt(len - 1) == 's' && w.charAt(len - 2) != 's') return w.substring(0, len - 1);
+        return w;
+    }
+}
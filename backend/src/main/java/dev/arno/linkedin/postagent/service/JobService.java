@@ -0,0 +1,176 @@
+package dev.arno.linkedin.postagent.service;
+
+import dev.arno.linkedin.postagent.dto.FullPostInput;
+import dev.arno.linkedin.postagent.dto.FullPostOutput;
+import dev.arno.linkedin.postagent.dto.JobOutput;
+import dev.arno.linkedin.postagent.dto.JobState;
+import dev.arno.linkedin.postagent.error.ApiException;
+import dev.arno.linkedin.postagent.llm.LlmOptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs /posts/full generations as background jobs on a bounded worker pool, so throughput is set by
+ * the pool rather than by how many clients hold connections open. Jobs live in a bounded in-memory
+ * table; finished jobs are dropped after a TTL. Cancelling a job interrupts its worker, which aborts
+ * the in-flight upstream calls of every stage.
+ */
+@Service
+public class JobService implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(JobService.class);
+
+    private static final class Job {
+        final String id = UUID.randomUUID().toString();
+        final Instant createdAt = Instant.now();
+        final Map<String, Object> stages = Collections.synchronizedMap(new LinkedHashMap<>());
+        final Map<String, Long> stageMillis = Collections.synchronizedMap(new LinkedHashMap<>());
+        volatile JobState state = JobState.queued;
+        volatile Instant finishedAt;
+        volatile FullPostOutput result;
+        volatile String error;
+        volatile Future<?> future;
+
+        JobOutput snapshot() {
+            Map<String, Object> s;
+            Map<String, Long> ms;
+            synchronized (stages) { s = new LinkedHashMap<>(stages); }
+            synchronized (stageMillis) { ms = new LinkedHashMap<>(stageMillis); }
+            return new JobOutput(id, state, createdAt, finishedAt, s, ms, result, error);
+        }
+
+        boolean finished() {
+            return state != JobState.queued && state != JobState.running;
+        }
+    }
+
+    private final FullPostPipeline pipeline;
+    private final ThreadPoolExecutor workers;
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+    private final int maxJobs;
+    private final Duration ttl;
+
+    public JobService(
+            FullPostPipeline pipeline,
+            @Value("${spring.llm.jobs.workers:4}") int workers,
+            @Value("${spring.llm.jobs.queue:50}") int queue,
+            @Value("${spring.llm.jobs.max-jobs:1000}") int maxJobs,
+            @Value("${spring.llm.jobs.ttl:1h}") Duration ttl
+    ) {
+        this.pipeline = pipeline;
+        this.workers = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queue), Thread.ofVirtual().name("job-", 0).factory());
+        this.maxJobs = maxJobs;
+        this.ttl = ttl;
+    }
+
+    public JobOutput submit(FullPostInput input, LlmOptions options) {
+        evictExpired();
+        if (jobs.size() >= maxJobs) {
+            throw new ApiException(503, "Job table is full", 30L);
+        }
+
+        var job = new Job();
+        jobs.put(job.id, job);
+        try {
+            job.future = workers.submit(() -> run(job, input, options));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.id);
+            throw new ApiException(503, "Job queue is full", 30L);
+        }
+        return job.snapshot();
+    }
+
+    public JobOutput get(String id) {
+        return find(id).snapshot();
+    }
+
+    public JobOutput cancel(String id) {
+        Job job = find(id);
+        if (!job.finished()) {
+            Future<?> f = job.future;
+            if (f != null) f.cancel(true);
+            // a job still in the queue never runs, so settle it here
+            finish(job, JobState.cancelled, null, null);
+        }
+        return job.snapshot();
+    }
+
+    private void run(Job job, FullPostInput input, LlmOptions options) {
+        synchronized (job) {
+            // cancelled while queued
+            if (job.finished()) return;
+            job.state = JobState.running;
+        }
+        try {
+            FullPostOutput out = pipeline.run(input, options, new PipelineListener() {
+                @Override
+                public void stageCompleted(String stage, Object result, long millis) {
+                    job.stages.put(stage, result);
+                    job.stageMillis.put(stage, millis);
+                }
+            });
+            finish(job, JobState.succeeded, out, null);
+        } catch (InterruptedException e) {
+            finish(job, JobState.cancelled, null, null);
+        } catch (Exception e) {
+            if (Thread.currentThread().isInterrupted()) {
+                finish(job, JobState.cancelled, null, null);
+            } else {
+                log.warn("Job {} failed: {}", job.id, e.getMessage());
+                finish(job, JobState.failed, null, e.getMessage());
+            }
+        }
+    }
+
+    // the first outcome wins: a job cancelled while its pipeline was finishing keeps no result
+    private static void finish(Job job, JobState state, FullPostOutput result, String error) {
+        synchronized (job) {
+            if (job.finished()) return;
+            job.result = result;
+            job.error = error;
+            job.finishedAt = Instant.now();
+            job.state = state;
+        }
+    }
+
+    private Job find(String id) {
+        Job job = jobs.get(id);
+        if (job == null) throw new ApiException(404, "Unknown job: " + id);
+        return job;
+    }
+
+    // Drops finished jobs past their TTL; if the table is still full, the oldest finished jobs go first.
+    private void evictExpired() {
+        Instant cutoff = Instant.now().minus(ttl);
+        jobs.values().removeIf(j -> j.finished() && j.finishedAt.isBefore(cutoff));
+        if (jobs.size() < maxJobs) return;
+        jobs.values().stream()
+                .filter(Job::finished)
+                .sorted(Comparator.comparing(j -> j.finishedAt))
+                .limit(jobs.size() - maxJobs + 1)
+                .toList()
+                .forEach(j -> jobs.remove(j.id));
+    }
+
+    @Override
+    public void close() {
+        workers.shutdownNow();
+    }
+}
@@ -1,7 +1,277 @@
 package dev.arno.linkedin.postagent.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.arno.linkedin.postagent.dto.Constraints;
+import dev.arno.linkedin.postagent.dto.PackageOutput;
+
+import java.text.BreakIterator;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Local packaging of a finished post: line-break normalization, emoji stripping, hashtag merging,
+ * paragraph and length limits, warnings. Everything here is pure string work; the LLM is only
+ * needed when {@link #needsRewrite} says cutting sentences would lose too much of the post.
+ */
 public class PackagingService {
+
+    private static final int MIN_HASHTAGS = 3;
+    // truncating more than this share of the body is a rewrite, not a trim
+    private static final double MAX_TRUNCATION = 0.2;
+    // below this a rewrite cannot keep hook, key points and CTA; plain truncation does as well
+    private static final int MIN_REWRITE_CHARS = 100;
+
+    private static final Pattern MAX_CHARS = Pattern.compile("(\\d+)\\s*(?:chars?|characters?)");
+    private static final Pattern MAX_HASHTAGS = Pattern.compile("(\\d+)\\s*hashtags?");
+    private static final Pattern MAX_PARAGRAPHS = Pattern.compile("(\\d+)\\s*paragraphs?");
+
     public static int countChars(String s){
         return s.codePointCount(0, s.length());
     }
+
+    /** User-perceived characters: an emoji with skin tone or a flag counts once. */
+    public static int countGraphemes(String s){
+        BreakIterator it = BreakIterator.getCharacterInstance(Locale.ROOT);
+        it.setText(s);
+        int n = 0;
+        while (it.next() != BreakIterator.DONE) n++;
+        return n;
+    }
+
+    /**
+     * Reads constraints given either as JSON ({@link Constraints}) or as free text such as
+     * "under 1000 chars, no emojis, max 3 hashtags".
+     */
+    public static Constraints parseConstraints(String c, ObjectMapper mapper){
+        if (c == null || c.isBlank()) return new Constraints(null, null, null, null, null);
+        String t = c.strip();
+        if (t.startsWith("{")) {
+            try {
+                return mapper.readValue(t, Constraints.class);
+            } catch (Exception ignored) {
+                // fall back to reading it as text
+            }
+        }
+        String lower = t.toLowerCase(Locale.ROOT);
+        return new Constraints(
+                number(MAX_CHARS, lower),
+                lower.contains("no emoji") ? Boolean.FALSE : null,
+                lower.contains("no line break") ? Boolean.FALSE : null,
+                number(MAX_PARAGRAPHS, lower),
+                number(MAX_HASHTAGS, lower)
+        );
+    }
+
+    /**
+     * True when fitting the text into maxChars would cut more than a fifth of it, and the room left
+     * for the body is large enough to rewrite into.
+     */
+    public static boolean needsRewrite(String text, List<String> hashtags, Constraints c){
+        int budget = bodyBudget(text, hashtags, c);
+        return budget >= MIN_REWRITE_CHARS
+                && countChars(stripTrailingHashtags(normalize(text, c))) > budget / (1 - MAX_TRUNCATION);
+    }
+
+    /** Characters left for the body once the hashtag line {@link #pack} will append is taken off maxChars. */
+    public static int bodyBudget(String text, List<String> hashtags, Constraints c){
+        String body = normalize(text, c);
+        return c.maxChars() - countChars(tagsLine(mergeHashtags(body, hashtags, c.hashtagsMax(), new ArrayList<>())));
+    }
+
+    public static PackageOutput pack(String text, List<String> hashtags, String imagePrompt, Constraints c){
+        List<String> warnings = new ArrayList<>();
+        String body = normalize(text, c);
+        List<String> tags = mergeHashtags(body, hashtags, c.hashtagsMax(), warnings);
+        body = stripTrailingHashtags(body);
+        body = limitParagraphs(body, c.paragraphsMax(), c.useLineBreaks(), warnings);
+
+        String tagsLine = tagsLine(tags);
+        int budget = c.maxChars() - countChars(tagsLine);
+        if (countChars(body) > budget) {
+            body = truncate(body, Math.max(0, budget));
+            warnings.add("Text truncated to fit maxChars=" + c.maxChars());
+        }
+
+        if (tags.size() < MIN_HASHTAGS) warnings.add("Only " + tags.size() + " hashtag(s); 3-5 recommended");
+        if (body.contains("http://") || body.contains("https://")) warnings.add("Links in the body reduce reach; move them to the first comment");
+
+        String finalText = tags.isEmpty() ? body : body + tagsLine;
+        return new PackageOutput(finalText, countChars(finalText), tags, imagePrompt, warnings);
+    }
+
+    // CRLF/CR → LF, no trailing spaces, at most one blank line between paragraphs; optional emoji removal
+    static String normalize(String text, Constraints c){
+        boolean stripped = Boolean.FALSE.equals(c.useEmojis());
+        String s = stripped ? stripEmojis(text) : text;
+        var sb = new StringBuilder(s.length());
+        int newlines = 0;
+        boolean lineStart = true;
+        for (int i = 0; i < s.length(); i++) {
+            char ch = s.charAt(i);
+            if (ch == '\r') {
+                if (i + 1 < s.length() && s.charAt(i + 1) == '\n') continue;
+                ch = '\n';
+            }
+            if (ch == '\n') {
+                trimTrailingSpaces(sb);
+                if (sb.length() > 0 && newlines < 2) sb.append('\n');
+                newlines++;
+                lineStart = true;
+            } else if (ch == ' ' || ch == '\t') {
+                if (!lineStart && sb.length() > 0 && sb.charAt(sb.length() - 1) != ' ') sb.append(' ');
+            } else {
+                // a stripped emoji can leave "word ." behind
+                if (stripped && isClosingPunct(ch) && sb.length() > 0 && sb.charAt(sb.length() - 1) == ' ') sb.setLength(sb.length() - 1);
+                sb.append(ch);
+                newlines = 0;
+                lineStart = false;
+            }
+        }
+        trimTrailingSpaces(sb);
+        while (sb.length() > 0 && sb.charAt(sb.length() - 1) == '\n') sb.setLength(sb.length() - 1);
+        return sb.toString();
+    }
+
+    /**
+     * Removes emoji (pictographs with emoji presentation or a VS16, flags, keycaps) together with
+     * their joiners and modifiers, leaving text symbols such as © or ™ alone.
+     */
+    static String stripEmojis(String s){
+        var sb = new StringBuilder(s.length());
+        boolean inEmoji = false;
+        for (int i = 0; i < s.length(); ) {
+            int cp = s.codePointAt(i);
+            int len = Character.charCount(cp);
+            int next = i + len < s.length() ? s.codePointAt(i + len) : -1;
+
+            boolean emoji = (Character.isExtendedPictographic(cp) && (Character.isEmojiPresentation(cp) || next == 0xFE0F))
+                    || (cp >= 0x1F1E6 && cp <= 0x1F1FF)                       // regional indicators (flags)
+                    || (next == 0xFE0F && i + len + 1 < s.length() && s.charAt(i + len + 1) == '\u20E3') // keycaps
+                    || (cp == 0x20E3);
+            boolean attached = inEmoji && (cp == 0x200D || cp == 0xFE0F || Character.isEmojiModifier(cp)
+                    || (cp >= 0xE0020 && cp <= 0xE007F));
+
+            if (emoji || attached) {
+                inEmoji = true;
+            } else {
+                inEmoji = false;
+                sb.appendCodePoint(cp);
+            }
+            i += len;
+        }
+        return sb.toString();
+    }
+
+    // Input tags first, then tags found in a trailing hashtag line of the text; case-insensitive dedupe.
+    static List<String> mergeHashtags(String body, List<String> hashtags, int max, List<String> warnings){
+        Map<String, String> unique = new LinkedHashMap<>();
+        if (hashtags != null) {
+            for (String h : hashtags) addTag(unique, h);
+        }
+        String trailing = body.substring(trailingHashtagsStart(body));
+        for (String h : trailing.split("\\s+")) addTag(unique, h);
+
+        List<String> tags = new ArrayList<>(unique.values());
+        if (tags.size() > max) {
+            warnings.add("Dropped " + (tags.size() - max) + " hashtag(s) over hashtagsMax=" + max);
+            tags = new ArrayList<>(tags.subList(0, max));
+        }
+        return tags;
+    }
+
+    private static void addTag(Map<String, String> unique, String raw){
+        if (raw == null) return;
+        var tag = new StringBuilder("#");
+        raw.strip().codePoints().filter(Character::isLetterOrDigit).forEach(tag::appendCodePoint);
+        if (tag.length() > 1) unique.putIfAbsent(tag.toString().toLowerCase(Locale.ROOT), tag.toString());
+    }
+
+    static String stripTrailingHashtags(String body){
+        int start = trailingHashtagsStart(body);
+        return start == body.length() ? body : body.substring(0, start).stripTrailing();
+    }
+
+    // Start of the trailing block of hashtag-only lines (blank lines in between allowed), or body.length().
+    private static int trailingHashtagsStart(String body){
+        int start = body.length();
+        int end = body.length();
+        while (end > 0) {
+            int lineStart = body.lastIndexOf('\n', end - 1) + 1;
+            String line = body.substring(lineStart, end).strip();
+            if (!line.isEmpty()) {
+                if (!isHashtagLine(line)) break;
+                start = lineStart;
+            }
+            end = Math.max(0, lineStart - 1);
+        }
+        return start;
+    }
+
+    private static boolean isHashtagLine(String line){
+        if (line.isEmpty()) return false;
+        for (String w : line.split("\\s+")) {
+            if (!w.startsWith("#") || w.length() < 2) return false;
+        }
+        return true;
+    }
+
+    private static String tagsLine(List<String> tags){
+        return tags.isEmpty() ? "" : "\n\n" + String.join(" ", tags);
+    }
+
+    private static String limitParagraphs(String body, int max, boolean lineBreaks, List<String> warnings){
+        if (!lineBreaks) return body.replace("\n\n", " ").replace('\n', ' ');
+        String[] paragraphs = body.split("\n\n");
+        if (paragraphs.length <= max) return body;
+
+        warnings.add("Merged " + (paragraphs.length - max) + " paragraph(s) over paragraphsMax=" + max);
+        var sb = new StringBuilder(body.length());
+        for (int i = 0; i < paragraphs.length; i++) {
+            if (i > 0) sb.append(i < max ? "\n\n" : " ");
+            sb.append(i < max ? paragraphs[i] : paragraphs[i].replace('\n', ' '));
+        }
+        return sb.toString();
+    }
+
+    private static boolean isClosingPunct(char ch){
+        return ch == '.' || ch == ',' || ch == '!' || ch == '?' || ch == ':' || ch == ';' || ch == ')';
+    }
+
+    private static void trimTrailingSpaces(StringBuilder sb){
+        while (sb.length() > 0 && sb.charAt(sb.length() - 1) == ' ') sb.setLength(sb.length() - 1);
+    }
+
+    /**
+     * Cuts at the last sentence end that fits; if not even the first sentence fits, at the last
+     * word boundary with an ellipsis. Never splits a grapheme cluster.
+     */
+    static String truncate(String body, int maxChars){
+        int limit = body.offsetByCodePoints(0, Math.min(maxChars, countChars(body)));
+
+        BreakIterator sentences = BreakIterator.getSentenceInstance(Locale.ROOT);
+        sentences.setText(body);
+        int cut = sentences.preceding(limit + 1);
+        if (cut > 0 && cut != BreakIterator.DONE) return body.substring(0, cut).stripTrailing();
+
+        int room = body.offsetByCodePoints(0, Math.max(0, Math.min(maxChars, countChars(body)) - 1));
+        BreakIterator words = BreakIterator.getWordInstance(Locale.ROOT);
+        words.setText(body);
+        cut = words.preceding(room + 1);
+        if (cut <= 0 || cut == BreakIterator.DONE) {
+            BreakIterator chars = BreakIterator.getCharacterInstance(Locale.ROOT);
+            chars.setText(body);
+            cut = chars.preceding(room + 1);
+        }
+        return cut <= 0 ? "" : body.substring(0, cut).stripTrailing() + "…";
+    }
+
+    private static Integer number(Pattern p, String text){
+        Matcher m = p.matcher(text);
+        return m.find() ? Integer.valueOf(m.group(1)) : null;
+    }
 }
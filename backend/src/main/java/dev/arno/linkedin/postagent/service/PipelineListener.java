@@ -0,0 +1,18 @@
+package dev.arno.linkedin.postagent.service;
+
+/**
+ * Observes a running pipeline. Callbacks may arrive concurrently from forked stages.
+ */
+public interface PipelineListener {
+
+    PipelineListener NONE = new PipelineListener() {};
+
+    /** A content delta produced by a streaming stage. */
+    default void token(String stage, String delta) {}
+
+    /** A stage finished; {@code result} is the stage's output. */
+    default void stageCompleted(String stage, Object result, long millis) {}
+
+    /** A stage threw, or was interrupted because a sibling failed. */
+    default void stageFailed(String stage, Throwable error, long millis) {}
+}
@@ -0,0 +1,38 @@
+package dev.arno.linkedin.postagent.service;
+
+import dev.arno.linkedin.postagent.llm.LlmStatsSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Rendered prompt sizes per {@link PromptTemplate}, e.g. {@code full-draft.avgChars}, and the
+ * binding of the templates' {@code llm.prompt.chars} summaries to the application's registry.
+ */
+@Component
+public class PromptStats implements LlmStatsSource, MeterBinder {
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        PromptTemplate.bindAll(registry);
+    }
+
+    @Override
+    public String statsName() {
+        return "prompts";
+    }
+
+    @Override
+    public Map<String, Number> stats() {
+        var stats = new LinkedHashMap<String, Number>();
+        for (PromptTemplate t : PromptTemplate.all()) {
+            stats.put(t.name() + ".renders", t.renders());
+            stats.put(t.name() + ".avgChars", t.avgChars());
+            stats.put(t.name() + ".maxChars", t.maxChars());
+        }
+        return stats;
+    }
+}
@@ -0,0 +1,128 @@
+package dev.arno.linkedin.postagent.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A prompt text block with {@code %s}/{@code %d} slots ({@code %%} for a literal percent), split
+ * into literal parts once when the class loads. Rendering appends parts and arguments into a
+ * builder sized up front, so there is no format-string parsing or regrowing per call. The output
+ * is identical to {@link String#formatted} for these two conversions, which keeps cache keys stable.
+ * Sizes also go to an {@code llm.prompt.chars{template}} summary once {@link PromptStats} has bound
+ * the templates to the application's registry.
+ */
+public final class PromptTemplate {
+
+    private static final List<PromptTemplate> ALL = Collections.synchronizedList(new ArrayList<>());
+    // templates are static constants, compiled before or after the registry exists
+    private static volatile MeterRegistry registry;
+
+    private final String name;
+    private final String[] parts; // parts.length == slots + 1
+    private final int literalLength;
+
+    private final LongAdder renders = new LongAdder();
+    private final LongAdder renderedChars = new LongAdder();
+    private final LongAccumulator maxChars = new LongAccumulator(Math::max, 0);
+    private volatile DistributionSummary summary;
+
+    private PromptTemplate(String name, String[] parts) {
+        this.name = name;
+        this.parts = parts;
+        int len = 0;
+        for (String p : parts) len += p.length();
+        this.literalLength = len;
+    }
+
+    public static PromptTemplate compile(String name, String template) {
+        List<String> parts = new ArrayList<>();
+        var sb = new StringBuilder();
+        for (int i = 0; i < template.length(); i++) {
+            char c = template.charAt(i);
+            if (c != '%') {
+                sb.append(c);
+                continue;
+            }
+            char next = i + 1 < template.length() ? template.charAt(i + 1) : 0;
+            switch (next) {
+                case '%' -> sb.append('%');
+                case 's', 'd' -> {
+                    parts.add(sb.toString());
+                    sb.setLength(0);
+                }
+                default -> throw new IllegalArgumentException("Unsupported placeholder %" + next + " in template " + name);
+            }
+            i++;
+        }
+        parts.add(sb.toString());
+        var t = new PromptTemplate(name, parts.toArray(String[]::new));
+        ALL.add(t);
+        MeterRegistry r = registry;
+        if (r != null) t.bindTo(r);
+        return t;
+    }
+
+    /** Binds every template compiled so far, and every one compiled later, to {@code registry}. */
+    static void bindAll(MeterRegistry registry) {
+        PromptTemplate.registry = registry;
+        for (PromptTemplate t : all()) t.bindTo(registry);
+    }
+
+    private void bindTo(MeterRegistry registry) {
+        summary = DistributionSummary.builder("llm.prompt.chars").tag("template", name).register(registry);
+    }
+
+    public String render(Object... args) {
+        if (args.length != parts.length - 1) {
+            throw new IllegalArgumentException("Template " + name + " takes " + (parts.length - 1) + " arguments, got " + args.length);
+        }
+        String[] values = new String[args.length];
+        int size = literalLength;
+        for (int i = 0; i < args.length; i++) {
+            values[i] = String.valueOf(args[i]);
+            size += values[i].length();
+        }
+
+        var sb = new StringBuilder(size);
+        for (int i = 0; i < values.length; i++) {
+            sb.append(parts[i]).append(values[i]);
+        }
+        sb.append(parts[values.length]);
+
+        renders.increment();
+        renderedChars.add(size);
+        maxChars.accumulate(size);
+        DistributionSummary s = summary;
+        if (s != null) s.record(size);
+        return sb.toString();
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public long renders() {
+        return renders.sum();
+    }
+
+    public long avgChars() {
+        long n = renders.sum();
+        return n == 0 ? 0 : renderedChars.sum() / n;
+    }
+
+    public long maxChars() {
+        return maxChars.get();
+    }
+
+    static List<PromptTemplate> all() {
+        synchronized (ALL) {
+            return List.copyOf(ALL);
+        }
+    }
+}
@@ -1,12 +1,23 @@
 package dev.arno.linkedin.postagent.service;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.json.JsonMapper;
 import dev.arno.linkedin.postagent.dto.*;
+import dev.arno.linkedin.postagent.llm.LlmMessage;
 
 import java.util.List;
 
+/**
+ * Chat messages for every LLM call. Each call is a system message that is a constant per endpoint
+ * ({@link #SYSTEM}, then the endpoint's instructions and output format), followed by one user
+ * message with only the request's data. Providers cache identical prompt prefixes, so keeping all
+ * static text byte-for-byte the same and in front lets repeat calls skip most of the prefill.
+ */
 public class Prompts {
+    // thread-safe and reused; building an ObjectMapper per call showed up in allocation profiles
+    private static final ObjectWriter JSON = JsonMapper.builder().build().writer();
+
     public static final String SYSTEM = """
   You write high-signal LinkedIn posts for software audiences about project management, test automation, and DevOps.
   Constraints: ≤2200 chars (prefer ≤1200), 3–5 concise hashtags, line breaks, minimal emojis unless tone=friendly,
@@ -15,103 +26,245 @@ public class Prompts {
   Audience: beginner, intermediate, advanced, executive. Always return clean, publish-ready text.
   """;
 
-    public static String ideasPrompt(IdeasInput in){
+    private static final String IDEAS_SYSTEM = system("""
+      Task: generate concise post ideas for the topic and audience in the user message.
+      Generate exactly the requested number of ideas. Each idea returns a title and a 1-line hook.
+      Use the seed keywords if given and stay away from anything listed under "Avoid".
+      Return JSON: { "ideas": [{ "id": "slug", "title": "...", "hook": "..." }] }
+      Only return JSON.
+      """);
+
+    private static final PromptTemplate IDEAS = PromptTemplate.compile("ideas", """
+      Number of ideas: %d
+      Topic: %s
+      Audience: %s
+      %s
+      %s
+      """);
+
+    private static final String OUTLINE_SYSTEM = system("""
+      Task: outline a LinkedIn post for the idea in the user message, in the given format.
+      Cover the key points if given.
+      Return JSON: { "outline": { "hook": "...", "bullets": ["..."], "cta": "ask_opinion|invite_dm|link_in_first_comment|follow_me|read_more_thread" } }
+      """);
+
+    private static final PromptTemplate OUTLINE = PromptTemplate.compile("outline", """
+      Idea: "%s"
+      Format: %s
+      %s
+      """);
+
+    private static final String DRAFT_SYSTEM = system("""
+      Task: write a LinkedIn post on the topic and in the tone given in the user message,
+      within its constraints, from its outline or brief.
+      Return only the post text (no JSON).
+      """);
+
+    private static final PromptTemplate DRAFT = PromptTemplate.compile("draft", """
+      Topic: %s
+      Tone: %s
+      Constraints: %s
+      %s
+      """);
+
+    private static final String POLISH_SYSTEM = system("""
+      Task: polish the LinkedIn post in the user message. Tighten it by the given percentage while preserving meaning,
+      following the rules given with it.
+      Return only the polished text.
+      """);
+
+    private static final PromptTemplate POLISH = PromptTemplate.compile("polish", """
+      Tighten by: ~%d%%
+      Rules: %s
+
+      Draft:
+      \"%s\"
+      """);
+
+    private static final String HASHTAGS_SYSTEM = system("""
+      Task: suggest concise hashtags for the post in the user message, no more than the given maximum,
+      following the given strategy (mix broad + niche; max 5).
+      Return JSON: { "hashtags": ["#..."], "rationale": "..." }
+      """);
+
+    private static final PromptTemplate HASHTAGS = PromptTemplate.compile("hashtags", """
+      Max hashtags: %d
+      Strategy: %s
+
+      Post:
+      \"%s\"
+      """);
+
+    private static final String IMAGE_SYSTEM = system("""
+      Task: propose 3-6 image prompt ideas, in the given style, to pair with the LinkedIn post in the user message.
+      Return JSON: { "prompts": ["..."] }
+      """);
+
+    private static final PromptTemplate IMAGE = PromptTemplate.compile("image", """
+      Style: %s
+
+      Post:
+      \"%s\"
+      """);
+
+    private static final String SHORTEN_SYSTEM = system("""
+      Task: shorten the LinkedIn post in the user message to at most the given number of characters.
+      Keep the hook, the key points and the CTA; keep its voice and line breaks.
+      Do not add hashtags. Return only the shortened text.
+      """);
+
+    private static final PromptTemplate SHORTEN = PromptTemplate.compile("shorten", """
+      Max characters: %d
+
+      Text:
+      \"%s\"
+      """);
+
+    private static final String FULL_IDEAS_SYSTEM = system("""
+      Task: LinkedIn post ideas for the topic, audience and goal in the user message.
+      Return a JSON array of short title strings, as many as requested.
+      """);
+
+    private static final PromptTemplate FULL_IDEAS = PromptTemplate.compile("full-ideas", """
+      Topic: %s
+      Audience: %s
+      Goal: %s
+      """);
+
+    private static final PromptTemplate FULL_IDEAS_N = PromptTemplate.compile("full-ideas-n", """
+      Number of ideas: %d (all distinct)
+      Topic: %s
+      Audience: %s
+      Goal: %s
+      """);
+
+    private static final String FULL_OUTLINE_SYSTEM = system("""
+      Task: create a concise outline for a LinkedIn post with the title in the user message,
+      for its audience and tone.
+      Return JSON: { "outline": "..." }
+      """);
+
+    private static final PromptTemplate FULL_OUTLINE = PromptTemplate.compile("full-outline", """
+      Title: "%s"
+      Audience: %s
+      Tone: %s
+      """);
+
+    private static final String FULL_DRAFT_SYSTEM = system("""
+      Task: write a LinkedIn post from the outline in the user message, for its audience and tone,
+      within its constraints.
+      Return ONLY the post text, no JSON.
+      """);
+
+    private static final PromptTemplate FULL_DRAFT = PromptTemplate.compile("full-draft", """
+      Audience: %s
+      Tone: %s
+      Constraints: %s
+
+      Outline:
+      %s
+      """);
+
+    private static final String FULL_HASHTAGS_SYSTEM = system("""
+      Task: generate high-quality hashtags for the LinkedIn post in the user message, no more than the given maximum.
+      Return JSON: { "hashtags": ["#tag1", "#tag2", ...] }
+      """);
+
+    private static final PromptTemplate FULL_HASHTAGS = PromptTemplate.compile("full-hashtags", """
+      Max hashtags: %d
+
+      Post:
+      %s
+      """);
+
+    private static final String FULL_IMAGE_SYSTEM = system("""
+      Task: create a concise prompt for an illustration or header image
+      that would go well with the LinkedIn post in the user message.
+      Return JSON: { "imagePrompt": "..." }
+      """);
+
+    private static final PromptTemplate FULL_IMAGE = PromptTemplate.compile("full-image", """
+      Post:
+      %s
+      """);
+
+    // the shared system text, then the endpoint's own; built once so every call sends the same bytes
+    private static String system(String instructions) {
+        return SYSTEM + "\n" + instructions;
+    }
+
+    private static List<LlmMessage> messages(String system, String input) {
+        return List.of(LlmMessage.system(system), LlmMessage.user(input));
+    }
+
+    public static List<LlmMessage> ideasMessages(IdeasInput in){
         String seeds = (in.seedKeywords()!=null && !in.seedKeywords().isEmpty()) ? "Seed keywords: " + String.join(", ", in.seedKeywords()) : "";
         String avoid = (in.avoid()!=null && !in.avoid().isEmpty()) ? "Avoid: " + String.join(", ", in.avoid()) : "";
         String level = (in.audienceLevel()==null) ? "intermediate" : in.audienceLevel().name();
-        return """
-      Generate %d concise post ideas for topic "%s" for %s audience.
-      Each idea returns a title and a 1-line hook.
-      %s %s
-      Return as a JSON array of objects: [{ "id": "slug", "title": "...", "hook": "..." }].
-      Only return JSON.
-      """.formatted(in.nIdeas(), in.topic().name(), level, seeds, avoid);
+        return messages(IDEAS_SYSTEM, IDEAS.render(in.nIdeas(), in.topic().name(), level, seeds, avoid));
     }
 
-    public static String outlinePrompt(String ideaTitle, PostFormat format, List<String> keyPoints, AudienceLevel level){
+    public static List<LlmMessage> outlineMessages(String ideaTitle, PostFormat format, List<String> keyPoints, AudienceLevel level){
         String keys = (keyPoints!=null && !keyPoints.isEmpty()) ? "Key points: " + String.join(" | ", keyPoints) : "";
-        return """
-      Outline a LinkedIn post based on idea "%s" in format %s.
-      %s
-      Return JSON: { "outline": { "hook": "...", "bullets": ["..."], "cta": "ask_opinion|invite_dm|link_in_first_comment|follow_me|read_more_thread" } }
-      """.formatted(ideaTitle, format.name(), keys);
+        return messages(OUTLINE_SYSTEM, OUTLINE.render(ideaTitle, format.name(), keys));
     }
 
-    public static String draftPrompt(OutlineOutput outline, String brief, Topic topic, Tone tone, String c){
+    public static List<LlmMessage> draftMessages(OutlineOutput outline, String brief, Topic topic, Tone tone, String c){
         String base = (outline!=null) ? ("Use this outline:\n" + toJson(outline)) : ("Brief:\n" + brief);
-        return """
-      Write a LinkedIn post. Topic: %s. Tone: %s.
-      Constraints: %s
-      %s
-      Return only the post text (no JSON).
-      """.formatted(
+        return messages(DRAFT_SYSTEM, DRAFT.render(
                 topic==null ? "automation" : topic.name(),
                 tone==null ? "practical" : tone.name(),
                 toJson(c),
                 base
-        );
+        ));
     }
 
-    public static String polishPrompt(String draft, int tighten, List<String> rules){
+    public static List<LlmMessage> polishMessages(String draft, int tighten, List<String> rules){
         String r = (rules==null || rules.isEmpty())
                 ? "front-load value, remove filler, shorten sentences, active voice"
                 : String.join(", ", rules);
-        return """
-      Polish this LinkedIn post. Tighten by ~%d%% while preserving meaning.
-      Rules: %s
+        return messages(POLISH_SYSTEM, POLISH.render(tighten, r, draft));
+    }
 
-      Return JSON:
-      { "polished": "...", "charCount": <int>, "diffs": [{ "from": "...", "to": "...", "rationale": "..." }] }
+    public static List<LlmMessage> hashtagsMessages(String text, int maxTags, String strategy){
+        return messages(HASHTAGS_SYSTEM, HASHTAGS.render(maxTags, strategy, text));
+    }
 
-      Draft:
-      \"%s\"
-      """.formatted(tighten, r, draft);
+    public static List<LlmMessage> imageMessages(String text, String style){
+        return messages(IMAGE_SYSTEM, IMAGE.render(style, text));
     }
 
-    public static String hashtagsPrompt(String text, int maxTags, String strategy){
-        return """
-      Suggest up to %d concise hashtags for the post below.
-      Strategy: %s (mix broad + niche; max 5).
-      Return JSON: { "hashtags": ["#..."], "rationale": "..." }
+    public static List<LlmMessage> shortenMessages(String text, int maxChars){
+        return messages(SHORTEN_SYSTEM, SHORTEN.render(maxChars, text));
+    }
 
-      Post:
-      \"%s\"
-      """.formatted(maxTags, strategy, text);
+    public static List<LlmMessage> fullIdeasMessages(FullPostInput in){
+        return messages(FULL_IDEAS_SYSTEM, FULL_IDEAS.render(in.topic(), in.audience(), in.goal()));
     }
 
-    public static String imagePrompt(String text, String style){
-        return """
-      Propose 3-6 %s image prompt ideas to pair with the LinkedIn post.
-      Return JSON: { "prompts": ["..."] }
+    public static List<LlmMessage> fullIdeasMessages(FullPostInput in, int count){
+        return messages(FULL_IDEAS_SYSTEM, FULL_IDEAS_N.render(count, in.topic(), in.audience(), in.goal()));
+    }
 
-      Post:
-      \"%s\"
-      """.formatted(style, text);
+    public static List<LlmMessage> fullOutlineMessages(String ideaTitle, String audience, String tone){
+        return messages(FULL_OUTLINE_SYSTEM, FULL_OUTLINE.render(ideaTitle, audience, tone));
     }
 
-    public static String packagePrompt(String text, List<String> hashtags, String imagePrompt, String c){
-        return """
-      Package the final LinkedIn post. Enforce constraints: %s
-      Ensure final text ≤ constraints.maxChars (default 2200), uses line breaks, and includes hashtags at the end (3–5 total).
-      Return JSON: {
-        "finalText": "...",
-        "finalCharCount": <int>,
-        "hashtags": ["#..."],
-        "imagePrompt": "...",
-        "warnings": []
-      }
+    public static List<LlmMessage> fullDraftMessages(String outline, String audience, String tone, String constraints){
+        return messages(FULL_DRAFT_SYSTEM, FULL_DRAFT.render(audience, tone, constraints == null ? "" : constraints, outline));
+    }
 
-      Text:
-      \"%s\"
+    public static List<LlmMessage> fullHashtagsMessages(String draft, int maxTags){
+        return messages(FULL_HASHTAGS_SYSTEM, FULL_HASHTAGS.render(maxTags, draft));
+    }
 
-      Hashtags: %s
-      Image prompt: %s
-      """.formatted(toJson(c), text, (hashtags==null? "" : String.join(" ", hashtags)), imagePrompt==null? "" : imagePrompt);
+    public static List<LlmMessage> fullImageMessages(String draft){
+        return messages(FULL_IMAGE_SYSTEM, FULL_IMAGE.render(draft));
     }
 
     private static String toJson(Object o){
         try {
-            return new ObjectMapper().writeValueAsString(o);
+            return JSON.writeValueAsString(o);
         } catch (JsonProcessingException e) {
             return "{}";
         }
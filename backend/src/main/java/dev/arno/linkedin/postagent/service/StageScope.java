@@ -0,0 +1,105 @@
+package dev.arno.linkedin.postagent.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs the stages of one pipeline execution. Critical-path stages run on the caller thread via
+ * {@link #run}, independent branches are forked onto virtual threads via {@link #fork} and awaited
+ * with {@link #join}. The first failing fork cancels its siblings (shutdown-on-failure), and every
+ * stage, failed or not, records its wall time in {@link #timings()} and its outcome in
+ * {@link #outcomes()}, and is reported to the {@link PipelineListener}.
+ */
+public final class StageScope implements AutoCloseable {
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<String, Long> timings = Collections.synchronizedMap(new LinkedHashMap<>());
+    private final Map<String, String> outcomes = Collections.synchronizedMap(new LinkedHashMap<>());
+    private final List<CompletableFuture<?>> forks = new ArrayList<>();
+    private final CompletableFuture<Void> firstFailure = new CompletableFuture<>();
+    private final PipelineListener listener;
+
+    public StageScope() {
+        this(PipelineListener.NONE);
+    }
+
+    public StageScope(PipelineListener listener) {
+        this.listener = listener;
+    }
+
+    public <T> T run(String stage, Callable<T> body) throws Exception {
+        long start = System.nanoTime();
+        T result = null;
+        Throwable failure = null;
+        try {
+            result = body.call();
+            return result;
+        } catch (Throwable e) {
+            failure = e;
+            throw e;
+        } finally {
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            timings.put(stage, millis);
+            outcomes.put(stage, failure == null ? "success" : failure instanceof InterruptedException ? "cancelled" : "error");
+            if (failure == null) listener.stageCompleted(stage, result, millis);
+            else listener.stageFailed(stage, failure, millis);
+        }
+    }
+
+    public <T> Future<T> fork(String stage, Callable<T> body) {
+        var result = new CompletableFuture<T>();
+        forks.add(result);
+        executor.submit(() -> {
+            try {
+                result.complete(run(stage, body));
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+                firstFailure.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+    /** Waits for all forks; fails as soon as any fork fails and interrupts the rest. */
+    public void join() throws Exception {
+        var all = CompletableFuture.allOf(forks.toArray(CompletableFuture[]::new));
+        try {
+            CompletableFuture.anyOf(all, firstFailure).get();
+        } catch (ExecutionException e) {
+            executor.shutdownNow();
+            if (e.getCause() instanceof Exception cause) throw cause;
+            throw e;
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            throw e;
+        }
+    }
+
+    public Map<String, Long> timings() {
+        synchronized (timings) {
+            return new LinkedHashMap<>(timings);
+        }
+    }
+
+    /** "success", "error" or "cancelled" per stage that ran. */
+    public Map<String, String> outcomes() {
+        synchronized (outcomes) {
+            return new LinkedHashMap<>(outcomes);
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        executor.close();
+    }
+}
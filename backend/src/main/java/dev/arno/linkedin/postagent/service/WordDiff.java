@@ -0,0 +1,149 @@
+package dev.arno.linkedin.postagent.service;
+
+import dev.arno.linkedin.postagent.dto.DiffItem;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Word-level diff (Myers, O(ND) time, linear space) between a draft and its polished version.
+ * Words are runs of non-whitespace; whitespace only separates them, so reflowed lines don't show up
+ * as edits.
+ * Adjacent changes are reported as one {@link DiffItem} using the original spacing of each side.
+ */
+public class WordDiff {
+
+    private WordDiff(){}
+
+    public static List<DiffItem> diff(String from, String to){
+        List<int[]> a = words(from);
+        List<int[]> b = words(to);
+        Map<String, Integer> dict = new HashMap<>();
+        int[] x = ids(from, a, dict);
+        int[] y = ids(to, b, dict);
+
+        boolean[] keptX = new boolean[x.length];
+        boolean[] keptY = new boolean[y.length];
+        myers(x, 0, x.length, y, 0, y.length, keptX, keptY);
+
+        List<DiffItem> out = new ArrayList<>();
+        int i = 0, j = 0;
+        while (i < x.length || j < y.length) {
+            if (i < x.length && j < y.length && keptX[i] && keptY[j]) { i++; j++; continue; }
+            int i0 = i, j0 = j;
+            while (i < x.length && !keptX[i]) i++;
+            while (j < y.length && !keptY[j]) j++;
+            String removed = span(from, a, i0, i);
+            String added = span(to, b, j0, j);
+            out.add(new DiffItem(removed, added, rationale(removed, added)));
+        }
+        return out;
+    }
+
+    // [start, end) offsets of each word
+    private static List<int[]> words(String s){
+        List<int[]> w = new ArrayList<>();
+        int i = 0, n = s.length();
+        while (i < n) {
+            while (i < n && Character.isWhitespace(s.charAt(i))) i++;
+            int st = i;
+            while (i < n && !Character.isWhitespace(s.charAt(i))) i++;
+            if (i > st) w.add(new int[]{st, i});
+        }
+        return w;
+    }
+
+    // words → ints shared by both sides, so the diff compares ints instead of strings
+    private static int[] ids(String s, List<int[]> words, Map<String, Integer> dict){
+        int[] out = new int[words.size()];
+        for (int k = 0; k < out.length; k++) {
+            out[k] = dict.computeIfAbsent(s.substring(words.get(k)[0], words.get(k)[1]), w -> dict.size());
+        }
+        return out;
+    }
+
+    /**
+     * Linear-space Myers: finds a point on an optimal edit path by running the greedy search from
+     * both ends until they meet, then solves each half on its own. Marks the words of the longest
+     * common subsequence of {@code x[x0, x1)} and {@code y[y0, y1)}.
+     */
+    private static void myers(int[] x, int x0, int x1, int[] y, int y0, int y1, boolean[] keptX, boolean[] keptY){
+        // common prefix/suffix are cheap and usually most of a polish
+        while (x0 < x1 && y0 < y1 && x[x0] == y[y0]) { keptX[x0++] = true; keptY[y0++] = true; }
+        while (x1 > x0 && y1 > y0 && x[x1 - 1] == y[y1 - 1]) { keptX[--x1] = true; keptY[--y1] = true; }
+        int n = x1 - x0, m = y1 - y0;
+        if (n == 0 || m == 0) return;
+
+        int maxD = (n + m + 1) / 2;
+        int off = maxD;
+        int[] vf = new int[2 * maxD + 2]; // furthest x on each diagonal, searching forward from (x0, y0)
+        int[] vb = new int[2 * maxD + 2]; // same, searching backward from (x1, y1)
+        Arrays.fill(vf, -1);
+        Arrays.fill(vb, -1);
+        vf[off + 1] = 0;
+        vb[off + 1] = 0;
+        int delta = n - m;
+        boolean oddDelta = (delta & 1) != 0; // the forward search is the one that sees the overlap
+        // diagonals that ran off the edit graph, trimmed from both ends of the next round
+        int fStart = 0, fEnd = 0, bStart = 0, bEnd = 0;
+
+        for (int d = 0; d < maxD; d++) {
+            for (int k = -d + fStart; k <= d - fEnd; k += 2) {
+                int i = (k == -d || (k != d && vf[off + k - 1] < vf[off + k + 1])) ? vf[off + k + 1] : vf[off + k - 1] + 1;
+                int j = i - k;
+                while (i < n && j < m && x[x0 + i] == y[y0 + j]) { i++; j++; }
+                vf[off + k] = i;
+                if (i > n) fEnd += 2;
+                else if (j > m) fStart += 2;
+                else if (oddDelta) {
+                    int kb = off + delta - k;
+                    if (kb >= 0 && kb < vb.length && vb[kb] != -1 && i >= n - vb[kb]) {
+                        split(x, x0, x1, y, y0, y1, i, j, keptX, keptY);
+                        return;
+                    }
+                }
+            }
+            for (int k = -d + bStart; k <= d - bEnd; k += 2) {
+                int i = (k == -d || (k != d && vb[off + k - 1] < vb[off + k + 1])) ? vb[off + k + 1] : vb[off + k - 1] + 1;
+                int j = i - k;
+                while (i < n && j < m && x[x1 - 1 - i] == y[y1 - 1 - j]) { i++; j++; }
+                vb[off + k] = i;
+                if (i > n) bEnd += 2;
+                else if (j > m) bStart += 2;
+                else if (!oddDelta) {
+                    int kf = off + delta - k;
+                    if (kf >= 0 && kf < vf.length && vf[kf] != -1) {
+                        int fi = vf[kf];
+                        int fj = fi - (kf - off);
+                        if (fi >= n - i) {
+                            split(x, x0, x1, y, y0, y1, fi, fj, keptX, keptY);
+                            return;
+                        }
+                    }
+                }
+            }
+        }
+        // the searches never met: nothing in common
+    }
+
+    // (i, j) lies on an optimal path, so each side has fewer edits than the whole
+    private static void split(int[] x, int x0, int x1, int[] y, int y0, int y1, int i, int j, boolean[] keptX, boolean[] keptY){
+        myers(x, x0, x0 + i, y, y0, y0 + j, keptX, keptY);
+        myers(x, x0 + i, x1, y, y0 + j, y1, keptX, keptY);
+    }
+
+    private static String span(String s, List<int[]> w, int from, int to){
+        return from == to ? "" : s.substring(w.get(from)[0], w.get(to - 1)[1]);
+    }
+
+    private static String rationale(String removed, String added){
+        if (added.isEmpty()) return "Removed";
+        if (removed.isEmpty()) return "Added";
+        int saved = PackagingService.countChars(removed) - PackagingService.countChars(added);
+        if (saved > 0) return "Tightened (-" + saved + " chars)";
+        return "Reworded";
+    }
+}
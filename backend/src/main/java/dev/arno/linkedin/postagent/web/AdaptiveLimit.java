@@ -0,0 +1,85 @@
+package dev.arno.linkedin.postagent.web;
+
+/**
+ * A concurrency limit that adapts to observed latency (AIMD with a latency gradient): while the
+ * recent latency stays within {@code tolerance} × the long-run latency and the limit is actually
+ * being used, it grows by about one per limit's worth of completions; a failure (5xx/429) or a
+ * latency spike cuts it by {@code backoff}, at most once per recent round-trip so one slow burst
+ * doesn't collapse it.
+ */
+public class AdaptiveLimit {
+
+    private final int min;
+    private final int max;
+    private final double tolerance;
+    private final double backoff;
+
+    private double limit;
+    private int inFlight;
+    private double shortRttMillis;
+    private double longRttMillis;
+    private long lastDecrease;
+
+    private long accepted;
+    private long rejected;
+
+    public AdaptiveLimit(int initial, int min, int max, double tolerance, double backoff) {
+        this.min = Math.max(1, min);
+        this.max = Math.max(this.min, max);
+        this.tolerance = tolerance;
+        this.backoff = backoff;
+        this.limit = Math.max(this.min, Math.min(this.max, initial));
+    }
+
+    /** Takes a slot, or returns false right away when the limit is reached. */
+    public synchronized boolean tryAcquire() {
+        if (inFlight >= (int) limit) {
+            rejected++;
+            return false;
+        }
+        inFlight++;
+        accepted++;
+        return true;
+    }
+
+    public synchronized void release(long rttNanos, boolean failed) {
+        int used = inFlight--;
+        double rtt = rttNanos / 1e6;
+        if (longRttMillis == 0) {
+            shortRttMillis = longRttMillis = rtt;
+        } else {
+            shortRttMillis += 0.2 * (rtt - shortRttMillis);
+            longRttMillis += 0.02 * (rtt - longRttMillis);
+        }
+
+        long now = System.nanoTime();
+        if (failed || shortRttMillis > longRttMillis * tolerance) {
+            if (now - lastDecrease > (long) (shortRttMillis * 1e6)) {
+                limit = Math.max(min, limit * backoff);
+                lastDecrease = now;
+            }
+        } else if (used >= limit / 2) {
+            limit = Math.min(max, limit + 1 / limit);
+        }
+    }
+
+    public synchronized int limit() {
+        return (int) limit;
+    }
+
+    public synchronized int inFlight() {
+        return inFlight;
+    }
+
+    public synchronized long accepted() {
+        return accepted;
+    }
+
+    public synchronized long rejected() {
+        return rejected;
+    }
+
+    public synchronized long latencyMillis() {
+        return Math.round(shortRttMillis);
+    }
+}
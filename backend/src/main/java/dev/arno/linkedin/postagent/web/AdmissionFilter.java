@@ -0,0 +1,134 @@
+package dev.arno.linkedin.postagent.web;
+
+import dev.arno.linkedin.postagent.llm.LlmStatsSource;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Admission control for the generation endpoints. {@code /posts/full*} and {@code /posts/batch}
+ * share one bulkhead, the single-step {@code /posts/*} endpoints another, each with an
+ * {@link AdaptiveLimit}. {@code /posts/package} and {@code /posts/hashtagize} get a third: they
+ * are usually answered locally in well under a millisecond and only sometimes call the LLM, so in
+ * the single-step bulkhead they would drag its long-run latency down and make every real LLM
+ * call look like a spike. A request over the limit gets 503 with {@code Retry-After} at once
+ * instead of waiting behind long generations; everything else (health, jobs, stats, actuator)
+ * is never limited.
+ *
+ * <p>Streaming responses hold their slot until the async request completes.
+ */
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE - 50)
+@ConditionalOnProperty(name = "spring.llm.admission.enabled", havingValue = "true", matchIfMissing = true)
+public class AdmissionFilter extends OncePerRequestFilter implements LlmStatsSource {
+
+    private final AdaptiveLimit full;
+    private final AdaptiveLimit single;
+    private final AdaptiveLimit local;
+    private final long retryAfterSeconds;
+
+    public AdmissionFilter(
+            @Value("${spring.llm.admission.full.initial:8}") int fullInitial,
+            @Value("${spring.llm.admission.full.min:2}") int fullMin,
+            @Value("${spring.llm.admission.full.max:64}") int fullMax,
+            @Value("${spring.llm.admission.single.initial:32}") int singleInitial,
+            @Value("${spring.llm.admission.single.min:4}") int singleMin,
+            @Value("${spring.llm.admission.single.max:256}") int singleMax,
+            @Value("${spring.llm.admission.local.initial:64}") int localInitial,
+            @Value("${spring.llm.admission.local.min:8}") int localMin,
+            @Value("${spring.llm.admission.local.max:512}") int localMax,
+            @Value("${spring.llm.admission.latency-tolerance:2.0}") double tolerance,
+            @Value("${spring.llm.admission.backoff:0.9}") double backoff,
+            @Value("${spring.llm.admission.retry-after:2}") long retryAfterSeconds
+    ) {
+        this.full = new AdaptiveLimit(fullInitial, fullMin, fullMax, tolerance, backoff);
+        this.single = new AdaptiveLimit(singleInitial, singleMin, singleMax, tolerance, backoff);
+        this.local = new AdaptiveLimit(localInitial, localMin, localMax, tolerance, backoff);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return bulkhead(request) == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        AdaptiveLimit limit = bulkhead(request);
+        if (!limit.tryAcquire()) {
+            response.setStatus(503);
+            response.setHeader("Retry-After", String.valueOf(retryAfterSeconds));
+            response.setContentType("application/json");
+            response.getWriter().write("{\"error\":\"Server is at capacity, retry shortly\"}");
+            return;
+        }
+
+        long start = System.nanoTime();
+        var released = new AtomicBoolean();
+        Runnable release = () -> {
+            if (released.compareAndSet(false, true)) {
+                int status = response.getStatus();
+                limit.release(System.nanoTime() - start, status >= 500 || status == 429);
+            }
+        };
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new AsyncListener() {
+                    @Override public void onComplete(AsyncEvent e) { release.run(); }
+                    @Override public void onTimeout(AsyncEvent e) { release.run(); }
+                    @Override public void onError(AsyncEvent e) { release.run(); }
+                    @Override public void onStartAsync(AsyncEvent e) {}
+                });
+            } else {
+                release.run();
+            }
+        }
+    }
+
+    private AdaptiveLimit bulkhead(HttpServletRequest request) {
+        String path = request.getRequestURI();
+        if (!"POST".equals(request.getMethod()) || !path.startsWith("/posts/")) return null;
+        if (path.startsWith("/posts/full") || path.startsWith("/posts/batch")) return full;
+        if (path.equals("/posts/package") || path.equals("/posts/hashtagize")) return local;
+        return single;
+    }
+
+    @Override
+    public String statsName() {
+        return "admission";
+    }
+
+    @Override
+    public Map<String, Number> stats() {
+        var stats = new LinkedHashMap<String, Number>();
+        put(stats, "full", full);
+        put(stats, "single", single);
+        put(stats, "local", local);
+        return stats;
+    }
+
+    private static void put(Map<String, Number> stats, String name, AdaptiveLimit l) {
+        stats.put(name + ".limit", l.limit());
+        stats.put(name + ".inFlight", l.inFlight());
+        stats.put(name + ".accepted", l.accepted());
+        stats.put(name + ".rejected", l.rejected());
+        stats.put(name + ".latencyMillis", l.latencyMillis());
+    }
+}
@@ -0,0 +1,351 @@
+package dev.arno.linkedin.postagent.web;
+
+import dev.arno.linkedin.postagent.llm.LlmStatsSource;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@code Idempotency-Key} support for {@code POST /posts/*}. The first request with a key runs and its
+ * response (status, content type, body) is kept in an {@link IdempotencyStore}; a retry with the same
+ * key and body replays it byte for byte with {@code Idempotent-Replayed: true}, or, while the first is
+ * still running, waits for it instead of starting a second generation. Reusing a key for a different
+ * request is a 422.
+ *
+ * <p>Success and 4xx responses are kept; 5xx, 408, 409, 425 and 429 are not, so a retry after a
+ * transient failure runs again. Nor are responses flagged with {@link #NOT_REPLAYABLE}: streams and
+ * batches report failures in the body of a 200. Streaming responses are teed, not buffered, and stored
+ * when the async request completes. Once the client has gone, the execution still runs to the end and
+ * is stored, since that client is about to retry. Runs before {@link AdmissionFilter}, so a waiting
+ * retry doesn't hold a slot.
+ */
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE - 100)
+@ConditionalOnProperty(name = "spring.llm.idempotency.enabled", havingValue = "true", matchIfMissing = true)
+public class IdempotencyFilter extends OncePerRequestFilter implements LlmStatsSource {
+
+    static final String HEADER = "Idempotency-Key";
+
+    /** Request attribute: the response reports a failure and must not be replayed. */
+    public static final String NOT_REPLAYABLE = IdempotencyFilter.class.getName() + ".NOT_REPLAYABLE";
+
+    private final IdempotencyStore store;
+    private final long maxBody;
+    private final Duration wait;
+
+    private final AtomicLong executed = new AtomicLong();
+    private final AtomicLong replayed = new AtomicLong();
+    private final AtomicLong waited = new AtomicLong();
+    private final AtomicLong mismatched = new AtomicLong();
+
+    public IdempotencyFilter(
+            @Value("${spring.llm.idempotency.max-entries:10000}") int maxEntries,
+            @Value("${spring.llm.idempotency.max-size:64MB}") DataSize maxSize,
+            @Value("${spring.llm.idempotency.max-body:1MB}") DataSize maxBody,
+            @Value("${spring.llm.idempotency.ttl:24h}") Duration ttl,
+            @Value("${spring.llm.idempotency.wait:150s}") Duration wait,
+            @Value("${spring.llm.idempotency.in-progress-timeout:10m}") Duration inProgressTimeout
+    ) {
+        this.store = new IdempotencyStore(maxEntries, maxSize.toBytes(), ttl, inProgressTimeout);
+        this.maxBody = maxBody.toBytes();
+        this.wait = wait;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !"POST".equals(request.getMethod())
+                || !request.getRequestURI().startsWith("/posts/")
+                || request.getHeader(HEADER) == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String key = request.getHeader(HEADER).strip();
+        if (key.isEmpty() || key.length() > 255) {
+            error(response, 400, HEADER + " must be 1-255 characters");
+            return;
+        }
+        byte[] body = request.getInputStream().readAllBytes();
+        String fingerprint = fingerprint(request, body);
+
+        long deadline = System.nanoTime() + wait.toNanos();
+        while (true) {
+            IdempotencyStore.Claim claim = store.claim(key, fingerprint);
+            IdempotencyStore.Entry entry = claim.entry();
+            if (claim.owner()) {
+                execute(new CachedBodyRequest(request, body), response, chain, key, entry);
+                return;
+            }
+            if (!entry.fingerprint().equals(fingerprint)) {
+                mismatched.incrementAndGet();
+                error(response, 422, HEADER + " was already used for a different request");
+                return;
+            }
+
+            IdempotencyStore.Stored stored = entry.result().getNow(null);
+            if (stored == null && !entry.result().isDone()) {
+                waited.incrementAndGet();
+                try {
+                    stored = entry.result().get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                } catch (TimeoutException e) {
+                    response.setHeader("Retry-After", "1");
+                    error(response, 409, "A request with this " + HEADER + " is still in progress");
+                    return;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new ServletException(e);
+                } catch (ExecutionException e) {
+                    stored = null;
+                }
+            }
+            if (stored != null) {
+                replayed.incrementAndGet();
+                replay(response, stored);
+                return;
+            }
+            // the first execution failed and left nothing to replay: claim the key again and run
+        }
+    }
+
+    private void execute(HttpServletRequest request, HttpServletResponse response, FilterChain chain,
+                         String key, IdempotencyStore.Entry entry) throws ServletException, IOException {
+        executed.incrementAndGet();
+        var tee = new TeeResponse(response, maxBody);
+        boolean async = false;
+        IdempotencyStore.Stored stored = null;
+        try {
+            chain.doFilter(request, tee);
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new AsyncListener() {
+                    private final AtomicBoolean finished = new AtomicBoolean();
+
+                    @Override public void onComplete(AsyncEvent e) { finish(tee.stored(request)); }
+                    @Override public void onTimeout(AsyncEvent e) { finish(null); }
+                    @Override public void onError(AsyncEvent e) { finish(null); }
+                    @Override public void onStartAsync(AsyncEvent e) {}
+
+                    private void finish(IdempotencyStore.Stored result) {
+                        if (finished.compareAndSet(false, true)) store.complete(key, entry, result);
+                    }
+                });
+                async = true;
+            } else {
+                // taken from the copy, before the flush to a client that may be gone already
+                stored = tee.stored(request);
+            }
+        } finally {
+            if (!async) store.complete(key, entry, stored);
+        }
+        if (!async) tee.flushBuffer();
+    }
+
+    private static void replay(HttpServletResponse response, IdempotencyStore.Stored stored) throws IOException {
+        response.setStatus(stored.status());
+        if (stored.contentType() != null) response.setContentType(stored.contentType());
+        response.setHeader("Idempotent-Replayed", "true");
+        response.setContentLength(stored.body().length);
+        response.getOutputStream().write(stored.body());
+    }
+
+    private static void error(HttpServletResponse response, int status, String message) throws IOException {
+        response.setStatus(status);
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        response.getWriter().write("{\"error\":\"" + message + "\"}");
+    }
+
+    private static String fingerprint(HttpServletRequest request, byte[] body) {
+        try {
+            MessageDigest sha = MessageDigest.getInstance("SHA-256");
+            sha.update((request.getMethod() + " " + request.getRequestURI() + "\n").getBytes(StandardCharsets.UTF_8));
+            sha.update(body);
+            return HexFormat.of().formatHex(sha.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static boolean storable(int status) {
+        if (status >= 500) return false;
+        return status != 408 && status != 409 && status != 425 && status != 429;
+    }
+
+    @Override
+    public String statsName() {
+        return "idempotency";
+    }
+
+    @Override
+    public Map<String, Number> stats() {
+        var stats = new LinkedHashMap<String, Number>();
+        stats.put("entries", store.size());
+        stats.put("inProgress", store.inProgress());
+        stats.put("bytes", store.bytes());
+        stats.put("executed", executed.get());
+        stats.put("replayed", replayed.get());
+        stats.put("waited", waited.get());
+        stats.put("mismatched", mismatched.get());
+        return stats;
+    }
+
+    // the body was read for the fingerprint; hand the same bytes to the controller
+    private static final class CachedBodyRequest extends HttpServletRequestWrapper {
+        private final byte[] body;
+
+        CachedBodyRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            var in = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override public int read() { return in.read(); }
+                @Override public int read(byte[] b, int off, int len) { return in.read(b, off, len); }
+                @Override public boolean isFinished() { return in.available() == 0; }
+                @Override public boolean isReady() { return true; }
+                @Override public void setReadListener(ReadListener listener) { throw new UnsupportedOperationException(); }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            String encoding = getCharacterEncoding();
+            Charset charset = encoding == null ? StandardCharsets.UTF_8 : Charset.forName(encoding);
+            return new BufferedReader(new InputStreamReader(getInputStream(), charset));
+        }
+    }
+
+    // writes through to the client (streams keep streaming) and keeps a copy up to maxBody bytes
+    private static final class TeeResponse extends HttpServletResponseWrapper {
+        private final ByteArrayOutputStream copy = new ByteArrayOutputStream();
+        private final long maxBody;
+        private boolean overflow;
+        private volatile boolean clientGone;
+        private ServletOutputStream out;
+        private PrintWriter writer;
+
+        TeeResponse(HttpServletResponse response, long maxBody) {
+            super(response);
+            this.maxBody = maxBody;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (out == null) {
+                ServletOutputStream target = super.getOutputStream();
+                out = new ServletOutputStream() {
+                    @Override
+                    public void write(int b) {
+                        write(new byte[]{(byte) b}, 0, 1);
+                    }
+
+                    @Override
+                    public void write(byte[] b, int off, int len) {
+                        keep(b, off, len);
+                        if (clientGone) return;
+                        try {
+                            target.write(b, off, len);
+                        } catch (IOException e) {
+                            clientGone = true;
+                        }
+                    }
+
+                    @Override
+                    public void flush() {
+                        if (clientGone) return;
+                        try {
+                            target.flush();
+                        } catch (IOException e) {
+                            clientGone = true;
+                        }
+                    }
+
+                    @Override public boolean isReady() { return target.isReady(); }
+                    @Override public void setWriteListener(WriteListener listener) { target.setWriteListener(listener); }
+                };
+            }
+            return out;
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            if (writer == null) {
+                String encoding = getCharacterEncoding();
+                Charset charset = encoding == null ? StandardCharsets.ISO_8859_1 : Charset.forName(encoding);
+                writer = new PrintWriter(new OutputStreamWriter(getOutputStream(), charset), true);
+            }
+            return writer;
+        }
+
+        @Override
+        public void flushBuffer() {
+            if (writer != null) writer.flush();
+            if (clientGone) return;
+            try {
+                super.flushBuffer();
+            } catch (IOException e) {
+                clientGone = true;
+            }
+        }
+
+        private synchronized void keep(byte[] b, int off, int len) {
+            if (overflow) return;
+            if (copy.size() + len > maxBody) {
+                overflow = true;
+                copy.reset();
+                return;
+            }
+            copy.write(b, off, len);
+        }
+
+        IdempotencyStore.Stored stored(HttpServletRequest request) {
+            if (writer != null) writer.flush();
+            return copy(request.getAttribute(NOT_REPLAYABLE) == null);
+        }
+
+        private synchronized IdempotencyStore.Stored copy(boolean replayable) {
+            if (!replayable || overflow || !storable(getStatus())) return null;
+            return new IdempotencyStore.Stored(getStatus(), getContentType(), copy.toByteArray());
+        }
+    }
+}
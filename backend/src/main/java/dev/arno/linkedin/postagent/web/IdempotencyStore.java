@@ -0,0 +1,130 @@
+package dev.arno.linkedin.postagent.web;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Responses by {@code Idempotency-Key}: an entry is created as an in-progress marker when the first
+ * request with a key arrives and completed with its response, which later requests replay. Bounded by
+ * entry count and total body bytes (oldest first) and by a TTL. An execution whose response is not
+ * worth keeping removes its entry, so the next retry runs again; so does an in-progress marker older
+ * than its own deadline, in case its execution never reports back.
+ */
+public class IdempotencyStore {
+
+    /** A finished response, replayed byte for byte. */
+    public record Stored(int status, String contentType, byte[] body) {}
+
+    /** One key: the request it belongs to and its response, once there is one (null = not stored). */
+    public static final class Entry {
+        final String fingerprint;
+        final CompletableFuture<Stored> result = new CompletableFuture<>();
+        long expiresAt;
+        boolean done;
+
+        Entry(String fingerprint, long expiresAt) {
+            this.fingerprint = fingerprint;
+            this.expiresAt = expiresAt;
+        }
+
+        public String fingerprint() {
+            return fingerprint;
+        }
+
+        public CompletableFuture<Stored> result() {
+            return result;
+        }
+    }
+
+    /** The key's entry, and whether the caller created it and must execute the request. */
+    public record Claim(Entry entry, boolean owner) {}
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+    private final int maxEntries;
+    private final long maxBytes;
+    private final long ttlNanos;
+    private final long inProgressNanos;
+    private long bytes;
+
+    public IdempotencyStore(int maxEntries, long maxBytes, Duration ttl, Duration inProgressTimeout) {
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        this.ttlNanos = ttl.toNanos();
+        this.inProgressNanos = inProgressTimeout.toNanos();
+    }
+
+    public Claim claim(String key, String fingerprint) {
+        Entry stale = null;
+        Claim claim;
+        synchronized (this) {
+            long now = System.nanoTime();
+            Entry e = entries.get(key);
+            if (e != null && now - e.expiresAt > 0) {
+                remove(key, e);
+                if (!e.done) stale = e;
+                e = null;
+            }
+            if (e != null) {
+                claim = new Claim(e, false);
+            } else {
+                e = new Entry(fingerprint, now + inProgressNanos);
+                entries.put(key, e);
+                evict();
+                claim = new Claim(e, true);
+            }
+        }
+        // an abandoned execution: whoever still waits on it claims again rather than waiting forever
+        if (stale != null) stale.result.complete(null);
+        return claim;
+    }
+
+    /** Completes the key's execution; a null response drops the entry and releases anyone waiting. */
+    public void complete(String key, Entry e, Stored response) {
+        synchronized (this) {
+            if (response == null) {
+                remove(key, e);
+            } else if (entries.get(key) == e) {
+                e.done = true;
+                e.expiresAt = System.nanoTime() + ttlNanos;
+                e.result.complete(response);
+                bytes += response.body().length;
+                evict();
+            }
+        }
+        e.result.complete(response); // no-op when already completed above
+    }
+
+    private void remove(String key, Entry e) {
+        if (!entries.remove(key, e)) return;
+        Stored s = e.result.getNow(null);
+        if (s != null) bytes -= s.body().length;
+    }
+
+    // oldest first; an evicted in-progress entry still completes for the requests already waiting on it
+    private void evict() {
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while ((entries.size() > maxEntries || bytes > maxBytes) && it.hasNext()) {
+            Entry e = it.next().getValue();
+            Stored s = e.result.getNow(null);
+            if (s != null) bytes -= s.body().length;
+            it.remove();
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long bytes() {
+        return bytes;
+    }
+
+    public synchronized int inProgress() {
+        int n = 0;
+        for (Entry e : entries.values()) if (!e.done) n++;
+        return n;
+    }
+}
@@ -0,0 +1,90 @@
+package dev.arno.linkedin.postagent.config;
+
+import dev.arno.linkedin.postagent.llm.DiskResponseStore;
+import dev.arno.linkedin.postagent.llm.LlmClient;
+import dev.arno.linkedin.postagent.llm.LlmHttpTransport;
+import dev.arno.linkedin.postagent.llm.LlmMessage;
+import dev.arno.linkedin.postagent.llm.LlmOptions;
+import dev.arno.linkedin.postagent.llm.LlmRouter;
+import dev.arno.linkedin.postagent.llm.OpenAiClient;
+import dev.arno.linkedin.postagent.llm.TokenBudget;
+import dev.arno.linkedin.postagent.llm.TokenCounter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.util.unit.DataSize;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LlmConfigTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final List<String> events = new CopyOnWriteArrayList<>();
+
+    // streams three tokens, logging each before handing it on
+    private final LlmClient upstream = new LlmClient() {
+        @Override
+        public String chat(List<LlmMessage> messages, LlmOptions options) {
+            throw new AssertionError("a streaming call must not be collapsed into chat()");
+        }
+
+        @Override
+        public String chatStream(List<LlmMessage> messages, LlmOptions options, Consumer<String> onToken) {
+            for (String token : List.of("a", "b", "c")) {
+                events.add("sent:" + token);
+                onToken.accept(token);
+            }
+            return "abc";
+        }
+    };
+
+    private static <T> ObjectProvider<T> provide(T bean) {
+        return new ObjectProvider<>() {
+            @Override
+            public T getIfAvailable() {
+                return bean;
+            }
+
+            @Override
+            public Stream<T> orderedStream() {
+                return Stream.ofNullable(bean);
+            }
+        };
+    }
+
+    @Test
+    void tokensArriveOneByOneThroughTheWholeChain() throws Exception {
+        var config = new LlmConfig();
+        var budget = new TokenBudget(TokenCounter.approximate(), 0, Map.of(), registry);
+        var transport = new LlmHttpTransport("http://127.0.0.1:9/v1", HttpClient.Version.HTTP_1_1, 0,
+                Duration.ofSeconds(1), Duration.ofSeconds(1));
+        try {
+            // only consulted for the model and temperature; the router below is the upstream
+            var openAi = new OpenAiClient(transport, budget, registry, "key", "gpt-4o-mini", 0.7, false,
+                    1, Duration.ofMillis(1), Duration.ofMillis(5), Duration.ofSeconds(10), false, Duration.ofSeconds(2), 0, 2000);
+            var router = provide(new LlmRouter(List.of(new LlmRouter.Backend("fake", upstream, "m", 0)),
+                    Map.of(), Map.of(), 3, Duration.ofMinutes(1), 0, 0.1, Duration.ofSeconds(1), registry));
+
+            var rateLimited = config.rateLimitedLlmClient(openAi, router, budget, 100, 100_000, 100, 4, 10, Duration.ofSeconds(1));
+            var cache = config.cachingLlmClient(openAi, rateLimited, provide((DiskResponseStore) null), router,
+                    100, DataSize.ofMegabytes(1), Duration.ofHours(1));
+            var client = config.llmClient(config.singleFlightLlmClient(cache, openAi, router), registry);
+
+            String content = client.chatStream(List.of(LlmMessage.user("hi")), LlmOptions.forEndpoint("posts.draft.stream"),
+                    token -> events.add("got:" + token));
+
+            assertEquals("abc", content);
+            assertEquals(List.of("sent:a", "got:a", "sent:b", "got:b", "sent:c", "got:c"), events);
+        } finally {
+            transport.close();
+        }
+    }
+}
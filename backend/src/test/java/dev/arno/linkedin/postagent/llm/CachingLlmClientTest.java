@@ -0,0 +1,59 @@
+package dev.arno.linkedin.postagent.llm;
+
+import dev.arno.linkedin.postagent.error.ApiException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CachingLlmClientTest {
+
+    private static final List<LlmMessage> MESSAGES = List.of(LlmMessage.user("outline please"));
+
+    record Outline(String title) {
+    }
+
+    @TempDir
+    Path dir;
+
+    // hands out its scripted replies in order
+    private static final class Scripted implements LlmClient {
+        final ArrayDeque<String> replies;
+        int calls;
+
+        Scripted(String... replies) {
+            this.replies = new ArrayDeque<>(List.of(replies));
+        }
+
+        @Override
+        public String chat(List<LlmMessage> messages, LlmOptions options) {
+            calls++;
+            return replies.pollFirst();
+        }
+    }
+
+    @Test
+    void completionThatFailsToParseIsEvictedEverywhere() throws Exception {
+        var upstream = new Scripted("Sorry, I can't do that.", "{\"title\": \"Flaky tests\"}");
+        var schema = ResponseSchema.of(Outline.class, new SimpleMeterRegistry());
+        try (var store = new DiskResponseStore(dir, 1 << 20, 1 << 16)) {
+            LlmClient llm = new SingleFlightLlmClient(
+                    new CachingLlmClient(new PersistentLlmClient(upstream, store, "m", 0.7), "m", 0.7, 10, 1 << 20, Duration.ofHours(1)),
+                    "m", 0.7);
+
+            assertThrows(ApiException.class, () -> llm.chat(MESSAGES, LlmOptions.defaults(), schema));
+            assertEquals(0, store.size());
+
+            assertEquals("Flaky tests", llm.chat(MESSAGES, LlmOptions.defaults(), schema).title());
+            assertEquals("Flaky tests", llm.chat(MESSAGES, LlmOptions.defaults(), schema).title());
+            assertEquals(2, upstream.calls, "the bad reply is asked for again, the good one is cached");
+            assertEquals(1, store.size());
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package dev.arno.linkedin.postagent.llm;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DiskResponseStoreTest {
+
+    @TempDir
+    Path dir;
+
+    private List<Path> segments() throws IOException {
+        try (var files = Files.list(dir)) {
+            return files.filter(p -> p.getFileName().toString().startsWith("segment-")).sorted().toList();
+        }
+    }
+
+    @Test
+    void valuesSurviveAReopen() throws Exception {
+        try (var store = new DiskResponseStore(dir, 1 << 20, 1 << 16)) {
+            store.put("a", "first");
+            store.put("b", "ünïcødé ✓");
+            store.put("a", "second");
+            assertEquals("second", store.get("a"));
+            assertNull(store.get("missing"));
+        }
+        try (var store = new DiskResponseStore(dir, 1 << 20, 1 << 16)) {
+            assertEquals(2, store.size());
+            assertEquals("second", store.get("a"), "a later record supersedes an earlier one");
+            assertEquals("ünïcødé ✓", store.get("b"));
+        }
+    }
+
+    @Test
+    void removedKeysStayRemovedAfterAReopenAndACompaction() throws Exception {
+        try (var store = new DiskResponseStore(dir, 1 << 20, 1 << 16)) {
+            store.put("a", "bad");
+            store.put("b", "kept");
+            store.remove("a");
+            store.remove("missing");
+            assertNull(store.get("a"));
+            assertEquals(1, store.size());
+        }
+        try (var store = new DiskResponseStore(dir, 1 << 20, 1 << 16)) {
+            assertNull(store.get("a"), "the tombstone supersedes the record");
+            assertEquals("kept", store.get("b"));
+            store.compact().get(10, TimeUnit.SECONDS);
+            assertEquals(store.stats().get("liveBytes"), store.stats().get("totalBytes"));
+            store.put("a", "good");
+        }
+        try (var store = new DiskResponseStore(dir, 1 << 20, 1 << 16)) {
+            assertEquals(2, store.size());
+            assertEquals("good", store.get("a"));
+        }
+    }
+
+    @Test
+    void tornTailIsTruncatedAtStartup() throws Exception {
+        try (var store = new DiskResponseStore(dir, 1 << 20, 1 << 16)) {
+            store.put("a", "intact");
+            store.put("b", "also intact");
+        }
+        Path segment = segments().get(segments().size() - 1);
+        long intact = Files.size(segment);
+        // half a record, as a crash mid-write leaves it
+        Files.write(segment, new byte[]{0, 1, 2, 3, 0, 0, 0, 5, 0, 0, 0, 9, 0}, StandardOpenOption.APPEND);
+
+        try (var store = new DiskResponseStore(dir, 1 << 20, 1 << 16)) {
+            assertEquals(intact, Files.size(segment));
+            assertEquals("intact", store.get("a"));
+            assertEquals("also intact", store.get("b"));
+            store.put("c", "after the crash");
+        }
+        try (var store = new DiskResponseStore(dir, 1 << 20, 1 << 16)) {
+            assertEquals(3, store.size());
+            assertEquals("after the crash", store.get("c"));
+        }
+    }
+
+    @Test
+    void corruptRecordEndsTheScan() throws Exception {
+        try (var store = new DiskResponseStore(dir, 1 << 20, 1 << 16)) {
+            store.put("a", "good");
+            store.put("b", "flipped");
+        }
+        Path segment = segments().get(0);
+        byte[] bytes = Files.readAllBytes(segment);
+        bytes[bytes.length - 1] ^= 1;
+        Files.write(segment, bytes);
+
+        try (var store = new DiskResponseStore(dir, 1 << 20, 1 << 16)) {
+            assertEquals("good", store.get("a"));
+            assertNull(store.get("b"));
+        }
+    }
+
+    @Test
+    void compactionDropsSupersededRecords() throws Exception {
+        try (var store = new DiskResponseStore(dir, 1 << 20, 256)) {
+            for (int i = 0; i < 50; i++) store.put("k" + (i % 3), "value-" + i);
+            // writes already set off compactions in the background; join the last one, then run a full one
+            store.compact().get(10, TimeUnit.SECONDS);
+            store.compact().get(10, TimeUnit.SECONDS);
+
+            assertEquals(3, store.size());
+            assertEquals(store.stats().get("liveBytes"), store.stats().get("totalBytes"));
+            assertEquals("value-48", store.get("k0"));
+            assertEquals("value-49", store.get("k1"));
+            assertEquals("value-47", store.get("k2"));
+            store.put("k0", "after");
+        }
+        try (var store = new DiskResponseStore(dir, 1 << 20, 256)) {
+            assertEquals(3, store.size());
+            assertEquals("after", store.get("k0"));
+            assertEquals("value-49", store.get("k1"));
+        }
+    }
+
+    @Test
+    void compactionDropsTheOldestEntriesOverTheCap() throws Exception {
+        String value = "x".repeat(100);
+        try (var store = new DiskResponseStore(dir, 2000, 512)) {
+            for (int i = 0; i < 30; i++) {
+                store.put("k" + i, value);
+                Thread.sleep(2); // distinct writtenAt, so "oldest" is well defined
+            }
+            store.compact().get(10, TimeUnit.SECONDS);
+            store.compact().get(10, TimeUnit.SECONDS);
+
+            long live = store.stats().get("liveBytes").longValue();
+            assertTrue(live <= 1800, "back under 90% of the cap, was " + live);
+            assertNull(store.get("k0"));
+            assertEquals(value, store.get("k29"));
+        }
+        try (var store = new DiskResponseStore(dir, 2000, 512)) {
+            assertNull(store.get("k0"));
+            assertEquals(value, store.get("k29"));
+        }
+    }
+
+    @Test
+    void readsAndWritesCarryOnDuringCompaction() throws Exception {
+        try (var store = new DiskResponseStore(dir, 1 << 20, 1024)) {
+            for (int i = 0; i < 200; i++) store.put("k" + (i % 20), "v" + i);
+            var compaction = store.compact();
+            for (int i = 0; i < 20; i++) {
+                assertEquals("v" + (180 + i), store.get("k" + i));
+                store.put("k" + i, "new" + i);
+            }
+            compaction.get(10, TimeUnit.SECONDS);
+            for (int i = 0; i < 20; i++) assertEquals("new" + i, store.get("k" + i));
+        }
+        try (var store = new DiskResponseStore(dir, 1 << 20, 1024)) {
+            for (int i = 0; i < 20; i++) assertEquals("new" + i, store.get("k" + i), "a write during compaction wins over its compacted copy");
+        }
+    }
+}
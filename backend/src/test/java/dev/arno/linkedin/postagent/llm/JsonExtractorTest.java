@@ -0,0 +1,108 @@
+package dev.arno.linkedin.postagent.llm;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.arno.linkedin.postagent.error.ApiException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonExtractorTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+
+    record Outline(String title, List<String> points) {
+    }
+
+    private String repaired(String content) {
+        return JsonExtractor.readTree(MAPPER, content, registry).toString();
+    }
+
+    @Test
+    void fencedBlockIsPreferred() {
+        String content = """
+                See [1] for the source. Here is the outline:
+                ```json
+                {"title": "Flaky tests", "points": ["quarantine", "track"]}
+                ```
+                Let me know if you want changes [or not].""";
+        var outline = JsonExtractor.read(MAPPER, content, Outline.class, registry);
+        assertEquals("Flaky tests", outline.title());
+        assertEquals(List.of("quarantine", "track"), outline.points());
+    }
+
+    @Test
+    void bracketsInProseBeforeTheAnswerAreSkipped() {
+        String content = "Based on [link] and [1], here you go: {\"title\": \"CI\", \"points\": [\"cache\"]}";
+        assertEquals("CI", JsonExtractor.read(MAPPER, content, Outline.class, registry).title());
+        assertEquals("{\"title\":\"CI\",\"points\":[\"cache\"]}", repaired(content));
+    }
+
+    @Test
+    void unbalancedBracketInProseIsSkipped() {
+        assertEquals("{\"a\":1}", repaired("Note [see below: {\"a\": 1}"));
+    }
+
+    @Test
+    void objectThatDoesNotBindIsSkippedForOneThatDoes() {
+        String content = "Placeholder {\"name\": 1, \"points\": \"x\"} then {\"title\": \"t\", \"points\": []}";
+        assertEquals("t", JsonExtractor.read(MAPPER, content, Outline.class, registry).title());
+    }
+
+    @Test
+    void fenceAfterManyBracketsInProseIsStillPreferred() {
+        String content = "See [1] [2] [3] ".repeat(20) + "\n```json\n{\"title\": \"Fenced\", \"points\": []}\n```";
+        assertEquals("Fenced", JsonExtractor.read(MAPPER, content, Outline.class, registry).title());
+    }
+
+    @Test
+    void feedStartsAtTheGivenOffset() {
+        var x = new JsonExtractor();
+        assertTrue(x.feed("{\"a\": 1} and {\"b\": 2}", 9));
+        assertEquals("{\"b\":2}", x.result());
+    }
+
+    @Test
+    void arrayIsReturnedWhenThereIsNoObject() {
+        assertEquals("[\"#a\",\"#b\"]", repaired("Tags: [\"#a\", \"#b\"]"));
+    }
+
+    @Test
+    void trailingCommasAreDropped() {
+        assertEquals("{\"a\":[1,2],\"b\":{\"c\":3}}", repaired("{\"a\": [1, 2,], \"b\": {\"c\": 3,},}"));
+    }
+
+    @Test
+    void smartAndSingleQuotesBecomeDoubleQuotes() {
+        assertEquals("{\"a\":\"it's \\\"ok\\\"\"}", repaired("{“a”: ‘it\\'s \"ok\"’}"));
+        assertEquals("{\"a\":\"b\"}", repaired("{'a': 'b'}"));
+    }
+
+    @Test
+    void rawControlCharactersInStringsAreEscaped() {
+        assertEquals("line one\nline two\ttab",
+                JsonExtractor.readTree(MAPPER, "{\"text\": \"line one\nline two\ttab\"}", registry).path("text").asText());
+    }
+
+    @Test
+    void truncatedObjectIsReportedAsTruncated() {
+        var e = assertThrows(ApiException.class, () -> repaired("{\"outer\": {\"inner\": 1}, \"points\": [\"a\", \"b"));
+        assertEquals(502, e.status());
+        assertTrue(e.getMessage().contains("truncated"), e.getMessage());
+    }
+
+    @Test
+    void missingAndMalformedAre502() {
+        var missing = assertThrows(ApiException.class, () -> repaired("Sorry, I can't help with that."));
+        assertEquals(502, missing.status());
+        assertTrue(missing.getMessage().contains("no JSON"), missing.getMessage());
+
+        var malformed = assertThrows(ApiException.class, () -> repaired("{title: untitled}"));
+        assertEquals(502, malformed.status());
+        assertTrue(malformed.getMessage().contains("malformed"), malformed.getMessage());
+    }
+}
@@ -0,0 +1,114 @@
+package dev.arno.linkedin.postagent.llm;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LlmHttpTransportTest {
+
+    private static final String COMPLETION = """
+            {"choices":[{"message":{"content":"hello"}}],"usage":{"prompt_tokens":3,"completion_tokens":1}}""";
+
+    private HttpServer server;
+    private LlmHttpTransport transport;
+    private final AtomicInteger hits = new AtomicInteger();
+
+    @BeforeEach
+    void start() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/v1/chat/completions", exchange -> {
+            int n = hits.incrementAndGet();
+            byte[] body;
+            if (exchange.getRequestHeaders().getFirst("Accept-Encoding") == null) {
+                // streaming call
+                body = "data: {\"choices\":[{\"delta\":{\"content\":\"hi\"}}]}\n\ndata: [DONE]\n\n".getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+            } else {
+                exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                // the first response is cut off mid-gzip
+                body = n == 1 ? new byte[]{0x1f, (byte) 0x8b, 8, 0, 0} : gzip(COMPLETION);
+            }
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+        transport = new LlmHttpTransport("http://127.0.0.1:" + server.getAddress().getPort() + "/v1",
+                HttpClient.Version.HTTP_1_1, 0, Duration.ofSeconds(2), Duration.ofSeconds(5));
+    }
+
+    @AfterEach
+    void stop() {
+        transport.close();
+        server.stop(0);
+    }
+
+    private static byte[] gzip(String s) {
+        var out = new ByteArrayOutputStream();
+        try (var gz = new GZIPOutputStream(out)) {
+            gz.write(s.getBytes(StandardCharsets.UTF_8));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private OpenAiClient client() throws Exception {
+        var registry = new SimpleMeterRegistry();
+        var budget = new TokenBudget(TokenCounter.approximate(), 0, Map.of(), registry);
+        var client = new OpenAiClient(transport, budget, registry, "key", "gpt-4o-mini", 0.7, false,
+                3, Duration.ofMillis(1), Duration.ofMillis(5), Duration.ofSeconds(10), false, Duration.ofSeconds(2), 0, 2000);
+        // field-injected by Spring
+        var mapper = OpenAiClient.class.getDeclaredField("mapper");
+        mapper.setAccessible(true);
+        mapper.set(client, new ObjectMapper());
+        return client;
+    }
+
+    @Test
+    void streamedExchangeStaysInFlightUntilItsBodyIsClosed() throws Exception {
+        var res = transport.sendLines(transport.newRequest(true).POST(HttpRequest.BodyPublishers.ofString("{}")).build());
+        assertEquals(200, res.statusCode());
+        assertEquals(1, transport.stats().get("inFlight"));
+
+        try (var lines = res.body()) {
+            assertTrue(lines.anyMatch(l -> l.contains("[DONE]")));
+        }
+        assertEquals(0, transport.stats().get("inFlight"));
+    }
+
+    @Test
+    void streamingCallReleasesTheExchange() throws Exception {
+        var tokens = new StringBuilder();
+        String content = client().chatStream(List.of(LlmMessage.user("hi")), LlmOptions.defaults(), tokens::append);
+        assertEquals("hi", content);
+        assertEquals(0, transport.stats().get("inFlight"));
+    }
+
+    @Test
+    void corruptGzipBodyIsRetried() throws Exception {
+        String content = client().chat(List.of(LlmMessage.user("hi")), LlmOptions.defaults());
+        assertEquals("hello", content);
+        assertEquals(2, hits.get());
+        // the async exchange is counted off on the client's thread, just after the caller wakes
+        for (int i = 0; i < 100 && transport.stats().get("inFlight").intValue() > 0; i++) Thread.sleep(10);
+        assertEquals(0, transport.stats().get("inFlight"));
+    }
+}
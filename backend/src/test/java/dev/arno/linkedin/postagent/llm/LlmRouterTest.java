@@ -0,0 +1,114 @@
+package dev.arno.linkedin.postagent.llm;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LlmRouterTest {
+
+    private static final List<LlmMessage> MESSAGES = List.of(LlmMessage.user("hi"));
+
+    private static final class Fake implements LlmClient {
+        final AtomicInteger calls = new AtomicInteger();
+        final boolean down;
+
+        Fake(boolean down) {
+            this.down = down;
+        }
+
+        @Override
+        public String chat(List<LlmMessage> messages, LlmOptions options) throws InterruptedException, LlmHttpException {
+            calls.incrementAndGet();
+            if (down) throw new LlmHttpException(503, "unavailable", null);
+            Thread.sleep(5);
+            return "ok";
+        }
+    }
+
+    // answers with its own name, or fails the way it is told to
+    private static final class Scripted implements LlmClient {
+        final String name;
+        volatile String mode = "ok";
+
+        Scripted(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String chat(List<LlmMessage> messages, LlmOptions options) throws InterruptedException, LlmHttpException {
+            return switch (mode) {
+                case "down" -> throw new LlmHttpException(503, "unavailable", null);
+                case "interrupted" -> throw new InterruptedException();
+                default -> name;
+            };
+        }
+    }
+
+    private static LlmRouter router(Fake cheap, Fake paid, int failureThreshold) {
+        return new LlmRouter(
+                List.of(new LlmRouter.Backend("cheap", cheap, "m1", 0), new LlmRouter.Backend("paid", paid, "m2", 1)),
+                Map.of("fast", List.of("cheap", "paid")), Map.of("default", "fast"),
+                failureThreshold, Duration.ofMinutes(1), 0, 0.1, Duration.ofSeconds(60), new SimpleMeterRegistry());
+    }
+
+    @Test
+    void failsOverToTheNextBackend() throws Exception {
+        var cheap = new Fake(true);
+        var paid = new Fake(false);
+        assertEquals("ok", router(cheap, paid, 5).chat(MESSAGES, LlmOptions.defaults()));
+        assertEquals(1, cheap.calls.get());
+        assertEquals(1, paid.calls.get());
+    }
+
+    @Test
+    void backendThatNeverSucceededDoesNotKeepRankingFirst() throws Exception {
+        var cheap = new Fake(true);
+        var paid = new Fake(false);
+        // threshold high enough that only the score keeps the dead backend out of the way
+        var router = router(cheap, paid, 1000);
+        for (int i = 0; i < 20; i++) assertEquals("ok", router.chat(MESSAGES, LlmOptions.defaults()));
+
+        assertEquals(1, cheap.calls.get(), "only the very first call, before anything was measured, tries it");
+        assertEquals(20, paid.calls.get());
+    }
+
+    @Test
+    void breakerSkipsABackendAfterConsecutiveFailures() throws Exception {
+        var cheap = new Fake(true);
+        var paid = new Fake(false);
+        var router = router(cheap, paid, 1);
+        router.chat(MESSAGES, LlmOptions.defaults());
+        router.chat(MESSAGES, LlmOptions.defaults());
+
+        assertEquals(1, cheap.calls.get());
+        assertEquals(1, router.stats().get("cheap.state"));
+    }
+
+    @Test
+    void interruptedProbeLeavesTheBackendProbeable() throws Exception {
+        var cheap = new Scripted("cheap");
+        var paid = new Scripted("paid");
+        // cost weighs heavily enough that a reachable cheap backend always ranks first
+        var router = new LlmRouter(
+                List.of(new LlmRouter.Backend("cheap", cheap, "m1", 0), new LlmRouter.Backend("paid", paid, "m2", 10)),
+                Map.of("fast", List.of("cheap", "paid")), Map.of("default", "fast"),
+                1, Duration.ofMillis(20), 0, 1, Duration.ofSeconds(60), new SimpleMeterRegistry());
+
+        cheap.mode = "down";
+        assertEquals("paid", router.chat(MESSAGES, LlmOptions.defaults()));
+        Thread.sleep(40);
+
+        cheap.mode = "interrupted";
+        assertThrows(InterruptedException.class, () -> router.chat(MESSAGES, LlmOptions.defaults()));
+
+        cheap.mode = "ok";
+        assertEquals("cheap", router.chat(MESSAGES, LlmOptions.defaults()), "the half-open backend takes the next probe");
+        assertEquals(0, router.stats().get("cheap.state"));
+    }
+}
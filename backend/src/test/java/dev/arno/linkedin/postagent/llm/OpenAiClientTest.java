@@ -0,0 +1,132 @@
+package dev.arno.linkedin.postagent.llm;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import dev.arno.linkedin.postagent.error.ApiException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OpenAiClientTest {
+
+    private HttpServer server;
+    private LlmHttpTransport transport;
+    private final AtomicInteger hits = new AtomicInteger();
+    private volatile String finishReason = "stop";
+    private volatile int status = 200;
+    private final TokenBudget budget = new TokenBudget(TokenCounter.approximate(), 0, Map.of(), new SimpleMeterRegistry());
+
+    @BeforeEach
+    void start() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/v1/chat/completions", exchange -> {
+            hits.incrementAndGet();
+            String request = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            String body;
+            if (request.contains("\"stream\":true")) {
+                exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+                body = "data: {\"id\":\"c1\",\"choices\":[{\"index\":0,\"delta\":{\"role\":\"assistant\",\"content\":\"{\\\"title\\\": \"}}]}\n\n"
+                        + "data: {\"choices\":[{\"delta\":{},\"finish_reason\":\"" + finishReason + "\"}]}\n\n"
+                        + "data: {\"choices\":[],\"usage\":{\"prompt_tokens\":3,\"completion_tokens\":4}}\n\n"
+                        + "data: [DONE]\n\n";
+            } else {
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                body = "{\"id\":\"c1\",\"object\":\"chat.completion\",\"choices\":[{\"index\":0,\"message\":{\"role\":\"assistant\",\"content\":\"{\\\"title\\\": \"},"
+                        + "\"logprobs\":null,\"finish_reason\":\"" + finishReason + "\"}],"
+                        + "\"usage\":{\"prompt_tokens\":3,\"completion_tokens\":4,\"prompt_tokens_details\":{\"cached_tokens\":2,\"audio_tokens\":0}}}";
+            }
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(status, bytes.length);
+            exchange.getResponseBody().write(bytes);
+            exchange.close();
+        });
+        server.start();
+        transport = new LlmHttpTransport("http://127.0.0.1:" + server.getAddress().getPort() + "/v1",
+                HttpClient.Version.HTTP_1_1, 0, Duration.ofSeconds(2), Duration.ofSeconds(5));
+    }
+
+    @AfterEach
+    void stop() {
+        transport.close();
+        server.stop(0);
+    }
+
+    private OpenAiClient client() throws Exception {
+        var client = new OpenAiClient(transport, budget, new SimpleMeterRegistry(), "key", "gpt-4o-mini", 0.7, false,
+                3, Duration.ofMillis(1), Duration.ofMillis(5), Duration.ofSeconds(10), false, Duration.ofSeconds(2), 0, 2000);
+        // field-injected by Spring
+        var mapper = OpenAiClient.class.getDeclaredField("mapper");
+        mapper.setAccessible(true);
+        mapper.set(client, new ObjectMapper());
+        return client;
+    }
+
+    @Test
+    void envelopeIsBoundWithItsUsage() throws Exception {
+        assertEquals("{\"title\":", client().chat(List.of(LlmMessage.user("hi")), LlmOptions.defaults()));
+        assertEquals("{\"title\":", client().chatStream(List.of(LlmMessage.user("hi")), LlmOptions.defaults(), t -> {}));
+
+        var stats = budget.stats();
+        assertEquals(2L, stats.get("calls").longValue());
+        assertEquals(6L, stats.get("promptTokens").longValue());
+        assertEquals(2L, stats.get("cachedPromptTokens").longValue());
+        assertEquals(8L, stats.get("completionTokens").longValue());
+    }
+
+    @Test
+    void completionCutOffAtMaxTokensIsAnErrorAndNotRetried() throws Exception {
+        finishReason = "length";
+        var e = assertThrows(ApiException.class, () -> client().chat(List.of(LlmMessage.user("hi")), LlmOptions.defaults()));
+        assertEquals(502, e.status());
+        assertTrue(e.getMessage().contains("max_tokens"), e.getMessage());
+        assertEquals(1, hits.get());
+    }
+
+    @Test
+    void streamCutOffAtMaxTokensIsAnError() throws Exception {
+        finishReason = "length";
+        var tokens = new StringBuilder();
+        var e = assertThrows(ApiException.class,
+                () -> client().chatStream(List.of(LlmMessage.user("hi")), LlmOptions.defaults(), tokens::append));
+        assertEquals(502, e.status());
+        assertEquals("{\"title\": ", tokens.toString());
+    }
+
+    @Test
+    void truncatedCompletionIsNotCached() throws Exception {
+        finishReason = "length";
+        var cache = new CachingLlmClient(client(), "gpt-4o-mini", 0.7, 10, 1 << 20, Duration.ofHours(1));
+        var messages = List.of(LlmMessage.user("hi"));
+        assertThrows(ApiException.class, () -> cache.chat(messages, LlmOptions.defaults()));
+
+        finishReason = "stop";
+        assertEquals("{\"title\":", cache.chat(messages, LlmOptions.defaults()));
+        assertEquals(2, hits.get());
+    }
+
+    @Test
+    void retryIsNotSentWithoutAPermit() throws Exception {
+        status = 503;
+        var asked = new AtomicInteger();
+        AttemptGate denied = wait -> {
+            asked.incrementAndGet();
+            return false;
+        };
+        var e = assertThrows(LlmHttpException.class,
+                () -> client().chat(List.of(LlmMessage.user("hi")), LlmOptions.defaults().withAttempts(denied)));
+        assertEquals(503, e.status());
+        assertEquals(1, asked.get());
+        assertEquals(1, hits.get());
+    }
+}
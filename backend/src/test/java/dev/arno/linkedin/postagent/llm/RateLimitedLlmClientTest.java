@@ -0,0 +1,143 @@
+package dev.arno.linkedin.postagent.llm;
+
+import dev.arno.linkedin.postagent.error.ApiException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimitedLlmClientTest {
+
+    private static final List<LlmMessage> MESSAGES = List.of(LlmMessage.user("hi"));
+
+    private final List<String> served = new CopyOnWriteArrayList<>();
+    private final LlmClient upstream = (messages, options) -> {
+        served.add(options.endpoint());
+        return "ok";
+    };
+
+    private static RateLimitedLlmClient limiter(LlmClient upstream, int rpm, int maxConcurrent, int maxQueue, Duration maxWait) {
+        var budget = new TokenBudget(TokenCounter.approximate(), 0, Map.of(), new SimpleMeterRegistry());
+        return new RateLimitedLlmClient(upstream, budget, rpm, 1_000_000, 10, maxConcurrent, maxQueue, maxWait);
+    }
+
+    private static void drain(RateLimitedLlmClient limiter, int rpm) throws Exception {
+        for (int i = 0; i < rpm; i++) limiter.chat(MESSAGES, LlmOptions.forEndpoint("warmup"));
+    }
+
+    @Test
+    void callThatCannotBeServedInTimeFailsFast() throws Exception {
+        // two requests a minute: the third would wait ~30s, far over the budget
+        var limiter = limiter(upstream, 2, 4, 10, Duration.ofSeconds(1));
+        drain(limiter, 2);
+
+        long start = System.nanoTime();
+        var e = assertThrows(ApiException.class, () -> limiter.chat(MESSAGES, LlmOptions.forEndpoint("polish")));
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(500), "rejected without queueing");
+        assertEquals(503, e.status());
+        assertTrue(e.retryAfterSeconds() >= 29, String.valueOf(e.retryAfterSeconds()));
+        assertEquals(1L, limiter.stats().get("rejected"));
+    }
+
+    @Test
+    void fullQueueIsRejected() throws Exception {
+        // ten a second, so a waiter is queued ~100ms
+        var limiter = limiter(upstream, 600, 4, 1, Duration.ofSeconds(5));
+        drain(limiter, 600);
+
+        var waiter = new Thread(() -> {
+            try {
+                limiter.chat(MESSAGES, LlmOptions.forEndpoint("polish"));
+            } catch (Exception ignored) {
+                // only the second call matters
+            }
+        });
+        waiter.start();
+        for (int i = 0; i < 100 && limiter.stats().get("queued").intValue() == 0; i++) Thread.sleep(1);
+
+        var e = assertThrows(ApiException.class, () -> limiter.chat(MESSAGES, LlmOptions.forEndpoint("polish")));
+        assertEquals(503, e.status());
+        assertTrue(e.getMessage().contains("queue is full"), e.getMessage());
+        waiter.join();
+    }
+
+    @Test
+    void callTimesOutWaitingForAConcurrencySlot() throws Exception {
+        var entered = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        LlmClient slow = (messages, options) -> {
+            entered.countDown();
+            release.await();
+            return "ok";
+        };
+        var limiter = limiter(slow, 600, 1, 10, Duration.ofMillis(200));
+        var holder = new Thread(() -> {
+            try {
+                limiter.chat(MESSAGES, LlmOptions.forEndpoint("polish"));
+            } catch (Exception ignored) {
+                // holds the only slot
+            }
+        });
+        holder.start();
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+        long start = System.nanoTime();
+        var e = assertThrows(ApiException.class, () -> limiter.chat(MESSAGES, LlmOptions.forEndpoint("polish")));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(150), "waited for the slot first");
+        assertEquals(503, e.status());
+        assertTrue(e.getMessage().contains("concurrent"), e.getMessage());
+
+        release.countDown();
+        holder.join();
+    }
+
+    @Test
+    void lanesAreServedInTurn() throws Exception {
+        var limiter = limiter(upstream, 600, 8, 10, Duration.ofSeconds(5));
+        drain(limiter, 600);
+        served.clear();
+
+        List<Thread> callers = new ArrayList<>();
+        for (String endpoint : List.of("batch.a", "batch.b", "batch.c", "polish")) {
+            var t = new Thread(() -> {
+                try {
+                    limiter.chat(MESSAGES, LlmOptions.forEndpoint(endpoint));
+                } catch (Exception e) {
+                    fail(e.toString());
+                }
+            });
+            t.start();
+            callers.add(t);
+            Thread.sleep(10);
+        }
+        for (Thread t : callers) t.join();
+
+        assertEquals(4, served.size(), served.toString());
+        // FIFO alone would serve the single polish call after the whole batch lane
+        assertTrue(served.indexOf("polish") < 3, served.toString());
+    }
+
+    @Test
+    void retriesAndHedgesTakeTheirOwnPermits() throws Exception {
+        List<Boolean> admitted = new ArrayList<>();
+        LlmClient retrying = (messages, options) -> {
+            admitted.add(options.attempts().acquire(false)); // the second of two permits a minute
+            admitted.add(options.attempts().acquire(false)); // none left
+            admitted.add(options.attempts().acquire(true));  // the next one is ~30s out
+            return "ok";
+        };
+        var limiter = limiter(retrying, 2, 4, 10, Duration.ofSeconds(1));
+
+        assertEquals("ok", limiter.chat(MESSAGES, LlmOptions.forEndpoint("polish")));
+        assertEquals(List.of(true, false, false), admitted);
+        assertEquals(1L, limiter.stats().get("extraAttempts"));
+    }
+}
@@ -0,0 +1,66 @@
+package dev.arno.linkedin.postagent.llm;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenCounterTest {
+
+    /*
+     * tokenizer-fixture.tiktoken holds the 256 single bytes (rank = byte value) and a few merges:
+     * bc ab cd abcd he ll llo hello " w" or ld " wor" " world" é, ranked 256 on in that order.
+     * The expected counts are what tiktoken's encoder gives for that vocabulary: a piece that is a
+     * token is one token, anything else merges its lowest-ranked adjacent pair, leftmost first.
+     */
+    private static TokenCounter fixture() throws Exception {
+        try (var in = new BufferedReader(new InputStreamReader(
+                TokenCounterTest.class.getResourceAsStream("/tokenizer-fixture.tiktoken"), StandardCharsets.US_ASCII))) {
+            return new TokenCounter(in);
+        }
+    }
+
+    @Test
+    void wholePiecesInTheVocabularyAreOneToken() throws Exception {
+        var counter = fixture();
+        assertTrue(counter.exact());
+        assertEquals(List.of("hello", " world"), TokenCounter.split("hello world"));
+        assertEquals(2, counter.count("hello world"));
+        assertEquals(1, counter.count("abcd"));
+    }
+
+    @Test
+    void piecesMergeByRankNotByLongestMatch() throws Exception {
+        var counter = fixture();
+        // " w" first, then "or", "ld", " wor", " world"; the trailing "s" stays on its own
+        assertEquals(3, counter.count("hello worlds"));
+        // "bc" outranks "ab", which leaves x a bc d; longest match would give x + abcd
+        assertEquals(4, counter.count("xabcd"));
+    }
+
+    @Test
+    void multiByteCharactersMergeOnBytes() throws Exception {
+        var counter = fixture();
+        assertEquals(4, counter.count("café"), "é is a merged token");
+        assertEquals(5, counter.count("cafè"), "è stays two bytes");
+    }
+
+    @Test
+    void messagesAddTheChatFraming() throws Exception {
+        var counter = fixture();
+        assertEquals(3 + 4 + 2 + 4 + 1, counter.count(List.of(LlmMessage.system("hello world"), LlmMessage.user("abcd"))));
+    }
+
+    @Test
+    void withoutAVocabularyCountsAreEstimates() {
+        var counter = TokenCounter.approximate();
+        assertFalse(counter.exact());
+        // four UTF-8 bytes a token, rounded up per piece: "hello" and " world" take two each
+        assertEquals(4, counter.count("hello world"));
+        assertEquals(0, counter.count(""));
+    }
+}
@@ -0,0 +1,107 @@
+package dev.arno.linkedin.postagent.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HashtagEngineTest {
+
+    private final HashtagEngine engine = load();
+
+    private static HashtagEngine load() {
+        try (var in = new BufferedReader(new InputStreamReader(
+                HashtagEngineTest.class.getResourceAsStream("/hashtags.tsv"), StandardCharsets.UTF_8))) {
+            return new HashtagEngine(in);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Test
+    void camelCaseSplitsUnlessTheHumpsSpellAKnownWord() {
+        Set<String> vocabulary = Set.of("github", "gitlab", "opentelemetry", "action");
+        assertEquals(List.of("github", "action", "gitlab", "opentelemetry"),
+                HashtagEngine.words("GitHub Actions, GitLab; OpenTelemetry", vocabulary));
+        assertEquals(List.of("test", "automation", "github", "action"),
+                HashtagEngine.words("#TestAutomation #GitHubActions", vocabulary));
+        assertEquals(List.of("ci", "cd", "pipeline"), HashtagEngine.words("CI/CD pipelines", vocabulary));
+    }
+
+    @Test
+    void brandNamesInPostTextMatchTheirDictionaryEntries() {
+        var s = engine.suggest("We moved from GitLab CI to GitHub Actions and added OpenTelemetry tracing.", 5, "niche");
+        assertTrue(s.hashtags().contains("#GitHubActions"), s.rationale());
+        assertTrue(s.hashtags().contains("#GitLab"), s.rationale());
+        assertTrue(s.hashtags().contains("#Observability"), s.rationale());
+    }
+
+    @Test
+    void ciPost() {
+        var s = engine.suggest("""
+                Our CI pipeline used to take 40 minutes. We moved the build to GitHub Actions, cached dependencies
+                between workflow runs and split the test suite across four runners.
+                Now every pull request gets feedback in 9 minutes, and deployment frequency doubled.
+                Continuous integration only works when the pipeline is fast enough that people wait for it.
+                What does your build pipeline look like?
+                """, 5, "balanced");
+        assertTrue(s.confident(), s.rationale());
+        assertEquals("#CICD", s.hashtags().get(0));
+        assertTrue(s.hashtags().containsAll(List.of("#GitHubActions", "#DORA")), s.rationale());
+    }
+
+    @Test
+    void flakyTestsPost() {
+        var s = engine.suggest("""
+                Flaky tests are not a testing problem, they're a trust problem.
+                When half the team reruns the pipeline until it goes green, your automated tests stop telling you anything.
+                We quarantine every flaky test within a day, track flakiness per suite, and fix the top three each sprint.
+                Intermittent failures dropped 80% in two months.
+                """, 5, "balanced");
+        assertTrue(s.confident(), s.rationale());
+        assertEquals("#FlakyTests", s.hashtags().get(0));
+        assertTrue(s.hashtags().contains("#TestAutomation"), s.rationale());
+    }
+
+    @Test
+    void remoteLeadershipPost() {
+        var s = engine.suggest("""
+                Three things I learned leading a distributed team across five time zones:
+                1. Async by default. Decisions go in writing, not in meetings.
+                2. Overlap hours are for collaboration, not status updates.
+                3. Your stakeholders need a weekly status report more than another call.
+                Remote work is a leadership skill, not a perk.
+                """, 5, "balanced");
+        assertTrue(s.confident(), s.rationale());
+        assertTrue(s.hashtags().containsAll(List.of("#RemoteWork", "#Stakeholders", "#Leadership")), s.rationale());
+    }
+
+    @Test
+    void genericWordsDoNotFireTags() {
+        var s = engine.suggest("Great team, great product, great test of patience. Monday board meeting went well, and the new image looks sharp.", 5, "balanced");
+        for (String tag : List.of("#Teamwork", "#ProductManagement", "#SoftwareTesting", "#Kanban", "#Docker", "#Leadership")) {
+            assertFalse(s.hashtags().contains(tag), tag + " from a generic word: " + s.rationale());
+        }
+        assertFalse(s.confident());
+    }
+
+    @Test
+    void leadTimeIsNotLeadership() {
+        var s = engine.suggest("Our lead time for changes went from days to hours.", 5, "balanced");
+        assertFalse(s.hashtags().contains("#Leadership"), s.rationale());
+        assertTrue(s.hashtags().contains("#DORA"), s.rationale());
+    }
+
+    @Test
+    void fewWeakSingleWordHitsAreNotConfident() {
+        var s = engine.suggest("Friday release went out, one bug, fixed by a script.", 5, "balanced");
+        assertTrue(s.hashtags().size() >= 3, s.rationale());
+        assertFalse(s.confident(), "three lone one-word hits should still go to the LLM: " + s.rationale());
+    }
+}
@@ -0,0 +1,119 @@
+package dev.arno.linkedin.postagent.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.arno.linkedin.postagent.dto.FullPostInput;
+import dev.arno.linkedin.postagent.dto.JobOutput;
+import dev.arno.linkedin.postagent.dto.JobState;
+import dev.arno.linkedin.postagent.llm.LlmClient;
+import dev.arno.linkedin.postagent.llm.LlmMessage;
+import dev.arno.linkedin.postagent.llm.LlmOptions;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JobServiceTest {
+
+    private static final FullPostInput INPUT = new FullPostInput("flaky tests", "SDETs", "a tip post", null, null, 3, null);
+    private static final String ANSWER = "{\"outline\": \"o\", \"imagePrompt\": \"p\", \"hashtags\": [\"#FlakyTests\"]}";
+
+    private final CountDownLatch called = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private JobService jobs;
+
+    // answers every call once released, swallowing interrupts, so a cancelled pipeline can still finish
+    private final LlmClient llm = new LlmClient() {
+        @Override
+        public String chat(List<LlmMessage> messages, LlmOptions options) {
+            called.countDown();
+            while (true) {
+                try {
+                    release.await();
+                    return ANSWER;
+                } catch (InterruptedException ignored) {
+                    // keep waiting
+                }
+            }
+        }
+    };
+
+    private JobService jobs(int workers) throws IOException {
+        HashtagEngine engine;
+        try (var in = new BufferedReader(new InputStreamReader(
+                JobServiceTest.class.getResourceAsStream("/hashtags.tsv"), StandardCharsets.UTF_8))) {
+            engine = new HashtagEngine(in);
+        }
+        var pipeline = new FullPostPipeline(llm, new ObjectMapper(), engine, new SimpleMeterRegistry());
+        jobs = new JobService(pipeline, workers, 10, 100, Duration.ofHours(1));
+        return jobs;
+    }
+
+    @AfterEach
+    void close() {
+        if (jobs != null) jobs.close();
+    }
+
+    private JobOutput awaitFinished(JobService jobs, String id) throws InterruptedException {
+        for (int i = 0; i < 500; i++) {
+            var out = jobs.get(id);
+            if (out.finishedAt() != null) return out;
+            Thread.sleep(10);
+        }
+        return fail("job " + id + " did not finish");
+    }
+
+    @Test
+    void jobRunsToCompletion() throws Exception {
+        var jobs = jobs(1);
+        release.countDown();
+        var out = awaitFinished(jobs, jobs.submit(INPUT, LlmOptions.forEndpoint("jobs")).id());
+
+        assertEquals(JobState.succeeded, out.state());
+        assertNotNull(out.result());
+        assertEquals("p", out.result().imagePrompt());
+    }
+
+    @Test
+    void jobCancelledWhileRunningKeepsNoResult() throws Exception {
+        var jobs = jobs(1);
+        String id = jobs.submit(INPUT, LlmOptions.forEndpoint("jobs")).id();
+        assertTrue(called.await(5, TimeUnit.SECONDS));
+        assertEquals(JobState.running, jobs.get(id).state());
+
+        assertEquals(JobState.cancelled, jobs.cancel(id).state());
+        // the pipeline finishes anyway, after the cancel
+        release.countDown();
+        Thread.sleep(200);
+
+        var out = jobs.get(id);
+        assertEquals(JobState.cancelled, out.state());
+        assertNull(out.result(), "a cancelled job must not pick up the pipeline's late result");
+    }
+
+    @Test
+    void jobCancelledInTheQueueNeverRuns() throws Exception {
+        var jobs = jobs(1);
+        String first = jobs.submit(INPUT, LlmOptions.forEndpoint("jobs")).id();
+        assertTrue(called.await(5, TimeUnit.SECONDS));
+        String queued = jobs.submit(INPUT, LlmOptions.forEndpoint("jobs")).id();
+
+        assertEquals(JobState.cancelled, jobs.cancel(queued).state());
+        release.countDown();
+        assertEquals(JobState.succeeded, awaitFinished(jobs, first).state());
+        Thread.sleep(100);
+
+        var out = jobs.get(queued);
+        assertEquals(JobState.cancelled, out.state());
+        assertTrue(out.stages().isEmpty(), out.stages().toString());
+    }
+}
@@ -0,0 +1,41 @@
+package dev.arno.linkedin.postagent.service;
+
+import dev.arno.linkedin.postagent.dto.Constraints;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PackagingServiceTest {
+
+    private static final String POST = "Flaky tests are a trust problem. ".repeat(40).strip();
+    private static final List<String> TAGS = List.of("#FlakyTests", "#TestAutomation", "#CICD");
+
+    private static Constraints maxChars(int n) {
+        return new Constraints(n, null, null, null, null);
+    }
+
+    @Test
+    void budgetLeavesRoomForTheActualHashtagLine() {
+        String tagsLine = "\n\n#FlakyTests #TestAutomation #CICD";
+        assertEquals(1000 - tagsLine.length(), PackagingService.bodyBudget(POST, TAGS, maxChars(1000)));
+        assertEquals(1000, PackagingService.bodyBudget(POST, List.of(), maxChars(1000)));
+    }
+
+    @Test
+    void longPostOverALargeLimitIsRewritten() {
+        assertTrue(PackagingService.needsRewrite(POST, TAGS, maxChars(600)));
+        assertFalse(PackagingService.needsRewrite(POST, TAGS, maxChars(2200)));
+    }
+
+    @Test
+    void tinyLimitIsTruncatedInsteadOfRewritten() {
+        for (int max : new int[]{10, 40, 60, 120}) {
+            assertFalse(PackagingService.needsRewrite(POST, TAGS, maxChars(max)), "maxChars=" + max);
+        }
+        var out = PackagingService.pack(POST, TAGS, null, maxChars(120));
+        assertTrue(out.finalCharCount() <= 120, out.finalText());
+        assertTrue(out.finalText().endsWith("#FlakyTests #TestAutomation #CICD"), out.finalText());
+    }
+}
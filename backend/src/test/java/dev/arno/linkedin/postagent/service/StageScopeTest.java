@@ -0,0 +1,64 @@
+package dev.arno.linkedin.postagent.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StageScopeTest {
+
+    private final List<String> events = new CopyOnWriteArrayList<>();
+    private final PipelineListener listener = new PipelineListener() {
+        @Override
+        public void stageCompleted(String stage, Object result, long millis) {
+            events.add(stage + ":ok");
+        }
+
+        @Override
+        public void stageFailed(String stage, Throwable error, long millis) {
+            events.add(stage + ":failed");
+        }
+    };
+
+    @Test
+    void failedStageIsTimedAndReported() throws Exception {
+        try (var scope = new StageScope(listener)) {
+            assertEquals("x", scope.run("outline", () -> "x"));
+            var e = assertThrows(IllegalStateException.class, () -> scope.run("draft", () -> {
+                throw new IllegalStateException("upstream 500");
+            }));
+            assertEquals("upstream 500", e.getMessage());
+
+            assertEquals(List.of("outline", "draft"), List.copyOf(scope.timings().keySet()));
+            assertEquals(Map.of("outline", "success", "draft", "error"), scope.outcomes());
+            assertEquals(List.of("outline:ok", "draft:failed"), events);
+        }
+    }
+
+    @Test
+    void failingForkCancelsItsSibling() throws Exception {
+        var started = new CountDownLatch(1);
+        try (var scope = new StageScope(listener)) {
+            scope.fork("image-prompt", () -> {
+                started.countDown();
+                Thread.sleep(10_000);
+                return "never";
+            });
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            scope.fork("hashtags", () -> {
+                throw new IllegalStateException("boom");
+            });
+            assertThrows(IllegalStateException.class, scope::join);
+
+            for (int i = 0; i < 100 && scope.outcomes().size() < 2; i++) Thread.sleep(10);
+            assertEquals("error", scope.outcomes().get("hashtags"));
+            assertEquals("cancelled", scope.outcomes().get("image-prompt"));
+            assertTrue(events.containsAll(List.of("hashtags:failed", "image-prompt:failed")), events.toString());
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package dev.arno.linkedin.postagent.service;
+
+import dev.arno.linkedin.postagent.dto.DiffItem;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WordDiffTest {
+
+    private static int wordCount(String s) {
+        return s.isBlank() ? 0 : s.strip().split("\\s+").length;
+    }
+
+    // longest common subsequence of the words, by the textbook table
+    private static int lcs(String a, String b) {
+        String[] x = a.isBlank() ? new String[0] : a.strip().split("\\s+");
+        String[] y = b.isBlank() ? new String[0] : b.strip().split("\\s+");
+        int[][] t = new int[x.length + 1][y.length + 1];
+        for (int i = 1; i <= x.length; i++) {
+            for (int j = 1; j <= y.length; j++) {
+                t[i][j] = x[i - 1].equals(y[j - 1]) ? t[i - 1][j - 1] + 1 : Math.max(t[i - 1][j], t[i][j - 1]);
+            }
+        }
+        return t[x.length][y.length];
+    }
+
+    // the diff keeps a longest common subsequence: everything else is removed or added exactly once
+    private static void assertMinimal(String from, String to) {
+        List<DiffItem> diff = WordDiff.diff(from, to);
+        int common = lcs(from, to);
+        assertEquals(wordCount(from) - common, diff.stream().mapToInt(d -> wordCount(d.from())).sum(), from + " → " + to);
+        assertEquals(wordCount(to) - common, diff.stream().mapToInt(d -> wordCount(d.to())).sum(), from + " → " + to);
+    }
+
+    @Test
+    void emptyInputs() {
+        assertEquals(List.of(), WordDiff.diff("", ""));
+        assertEquals(List.of(), WordDiff.diff("  \n ", "\t"));
+        assertEquals(List.of(new DiffItem("", "Ship it.", "Added")), WordDiff.diff("", "Ship it."));
+        assertEquals(List.of(new DiffItem("Ship it.", "", "Removed")), WordDiff.diff("Ship it.", " "));
+    }
+
+    @Test
+    void identicalTextAndReflowedLinesAreNoChange() {
+        assertEquals(List.of(), WordDiff.diff("one two three", "one two three"));
+        assertEquals(List.of(), WordDiff.diff("one two\nthree", "one  two three\n"));
+    }
+
+    @Test
+    void pureInsertions() {
+        assertEquals(List.of(new DiffItem("", "really", "Added")), WordDiff.diff("tests are flaky", "tests are really flaky"));
+        assertEquals(List.of(new DiffItem("", "Honestly,", "Added"), new DiffItem("", "today.", "Added")),
+                WordDiff.diff("tests are flaky", "Honestly, tests are flaky today."));
+    }
+
+    @Test
+    void pureDeletions() {
+        assertEquals(List.of(new DiffItem("very very", "", "Removed")), WordDiff.diff("a very very long post", "a long post"));
+        assertEquals(List.of(new DiffItem("So,", "", "Removed"), new DiffItem("basically", "", "Removed")),
+                WordDiff.diff("So, this is basically it", "this is it"));
+    }
+
+    @Test
+    void adjacentChangesAreOneItemWithTheOriginalSpacing() {
+        assertEquals(List.of(new DiffItem("run it in\nparallel", "parallelize", "Tightened (-7 chars)")),
+                WordDiff.diff("We run it in\nparallel now", "We parallelize now"));
+        assertEquals(List.of(new DiffItem("slow", "fast", "Reworded")), WordDiff.diff("CI is slow", "CI is fast"));
+    }
+
+    @Test
+    void repeatedWords() {
+        assertEquals(List.of(new DiffItem("", "test", "Added")), WordDiff.diff("test test test", "test test test test"));
+        assertEquals(List.of(new DiffItem("the", "", "Removed")), WordDiff.diff("the the cat", "the cat"));
+        assertMinimal("a b a b a b", "b a b a");
+        assertMinimal("x y x y x", "y x y x y");
+    }
+
+    @Test
+    void cjkAndEmojiWords() {
+        assertEquals(List.of(new DiffItem("很慢", "很快", "Reworded")), WordDiff.diff("测试 很慢 ✅", "测试 很快 ✅"));
+        assertEquals(List.of(new DiffItem("🚀", "👩🏽‍💻", "Reworded")), WordDiff.diff("Ship 🚀 today", "Ship 👩🏽‍💻 today"));
+        // the saving counts code points, not UTF-16 units
+        assertEquals(List.of(new DiffItem("🔥🔥🔥 wow", "🔥", "Tightened (-6 chars)")), WordDiff.diff("Done 🔥🔥🔥 wow", "Done 🔥"));
+        // an unsegmented CJK sentence is a single word
+        assertEquals(1, WordDiff.diff("持续集成很重要", "持续交付很重要").size());
+    }
+
+    @Test
+    void randomEditsStayMinimal() {
+        var random = new Random(42);
+        String[] vocabulary = {"a", "b", "c", "d", "测试", "🚀"};
+        for (int run = 0; run < 500; run++) {
+            var from = new StringBuilder();
+            var to = new StringBuilder();
+            for (int k = random.nextInt(12); k > 0; k--) from.append(vocabulary[random.nextInt(vocabulary.length)]).append(' ');
+            for (int k = random.nextInt(12); k > 0; k--) to.append(vocabulary[random.nextInt(vocabulary.length)]).append(random.nextBoolean() ? " " : "\n");
+            assertMinimal(from.toString(), to.toString());
+        }
+    }
+
+    @Test
+    void longDraftsStayMinimal() {
+        var random = new Random(7);
+        String[] vocabulary = {"a", "b", "c", "d", "e", "f", "g", "h"};
+        for (int run = 0; run < 20; run++) {
+            var from = new StringBuilder();
+            var to = new StringBuilder();
+            for (int k = 0; k < 400; k++) {
+                String w = vocabulary[random.nextInt(vocabulary.length)];
+                if (random.nextInt(10) > 0) from.append(w).append(' ');
+                if (random.nextInt(10) > 0) to.append(random.nextInt(8) == 0 ? vocabulary[random.nextInt(vocabulary.length)] : w).append(' ');
+            }
+            assertMinimal(from.toString(), to.toString());
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package dev.arno.linkedin.postagent.web;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveLimitTest {
+
+    private static final long TEN_MS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    // fills the limit, then releases every slot at the given latency
+    private static void round(AdaptiveLimit limit, long rttNanos, boolean failed) {
+        int taken = 0;
+        while (limit.tryAcquire()) taken++;
+        for (int i = 0; i < taken; i++) limit.release(rttNanos, failed);
+    }
+
+    @Test
+    void overTheLimitIsRejectedAtOnce() {
+        var limit = new AdaptiveLimit(2, 1, 10, 2.0, 0.5);
+        assertTrue(limit.tryAcquire());
+        assertTrue(limit.tryAcquire());
+        assertFalse(limit.tryAcquire());
+        assertEquals(2, limit.inFlight());
+        assertEquals(1, limit.rejected());
+    }
+
+    @Test
+    void growsWhileLatencyHoldsAndStopsAtTheMax() {
+        var limit = new AdaptiveLimit(4, 1, 10, 2.0, 0.5);
+        // about one more per limit's worth of completions
+        for (int i = 0; i < 5; i++) round(limit, TEN_MS, false);
+        assertTrue(limit.limit() > 4, String.valueOf(limit.limit()));
+
+        for (int i = 0; i < 500; i++) round(limit, TEN_MS, false);
+        assertEquals(10, limit.limit());
+    }
+
+    @Test
+    void doesNotGrowWhenMostlyIdle() {
+        var limit = new AdaptiveLimit(8, 1, 64, 2.0, 0.5);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(limit.tryAcquire());
+            limit.release(TEN_MS, false);
+        }
+        assertEquals(8, limit.limit());
+    }
+
+    @Test
+    void failureCutsTheLimitOncePerRoundTrip() throws Exception {
+        var limit = new AdaptiveLimit(8, 1, 64, 2.0, 0.5);
+        assertTrue(limit.tryAcquire());
+        assertTrue(limit.tryAcquire());
+        limit.release(TEN_MS, true);
+        limit.release(TEN_MS, true);
+        assertEquals(4, limit.limit(), "the second failure of the same burst is not a new signal");
+
+        Thread.sleep(20);
+        assertTrue(limit.tryAcquire());
+        limit.release(TEN_MS, true);
+        assertEquals(2, limit.limit());
+    }
+
+    @Test
+    void latencySpikeCutsTheLimit() {
+        var limit = new AdaptiveLimit(8, 1, 64, 2.0, 0.5);
+        for (int i = 0; i < 50; i++) {
+            assertTrue(limit.tryAcquire());
+            limit.release(TEN_MS, false);
+        }
+        assertTrue(limit.tryAcquire());
+        assertTrue(limit.tryAcquire());
+        limit.release(10 * TEN_MS, false);
+        limit.release(10 * TEN_MS, false);
+        assertEquals(4, limit.limit());
+    }
+
+    @Test
+    void neverDropsBelowTheFloor() throws Exception {
+        var limit = new AdaptiveLimit(8, 3, 64, 2.0, 0.5);
+        for (int i = 0; i < 20; i++) {
+            assertTrue(limit.tryAcquire());
+            limit.release(1_000, true);
+            Thread.sleep(1);
+        }
+        assertEquals(3, limit.limit());
+        assertTrue(limit.tryAcquire());
+        assertTrue(limit.tryAcquire());
+        assertTrue(limit.tryAcquire());
+        assertFalse(limit.tryAcquire());
+    }
+}
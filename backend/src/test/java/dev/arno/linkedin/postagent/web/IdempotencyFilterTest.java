@@ -0,0 +1,218 @@
+package dev.arno.linkedin.postagent.web;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdempotencyFilterTest {
+
+    private final IdempotencyFilter filter = new IdempotencyFilter(
+            100, DataSize.ofMegabytes(1), DataSize.ofKilobytes(64),
+            Duration.ofHours(1), Duration.ofSeconds(5), Duration.ofMinutes(1));
+    private final AtomicInteger executions = new AtomicInteger();
+
+    private static MockHttpServletRequest post(String key, String body) {
+        var request = new MockHttpServletRequest("POST", "/posts/draft");
+        request.addHeader("Idempotency-Key", key);
+        request.setContent(body.getBytes(StandardCharsets.UTF_8));
+        return request;
+    }
+
+    // echoes the request body, so a replay is distinguishable from a second execution
+    private FilterChain echo(int status) {
+        return (req, res) -> {
+            int n = executions.incrementAndGet();
+            byte[] body = req.getInputStream().readAllBytes();
+            ((HttpServletResponse) res).setStatus(status);
+            res.setContentType("application/json");
+            res.getOutputStream().write(("{\"run\":" + n + ",\"echo\":" + new String(body, StandardCharsets.UTF_8) + "}").getBytes(StandardCharsets.UTF_8));
+        };
+    }
+
+    @Test
+    void retryReplaysTheStoredResponse() throws Exception {
+        var first = new MockHttpServletResponse();
+        filter.doFilter(post("k1", "{\"a\":1}"), first, echo(200));
+        var retry = new MockHttpServletResponse();
+        filter.doFilter(post("k1", "{\"a\":1}"), retry, echo(200));
+
+        assertEquals(1, executions.get());
+        assertEquals("{\"run\":1,\"echo\":{\"a\":1}}", first.getContentAsString());
+        assertArrayEquals(first.getContentAsByteArray(), retry.getContentAsByteArray());
+        assertEquals(200, retry.getStatus());
+        assertEquals("application/json", retry.getContentType());
+        assertEquals("true", retry.getHeader("Idempotent-Replayed"));
+        assertEquals(1L, filter.stats().get("replayed"));
+    }
+
+    @Test
+    void requestsWithoutKeyAreNotTouched() throws Exception {
+        filter.doFilter(new MockHttpServletRequest("POST", "/posts/draft"), new MockHttpServletResponse(), echo(200));
+        filter.doFilter(new MockHttpServletRequest("POST", "/posts/draft"), new MockHttpServletResponse(), echo(200));
+        assertEquals(2, executions.get());
+        assertEquals(0, filter.stats().get("entries"));
+    }
+
+    @Test
+    void retryWhileRunningWaitsForTheFirstExecution() throws Exception {
+        var started = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        FilterChain slow = (req, res) -> {
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            echo(200).doFilter(req, res);
+        };
+
+        var first = new MockHttpServletResponse();
+        var running = CompletableFuture.runAsync(() -> {
+            try {
+                filter.doFilter(post("k2", "{}"), first, slow);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        var retry = new MockHttpServletResponse();
+        var waiting = CompletableFuture.runAsync(() -> {
+            try {
+                filter.doFilter(post("k2", "{}"), retry, echo(200));
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        Thread.sleep(50);
+        assertFalse(waiting.isDone(), "the retry waits instead of answering at once");
+
+        release.countDown();
+        running.get(5, TimeUnit.SECONDS);
+        waiting.get(5, TimeUnit.SECONDS);
+
+        assertEquals(1, executions.get());
+        assertArrayEquals(first.getContentAsByteArray(), retry.getContentAsByteArray());
+        assertEquals(1L, filter.stats().get("waited"));
+    }
+
+    @Test
+    void sameKeyWithDifferentBodyIs422() throws Exception {
+        filter.doFilter(post("k3", "{\"a\":1}"), new MockHttpServletResponse(), echo(200));
+        var other = new MockHttpServletResponse();
+        filter.doFilter(post("k3", "{\"a\":2}"), other, echo(200));
+
+        assertEquals(1, executions.get());
+        assertEquals(422, other.getStatus());
+        assertTrue(other.getContentAsString().contains("\"error\""));
+    }
+
+    @Test
+    void failedExecutionFreesTheKey() throws Exception {
+        var failed = new MockHttpServletResponse();
+        filter.doFilter(post("k4", "{}"), failed, echo(503));
+        var retry = new MockHttpServletResponse();
+        filter.doFilter(post("k4", "{}"), retry, echo(200));
+
+        assertEquals(2, executions.get());
+        assertEquals(200, retry.getStatus());
+        assertNull(retry.getHeader("Idempotent-Replayed"));
+    }
+
+    @Test
+    void exceptionFromTheChainFreesTheKey() throws Exception {
+        FilterChain boom = (req, res) -> {
+            executions.incrementAndGet();
+            throw new IllegalStateException("boom");
+        };
+        assertThrows(IllegalStateException.class, () -> filter.doFilter(post("k5", "{}"), new MockHttpServletResponse(), boom));
+        filter.doFilter(post("k5", "{}"), new MockHttpServletResponse(), echo(200));
+
+        assertEquals(2, executions.get());
+        assertEquals(0, filter.stats().get("inProgress"));
+    }
+
+    @Test
+    void resultIsStoredWhenTheClientHasDisconnected() throws Exception {
+        HttpServletResponse gone = new HttpServletResponseWrapper(new MockHttpServletResponse()) {
+            @Override
+            public ServletOutputStream getOutputStream() {
+                return new ServletOutputStream() {
+                    @Override
+                    public void write(int b) throws IOException {
+                        throw new IOException("Broken pipe");
+                    }
+
+                    @Override
+                    public boolean isReady() {
+                        return true;
+                    }
+
+                    @Override
+                    public void setWriteListener(WriteListener listener) {
+                    }
+                };
+            }
+
+            @Override
+            public void flushBuffer() throws IOException {
+                throw new IOException("Broken pipe");
+            }
+        };
+        filter.doFilter(post("k6", "{}"), gone, echo(200));
+
+        var retry = new MockHttpServletResponse();
+        filter.doFilter(post("k6", "{}"), retry, echo(200));
+
+        assertEquals(1, executions.get());
+        assertEquals("{\"run\":1,\"echo\":{}}", retry.getContentAsString());
+        assertEquals(0, filter.stats().get("inProgress"));
+    }
+
+    @Test
+    void streamIsStoredWhenItCompletesUnlessItReportedAnError() throws Exception {
+        for (boolean failed : new boolean[]{false, true}) {
+            String key = "stream-" + failed;
+            var request = post(key, "{}");
+            request.setAsyncSupported(true);
+            var stream = new AtomicReference<ServletResponse>();
+            filter.doFilter(request, new MockHttpServletResponse(), (req, res) -> {
+                executions.incrementAndGet();
+                req.startAsync();
+                res.setContentType("text/event-stream");
+                stream.set(res);
+            });
+            // events are written after the filter returned, as SseEmitter does
+            stream.get().getOutputStream().write("event:done\ndata:{}\n\n".getBytes(StandardCharsets.UTF_8));
+            assertEquals(1, filter.stats().get("inProgress"));
+            if (failed) request.setAttribute(IdempotencyFilter.NOT_REPLAYABLE, true);
+            ((MockAsyncContext) request.getAsyncContext()).complete();
+            assertEquals(0, filter.stats().get("inProgress"));
+
+            var retry = new MockHttpServletResponse();
+            filter.doFilter(post(key, "{}"), retry, echo(200));
+            assertEquals(failed ? "{\"run\":" + executions.get() + ",\"echo\":{}}" : "event:done\ndata:{}\n\n", retry.getContentAsString());
+            assertEquals(failed ? null : "true", retry.getHeader("Idempotent-Replayed"));
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package dev.arno.linkedin.postagent.web;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdempotencyStoreTest {
+
+    private static IdempotencyStore.Stored ok(String body) {
+        return new IdempotencyStore.Stored(200, "application/json", body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void firstClaimOwnsTheKeyAndLaterOnesShareItsResult() throws Exception {
+        var store = new IdempotencyStore(10, 1024, Duration.ofHours(1), Duration.ofMinutes(1));
+        var first = store.claim("k", "f");
+        var retry = store.claim("k", "f");
+
+        assertTrue(first.owner());
+        assertFalse(retry.owner());
+        assertSame(first.entry(), retry.entry());
+        assertEquals(1, store.inProgress());
+
+        store.complete("k", first.entry(), ok("{\"a\":1}"));
+        assertEquals("{\"a\":1}", new String(retry.entry().result().get(1, TimeUnit.SECONDS).body(), StandardCharsets.UTF_8));
+        assertEquals(0, store.inProgress());
+        assertEquals(7, store.bytes());
+        assertFalse(store.claim("k", "f").owner());
+    }
+
+    @Test
+    void nullResponseFreesTheKeyAndReleasesWaiters() throws Exception {
+        var store = new IdempotencyStore(10, 1024, Duration.ofHours(1), Duration.ofMinutes(1));
+        var first = store.claim("k", "f");
+        var retry = store.claim("k", "f");
+
+        store.complete("k", first.entry(), null);
+
+        assertNull(retry.entry().result().get(1, TimeUnit.SECONDS));
+        assertEquals(0, store.size());
+        assertTrue(store.claim("k", "f").owner());
+    }
+
+    @Test
+    void storedResponsesExpireAfterTtl() throws Exception {
+        var store = new IdempotencyStore(10, 1024, Duration.ofMillis(20), Duration.ofMinutes(1));
+        var first = store.claim("k", "f");
+        store.complete("k", first.entry(), ok("x"));
+
+        Thread.sleep(40);
+        assertTrue(store.claim("k", "f").owner());
+        assertEquals(0, store.bytes());
+    }
+
+    @Test
+    void abandonedInProgressMarkerExpiresOnItsOwnDeadline() throws Exception {
+        var store = new IdempotencyStore(10, 1024, Duration.ofHours(1), Duration.ofMillis(20));
+        var first = store.claim("k", "f");
+        var waiter = store.claim("k", "f");
+
+        Thread.sleep(40);
+        var next = store.claim("k", "f");
+
+        assertTrue(next.owner());
+        assertNotEquals(first.entry(), next.entry());
+        assertNull(waiter.entry().result().get(1, TimeUnit.SECONDS), "waiters on the abandoned run are released");
+
+        // the abandoned run reporting back late doesn't touch the new entry
+        store.complete("k", first.entry(), ok("late"));
+        assertEquals(1, store.inProgress());
+        assertEquals(0, store.bytes());
+    }
+
+    @Test
+    void evictsOldestByCountAndBytes() {
+        var store = new IdempotencyStore(2, 10, Duration.ofHours(1), Duration.ofMinutes(1));
+        for (String key : new String[]{"a", "b", "c"}) {
+            store.complete(key, store.claim(key, "f").entry(), ok("1234"));
+        }
+        assertEquals(2, store.size());
+        assertTrue(store.claim("a", "f").owner(), "oldest entry was evicted by count");
+
+        var store2 = new IdempotencyStore(10, 10, Duration.ofHours(1), Duration.ofMinutes(1));
+        store2.complete("a", store2.claim("a", "f").entry(), ok("123456"));
+        store2.complete("b", store2.claim("b", "f").entry(), ok("123456"));
+        assertEquals(6, store2.bytes());
+        assertFalse(store2.claim("b", "f").owner());
+        assertTrue(store2.claim("a", "f").owner(), "oldest entry was evicted by size");
+    }
+}